@@ -0,0 +1,15 @@
+-- Indexes the application relies on in the dvdrental source database. Not run by the application:
+-- apply once per database, e.g. psql -d dvdrental -f db/source-indexes.sql
+--
+-- CREATE INDEX CONCURRENTLY does not block writes to the table, but cannot run inside a transaction
+-- block, so run the file without --single-transaction. If a build fails it leaves an INVALID index
+-- behind; drop it (DROP INDEX CONCURRENTLY ...) and run the file again.
+
+-- /api/films/search. dvdrental already ships film_fulltext_idx (GIN on film.fulltext); the trigram
+-- index serves the fuzzy title mode and the ILIKE title search.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS film_title_trgm_idx ON film USING gin (title gin_trgm_ops);
+
+-- Periodic last_update checks of the cached films and customers (api.cache.hot.*)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS film_last_update_idx ON film (last_update);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS customer_last_update_idx ON customer (last_update);
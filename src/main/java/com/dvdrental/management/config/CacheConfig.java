@@ -0,0 +1,65 @@
+package com.dvdrental.management.config;
+
+import com.dvdrental.management.dto.CustomerDTO;
+import com.dvdrental.management.dto.FilmDTO;
+import com.dvdrental.management.service.VersionedDtoCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.interceptor.SimpleKeyGenerator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Duration;
+
+/**
+ * Read-through caches for the small, nearly static reference tables.
+ *
+ * Reads of the language, category, country and city repositories are cached in Caffeine caches
+ * of those names (size and TTL from spring.cache.caffeine.spec); every save or delete through the
+ * same repository clears its cache. Hit, miss and eviction counts are published as the cache.*
+ * meters under /actuator/metrics.
+ *
+ * Films and customers, read by id on the hottest paths, have their own {@link VersionedDtoCache}s
+ * that are checked against last_update every api.cache.hot.version-check-interval.
+ */
+@Configuration
+@EnableCaching
+@EnableScheduling
+public class CacheConfig implements CachingConfigurer {
+
+    public static final String LANGUAGES = "languages";
+    public static final String CATEGORIES = "categories";
+    public static final String COUNTRIES = "countries";
+    public static final String CITIES = "cities";
+
+    /**
+     * Keys include the method name, since several finders of a repository share its cache
+     */
+    @Bean
+    @Override
+    public KeyGenerator keyGenerator() {
+        return (target, method, params) -> new SimpleKey(method.getName(), SimpleKeyGenerator.generateKey(params));
+    }
+
+    @Bean
+    public VersionedDtoCache<FilmDTO> filmCache(MeterRegistry registry,
+                                                @Value("${api.cache.hot.maximum-size:10000}") long maximumSize,
+                                                @Value("${api.cache.hot.expire-after-write:PT30M}") Duration expireAfterWrite,
+                                                @Value("${api.cache.hot.version-overlap:PT1M}") Duration overlap) {
+        return new VersionedDtoCache<>("films", FilmDTO::lastUpdate, maximumSize, expireAfterWrite, overlap, registry);
+    }
+
+    @Bean
+    public VersionedDtoCache<CustomerDTO> customerCache(MeterRegistry registry,
+                                                        @Value("${api.cache.hot.maximum-size:10000}") long maximumSize,
+                                                        @Value("${api.cache.hot.expire-after-write:PT30M}") Duration expireAfterWrite,
+                                                        @Value("${api.cache.hot.version-overlap:PT1M}") Duration overlap) {
+        return new VersionedDtoCache<>("customers", CustomerDTO::lastUpdate, maximumSize, expireAfterWrite, overlap,
+                registry);
+    }
+}
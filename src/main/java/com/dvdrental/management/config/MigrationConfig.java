@@ -0,0 +1,98 @@
+package com.dvdrental.management.config;
+
+import com.dvdrental.management.service.migration.DocumentSink;
+import com.dvdrental.management.service.migration.LoggingDocumentSink;
+import com.dvdrental.management.service.migration.MigrationDataSources;
+import com.dvdrental.management.service.migration.MigrationMetrics;
+import com.dvdrental.management.service.migration.MongoDocumentSink;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+/**
+ * Configuration for the PostgreSQL → MongoDB migration engine.
+ * A real MongoDB sink is used when migration.mongodb.uri is set; otherwise batches are only logged.
+ *
+ * The migration reads the source through its own connection pool (migration.datasource.hikari.*),
+ * so the REST API keeps the primary pool (spring.datasource.hikari.*) to itself while a backup runs.
+ * Both pools connect with the spring.datasource URL and credentials.
+ */
+@Configuration
+public class MigrationConfig {
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    /**
+     * Pool for the REST API and JPA repositories
+     */
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Separately sized pool for migration workers
+     */
+    @Bean(name = MigrationDataSources.DATA_SOURCE, destroyMethod = "close")
+    @ConfigurationProperties("migration.datasource.hikari")
+    public HikariDataSource migrationDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(name = MigrationDataSources.JDBC_TEMPLATE)
+    public JdbcTemplate migrationJdbcTemplate(@Qualifier(MigrationDataSources.DATA_SOURCE) DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * MongoDB client for the migration target, created only when a URI is configured
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnExpression("!'${migration.mongodb.uri:}'.isEmpty()")
+    public MongoClient migrationMongoClient(@Value("${migration.mongodb.uri}") String uri) {
+        return MongoClients.create(uri);
+    }
+
+    /**
+     * Load stage of the migration pipeline
+     */
+    @Bean
+    public DocumentSink documentSink(ObjectProvider<MongoClient> mongoClient,
+                                     @Value("${migration.mongodb.database:dvdrental}") String database,
+                                     @Value("${migration.sink.max-in-flight-batches:4}") int maxInFlightBatches,
+                                     @Value("${migration.sink.max-retries:3}") int maxRetries,
+                                     @Value("${migration.sink.retry-backoff-millis:500}") long retryBackoffMillis,
+                                     MigrationMetrics migrationMetrics) {
+        MongoClient client = mongoClient.getIfAvailable();
+        if (client == null) {
+            return new LoggingDocumentSink();
+        }
+        return new MongoDocumentSink(client, database, maxInFlightBatches, maxRetries, retryBackoffMillis,
+            migrationMetrics);
+    }
+}
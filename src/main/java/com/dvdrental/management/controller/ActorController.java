@@ -5,25 +5,35 @@ import com.dvdrental.management.service.ActorService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/actors")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class ActorController {
 
     private final ActorService actorService;
+    private final KeysetPagination pagination;
 
-    public ActorController(ActorService actorService) {
+    public ActorController(ActorService actorService, KeysetPagination pagination) {
         this.actorService = actorService;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<ActorDTO>> getAllActors() {
-        List<ActorDTO> actors = actorService.getAllActors();
-        return new ResponseEntity<>(actors, HttpStatus.OK);
+    public ResponseEntity<List<ActorDTO>> getAllActors(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer size) {
+        List<ActorDTO> actors = actorService.getActorsAfter(KeysetPagination.decodeCursor(cursor),
+                pagination.fetchLimit(size));
+        return pagination.page(actors, size, actor -> KeysetPagination.encodeCursor(actor.actorId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllActors() {
+        return pagination.stream(actorService::streamAllActors);
     }
 
     @GetMapping("/{id}")
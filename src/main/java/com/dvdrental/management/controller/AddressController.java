@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.AddressRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/addresses")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class AddressController {
 
     private final AddressRepository addressRepository;
+    private final KeysetPagination pagination;
 
-    public AddressController(AddressRepository addressRepository) {
+    public AddressController(AddressRepository addressRepository, KeysetPagination pagination) {
         this.addressRepository = addressRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<AddressDTO>> getAllAddresses() {
-        List<AddressDTO> addresses = addressRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(addresses, HttpStatus.OK);
+    public ResponseEntity<List<AddressDTO>> getAllAddresses(@RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer size) {
+        List<AddressDTO> addresses = addressRepository.findDtoByAddressIdGreaterThanOrderByAddressId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(addresses, size, address -> KeysetPagination.encodeCursor(address.addressId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllAddresses() {
+        return pagination.stream(addressRepository::streamDtoByOrderByAddressId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<AddressDTO> getAddressById(@PathVariable Integer id) {
-        Optional<AddressDTO> address = addressRepository.findById(id).map(this::convertToDTO);
+        Optional<AddressDTO> address = addressRepository.findDtoByAddressId(id);
         return address.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -51,9 +58,7 @@ public class AddressController {
 
     @GetMapping("/city/{cityId}")
     public ResponseEntity<List<AddressDTO>> getAddressesByCity(@PathVariable Short cityId) {
-        List<AddressDTO> addresses = addressRepository.findByCityId(cityId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<AddressDTO> addresses = addressRepository.findDtoByCityId(cityId);
         return new ResponseEntity<>(addresses, HttpStatus.OK);
     }
 
@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.CategoryRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/categories")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class CategoryController {
 
     private final CategoryRepository categoryRepository;
+    private final KeysetPagination pagination;
 
-    public CategoryController(CategoryRepository categoryRepository) {
+    public CategoryController(CategoryRepository categoryRepository, KeysetPagination pagination) {
         this.categoryRepository = categoryRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<CategoryDTO>> getAllCategories() {
-        List<CategoryDTO> categories = categoryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(categories, HttpStatus.OK);
+    public ResponseEntity<List<CategoryDTO>> getAllCategories(@RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) Integer size) {
+        List<CategoryDTO> categories = categoryRepository.findDtoByCategoryIdGreaterThanOrderByCategoryId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(categories, size, category -> KeysetPagination.encodeCursor(category.categoryId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllCategories() {
+        return pagination.stream(categoryRepository::streamDtoByOrderByCategoryId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<CategoryDTO> getCategoryById(@PathVariable Integer id) {
-        Optional<CategoryDTO> category = categoryRepository.findById(id).map(this::convertToDTO);
+        Optional<CategoryDTO> category = categoryRepository.findDtoByCategoryId(id);
         return category.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.CityRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/cities")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class CityController {
 
     private final CityRepository cityRepository;
+    private final KeysetPagination pagination;
 
-    public CityController(CityRepository cityRepository) {
+    public CityController(CityRepository cityRepository, KeysetPagination pagination) {
         this.cityRepository = cityRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<CityDTO>> getAllCities() {
-        List<CityDTO> cities = cityRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(cities, HttpStatus.OK);
+    public ResponseEntity<List<CityDTO>> getAllCities(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer size) {
+        List<CityDTO> cities = cityRepository.findDtoByCityIdGreaterThanOrderByCityId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(cities, size, city -> KeysetPagination.encodeCursor(city.cityId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllCities() {
+        return pagination.stream(cityRepository::streamDtoByOrderByCityId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<CityDTO> getCityById(@PathVariable Integer id) {
-        Optional<CityDTO> city = cityRepository.findById(id).map(this::convertToDTO);
+        Optional<CityDTO> city = cityRepository.findDtoByCityId(id);
         return city.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -75,9 +82,7 @@ public class CityController {
 
     @GetMapping("/country/{countryId}")
     public ResponseEntity<List<CityDTO>> getCitiesByCountry(@PathVariable Short countryId) {
-        List<CityDTO> cities = cityRepository.findByCountryId(countryId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<CityDTO> cities = cityRepository.findDtoByCountryId(countryId);
         return new ResponseEntity<>(cities, HttpStatus.OK);
     }
 
@@ -5,25 +5,35 @@ import com.dvdrental.management.service.CountryService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/countries")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class CountryController {
 
     private final CountryService countryService;
+    private final KeysetPagination pagination;
 
-    public CountryController(CountryService countryService) {
+    public CountryController(CountryService countryService, KeysetPagination pagination) {
         this.countryService = countryService;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<CountryDTO>> getAllCountries() {
-        List<CountryDTO> countries = countryService.getAllCountries();
-        return new ResponseEntity<>(countries, HttpStatus.OK);
+    public ResponseEntity<List<CountryDTO>> getAllCountries(@RequestParam(required = false) String cursor,
+                                                            @RequestParam(required = false) Integer size) {
+        List<CountryDTO> countries = countryService.getCountriesAfter(KeysetPagination.decodeCursor(cursor),
+                pagination.fetchLimit(size));
+        return pagination.page(countries, size, country -> KeysetPagination.encodeCursor(country.countryId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllCountries() {
+        return pagination.stream(countryService::streamAllCountries);
     }
 
     @GetMapping("/{id}")
@@ -5,25 +5,35 @@ import com.dvdrental.management.service.CustomerService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/customers")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class CustomerController {
 
     private final CustomerService customerService;
+    private final KeysetPagination pagination;
 
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, KeysetPagination pagination) {
         this.customerService = customerService;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<CustomerDTO>> getAllCustomers() {
-        List<CustomerDTO> customers = customerService.getAllCustomers();
-        return new ResponseEntity<>(customers, HttpStatus.OK);
+    public ResponseEntity<List<CustomerDTO>> getAllCustomers(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer size) {
+        List<CustomerDTO> customers = customerService.getCustomersAfter(KeysetPagination.decodeCursor(cursor),
+                pagination.fetchLimit(size));
+        return pagination.page(customers, size, customer -> KeysetPagination.encodeCursor(customer.customerId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllCustomers() {
+        return pagination.stream(customerService::streamAllCustomers);
     }
 
     @GetMapping("/{id}")
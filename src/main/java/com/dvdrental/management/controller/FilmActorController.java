@@ -2,40 +2,47 @@ package com.dvdrental.management.controller;
 
 import com.dvdrental.management.dto.FilmActorDTO;
 import com.dvdrental.management.entity.FilmActor;
-import com.dvdrental.management.entity.FilmActorId;
 import com.dvdrental.management.repository.FilmActorRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/film-actors")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class FilmActorController {
 
     private final FilmActorRepository filmActorRepository;
+    private final KeysetPagination pagination;
 
-    public FilmActorController(FilmActorRepository filmActorRepository) {
+    public FilmActorController(FilmActorRepository filmActorRepository, KeysetPagination pagination) {
         this.filmActorRepository = filmActorRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<FilmActorDTO>> getAllFilmActors() {
-        List<FilmActorDTO> filmActors = filmActorRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(filmActors, HttpStatus.OK);
+    public ResponseEntity<List<FilmActorDTO>> getAllFilmActors(@RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer size) {
+        short[] after = KeysetPagination.decodeShortCursor(cursor, 2);
+        List<FilmActorDTO> filmActors = filmActorRepository.findDtoPageAfter(
+                after[0], after[1], pagination.fetchLimit(size));
+        return pagination.page(filmActors, size,
+                filmActor -> KeysetPagination.encodeCursor(filmActor.actorId(), filmActor.filmId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllFilmActors() {
+        return pagination.stream(filmActorRepository::streamDtoByOrderByActorIdAscFilmIdAsc);
     }
 
     @GetMapping("/{actorId}/{filmId}")
     public ResponseEntity<FilmActorDTO> getFilmActorById(@PathVariable Short actorId, @PathVariable Short filmId) {
-        FilmActorId id = new FilmActorId(actorId, filmId);
-        Optional<FilmActorDTO> filmActor = filmActorRepository.findById(id).map(this::convertToDTO);
+        Optional<FilmActorDTO> filmActor = filmActorRepository.findDtoByActorIdAndFilmId(actorId, filmId);
         return filmActor.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -53,17 +60,13 @@ public class FilmActorController {
 
     @GetMapping("/actor/{actorId}")
     public ResponseEntity<List<FilmActorDTO>> getFilmsByActor(@PathVariable Short actorId) {
-        List<FilmActorDTO> filmActors = filmActorRepository.findByActorId(actorId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<FilmActorDTO> filmActors = filmActorRepository.findDtoByActorId(actorId);
         return new ResponseEntity<>(filmActors, HttpStatus.OK);
     }
 
     @GetMapping("/film/{filmId}")
     public ResponseEntity<List<FilmActorDTO>> getActorsByFilm(@PathVariable Short filmId) {
-        List<FilmActorDTO> filmActors = filmActorRepository.findByFilmId(filmId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<FilmActorDTO> filmActors = filmActorRepository.findDtoByFilmId(filmId);
         return new ResponseEntity<>(filmActors, HttpStatus.OK);
     }
 
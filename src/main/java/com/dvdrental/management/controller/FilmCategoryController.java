@@ -2,40 +2,47 @@ package com.dvdrental.management.controller;
 
 import com.dvdrental.management.dto.FilmCategoryDTO;
 import com.dvdrental.management.entity.FilmCategory;
-import com.dvdrental.management.entity.FilmCategoryId;
 import com.dvdrental.management.repository.FilmCategoryRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/film-categories")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class FilmCategoryController {
 
     private final FilmCategoryRepository filmCategoryRepository;
+    private final KeysetPagination pagination;
 
-    public FilmCategoryController(FilmCategoryRepository filmCategoryRepository) {
+    public FilmCategoryController(FilmCategoryRepository filmCategoryRepository, KeysetPagination pagination) {
         this.filmCategoryRepository = filmCategoryRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<FilmCategoryDTO>> getAllFilmCategories() {
-        List<FilmCategoryDTO> filmCategories = filmCategoryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(filmCategories, HttpStatus.OK);
+    public ResponseEntity<List<FilmCategoryDTO>> getAllFilmCategories(@RequestParam(required = false) String cursor,
+                                                                      @RequestParam(required = false) Integer size) {
+        short[] after = KeysetPagination.decodeShortCursor(cursor, 2);
+        List<FilmCategoryDTO> filmCategories = filmCategoryRepository.findDtoPageAfter(
+                after[0], after[1], pagination.fetchLimit(size));
+        return pagination.page(filmCategories, size,
+                filmCategory -> KeysetPagination.encodeCursor(filmCategory.filmId(), filmCategory.categoryId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllFilmCategories() {
+        return pagination.stream(filmCategoryRepository::streamDtoByOrderByFilmIdAscCategoryIdAsc);
     }
 
     @GetMapping("/{filmId}/{categoryId}")
     public ResponseEntity<FilmCategoryDTO> getFilmCategoryById(@PathVariable Short filmId, @PathVariable Short categoryId) {
-        FilmCategoryId id = new FilmCategoryId(filmId, categoryId);
-        Optional<FilmCategoryDTO> filmCategory = filmCategoryRepository.findById(id).map(this::convertToDTO);
+        Optional<FilmCategoryDTO> filmCategory = filmCategoryRepository.findDtoByFilmIdAndCategoryId(filmId, categoryId);
         return filmCategory.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -53,17 +60,13 @@ public class FilmCategoryController {
 
     @GetMapping("/film/{filmId}")
     public ResponseEntity<List<FilmCategoryDTO>> getCategoriesByFilm(@PathVariable Short filmId) {
-        List<FilmCategoryDTO> filmCategories = filmCategoryRepository.findByFilmId(filmId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<FilmCategoryDTO> filmCategories = filmCategoryRepository.findDtoByFilmId(filmId);
         return new ResponseEntity<>(filmCategories, HttpStatus.OK);
     }
 
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<List<FilmCategoryDTO>> getFilmsByCategory(@PathVariable Short categoryId) {
-        List<FilmCategoryDTO> filmCategories = filmCategoryRepository.findByCategoryId(categoryId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<FilmCategoryDTO> filmCategories = filmCategoryRepository.findDtoByCategoryId(categoryId);
         return new ResponseEntity<>(filmCategories, HttpStatus.OK);
     }
 
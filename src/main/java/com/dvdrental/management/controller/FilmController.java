@@ -1,30 +1,44 @@
 package com.dvdrental.management.controller;
 
 import com.dvdrental.management.dto.FilmDTO;
+import com.dvdrental.management.dto.FilmSearchResultDTO;
+import com.dvdrental.management.service.FilmSearchMode;
 import com.dvdrental.management.service.FilmService;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/films")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class FilmController {
 
     private final FilmService filmService;
+    private final KeysetPagination pagination;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, KeysetPagination pagination) {
         this.filmService = filmService;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<FilmDTO>> getAllFilms() {
-        List<FilmDTO> films = filmService.getAllFilms();
-        return new ResponseEntity<>(films, HttpStatus.OK);
+    public ResponseEntity<List<FilmDTO>> getAllFilms(@RequestParam(required = false) String cursor,
+                                                     @RequestParam(required = false) Integer size) {
+        List<FilmDTO> films = filmService.getFilmsAfter(KeysetPagination.decodeCursor(cursor),
+                pagination.fetchLimit(size));
+        return pagination.page(films, size, film -> KeysetPagination.encodeCursor(film.filmId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllFilms() {
+        return pagination.stream(filmService::streamAllFilms);
     }
 
     @GetMapping("/{id}")
@@ -66,7 +80,33 @@ public class FilmController {
         }
     }
 
-    @GetMapping("/search")
+    @GetMapping(value = "/search", params = "q")
+    public ResponseEntity<List<FilmSearchResultDTO>> searchFilms(@RequestParam String q,
+                                                                 @RequestParam(defaultValue = "web") String mode,
+                                                                 @RequestParam(required = false) String cursor,
+                                                                 @RequestParam(required = false) Integer size) {
+        FilmSearchMode searchMode;
+        try {
+            searchMode = FilmSearchMode.valueOf(mode.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // Results are ordered by rank, so the cursor is the offset of the next page
+        int offset = KeysetPagination.decodeOffsetCursor(cursor);
+        int pageSize = pagination.pageSize(size);
+        try {
+            List<FilmSearchResultDTO> results = filmService.searchFilms(q, searchMode, offset, pageSize + 1);
+            return pagination.page(results, size, last -> KeysetPagination.encodeCursor(offset + pageSize));
+        } catch (DataAccessException e) {
+            // to_tsquery rejects malformed queries
+            if (searchMode == FilmSearchMode.TSQUERY) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            throw e;
+        }
+    }
+
+    @GetMapping(value = "/search", params = "title")
     public ResponseEntity<List<FilmDTO>> searchFilmsByTitle(@RequestParam String title) {
         List<FilmDTO> films = filmService.searchFilmsByTitle(title);
         return new ResponseEntity<>(films, HttpStatus.OK);
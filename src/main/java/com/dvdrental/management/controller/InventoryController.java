@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.InventoryRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/inventory")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class InventoryController {
 
     private final InventoryRepository inventoryRepository;
+    private final KeysetPagination pagination;
 
-    public InventoryController(InventoryRepository inventoryRepository) {
+    public InventoryController(InventoryRepository inventoryRepository, KeysetPagination pagination) {
         this.inventoryRepository = inventoryRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<InventoryDTO>> getAllInventory() {
-        List<InventoryDTO> inventory = inventoryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(inventory, HttpStatus.OK);
+    public ResponseEntity<List<InventoryDTO>> getAllInventory(@RequestParam(required = false) String cursor,
+                                                              @RequestParam(required = false) Integer size) {
+        List<InventoryDTO> inventory = inventoryRepository.findDtoByInventoryIdGreaterThanOrderByInventoryId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(inventory, size, item -> KeysetPagination.encodeCursor(item.inventoryId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllInventory() {
+        return pagination.stream(inventoryRepository::streamDtoByOrderByInventoryId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<InventoryDTO> getInventoryById(@PathVariable Integer id) {
-        Optional<InventoryDTO> inventory = inventoryRepository.findById(id).map(this::convertToDTO);
+        Optional<InventoryDTO> inventory = inventoryRepository.findDtoByInventoryId(id);
         return inventory.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -51,17 +58,13 @@ public class InventoryController {
 
     @GetMapping("/film/{filmId}")
     public ResponseEntity<List<InventoryDTO>> getInventoryByFilm(@PathVariable Short filmId) {
-        List<InventoryDTO> inventory = inventoryRepository.findByFilmId(filmId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<InventoryDTO> inventory = inventoryRepository.findDtoByFilmId(filmId);
         return new ResponseEntity<>(inventory, HttpStatus.OK);
     }
 
     @GetMapping("/store/{storeId}")
     public ResponseEntity<List<InventoryDTO>> getInventoryByStore(@PathVariable Short storeId) {
-        List<InventoryDTO> inventory = inventoryRepository.findByStoreId(storeId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<InventoryDTO> inventory = inventoryRepository.findDtoByStoreId(storeId);
         return new ResponseEntity<>(inventory, HttpStatus.OK);
     }
 
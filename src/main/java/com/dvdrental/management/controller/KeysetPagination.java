@@ -0,0 +1,187 @@
+package com.dvdrental.management.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keyset pagination and NDJSON streaming for the list endpoints.
+ *
+ * A page is the rows whose primary key comes after the cursor, in key order, so every page costs
+ * one index range scan no matter how deep it is. The cursor is the last key of the previous page,
+ * encoded so that clients treat it as opaque; it is returned in the X-Next-Cursor header while
+ * more rows follow. Page sizes are capped at api.pagination.max-page-size.
+ *
+ * The stream mode writes one JSON document per line while the rows are read from a Spring Data
+ * Stream of DTO projections inside a read-only transaction, so nothing accumulates in the
+ * persistence context and the memory it needs does not grow with the table.
+ */
+@Component
+public class KeysetPagination {
+
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final Base64.Encoder CURSOR_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder CURSOR_DECODER = Base64.getUrlDecoder();
+
+    private final ObjectWriter lineWriter;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${api.pagination.default-page-size:100}")
+    private int defaultPageSize;
+
+    @Value("${api.pagination.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${api.pagination.stream-flush-rows:500}")
+    private int streamFlushRows;
+
+    public KeysetPagination(ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        // One document per line, even when the API pretty-prints
+        this.lineWriter = objectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Rows to fetch for a page: one more than the page holds, to tell whether another page follows
+     */
+    public Limit fetchLimit(Integer requestedSize) {
+        return Limit.of(pageSize(requestedSize) + 1);
+    }
+
+    public int pageSize(Integer requestedSize) {
+        if (requestedSize == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        if (requestedSize < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be positive");
+        }
+        return Math.min(requestedSize, maxPageSize);
+    }
+
+    /**
+     * Opaque cursor for the key of the last row of a page
+     */
+    public static String encodeCursor(Number... key) {
+        String text = Stream.of(key).map(String::valueOf).collect(Collectors.joining(","));
+        return CURSOR_ENCODER.encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Key after which the requested page starts; 0 (before every generated id) without a cursor
+     */
+    public static int[] decodeCursor(String cursor, int keyParts) {
+        int[] key = new int[keyParts];
+        if (cursor == null || cursor.isEmpty()) {
+            return key;
+        }
+        try {
+            String[] parts = new String(CURSOR_DECODER.decode(cursor), StandardCharsets.UTF_8).split(",");
+            if (parts.length != keyParts) {
+                throw new IllegalArgumentException("Expected " + keyParts + " key parts");
+            }
+            for (int i = 0; i < keyParts; i++) {
+                key[i] = Integer.parseInt(parts[i]);
+            }
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor", e);
+        }
+    }
+
+    public static int decodeCursor(String cursor) {
+        return decodeCursor(cursor, 1)[0];
+    }
+
+    /**
+     * Cursor of a smallint key, rejected like any other malformed cursor when a part does not fit a short
+     */
+    public static short[] decodeShortCursor(String cursor, int keyParts) {
+        int[] key = decodeCursor(cursor, keyParts);
+        short[] shortKey = new short[keyParts];
+        for (int i = 0; i < keyParts; i++) {
+            if (key[i] < Short.MIN_VALUE || key[i] > Short.MAX_VALUE) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
+            shortKey[i] = (short) key[i];
+        }
+        return shortKey;
+    }
+
+    /**
+     * Cursor holding the row offset of the next page, for results that have no unique sort key
+     */
+    public static int decodeOffsetCursor(String cursor) {
+        int offset = decodeCursor(cursor);
+        if (offset < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+        return offset;
+    }
+
+    /**
+     * Response for rows fetched with {@link #fetchLimit}: the page, and the cursor of the next one if any
+     */
+    public <T> ResponseEntity<List<T>> page(List<T> rows, Integer requestedSize, Function<T, String> cursorOf) {
+        int pageSize = pageSize(requestedSize);
+        if (rows.size() <= pageSize) {
+            return new ResponseEntity<>(rows, HttpStatus.OK);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        return ResponseEntity.ok()
+                .header(NEXT_CURSOR_HEADER, cursorOf.apply(page.get(pageSize - 1)))
+                .body(page);
+    }
+
+    /**
+     * NDJSON response writing the rows as they are read. The stream is opened, consumed and closed
+     * in a read-only transaction on the response thread.
+     */
+    public <T> ResponseEntity<StreamingResponseBody> stream(Supplier<Stream<T>> rows) {
+        StreamingResponseBody body = out -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<T> stream = rows.get()) {
+                writeLines(stream, out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private <T> void writeLines(Stream<T> stream, OutputStream out) throws IOException {
+        int written = 0;
+        for (Iterator<T> rows = stream.iterator(); rows.hasNext(); ) {
+            out.write(lineWriter.writeValueAsBytes(rows.next()));
+            out.write('\n');
+            if (++written % streamFlushRows == 0) {
+                out.flush();
+            }
+        }
+        out.flush();
+    }
+}
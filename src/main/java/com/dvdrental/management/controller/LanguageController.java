@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.LanguageRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/languages")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class LanguageController {
 
     private final LanguageRepository languageRepository;
+    private final KeysetPagination pagination;
 
-    public LanguageController(LanguageRepository languageRepository) {
+    public LanguageController(LanguageRepository languageRepository, KeysetPagination pagination) {
         this.languageRepository = languageRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<LanguageDTO>> getAllLanguages() {
-        List<LanguageDTO> languages = languageRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(languages, HttpStatus.OK);
+    public ResponseEntity<List<LanguageDTO>> getAllLanguages(@RequestParam(required = false) String cursor,
+                                                             @RequestParam(required = false) Integer size) {
+        List<LanguageDTO> languages = languageRepository.findDtoByLanguageIdGreaterThanOrderByLanguageId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(languages, size, language -> KeysetPagination.encodeCursor(language.languageId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllLanguages() {
+        return pagination.stream(languageRepository::streamDtoByOrderByLanguageId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<LanguageDTO> getLanguageById(@PathVariable Integer id) {
-        Optional<LanguageDTO> language = languageRepository.findById(id).map(this::convertToDTO);
+        Optional<LanguageDTO> language = languageRepository.findDtoByLanguageId(id);
         return language.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
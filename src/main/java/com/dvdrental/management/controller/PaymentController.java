@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.PaymentRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/payments")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class PaymentController {
 
     private final PaymentRepository paymentRepository;
+    private final KeysetPagination pagination;
 
-    public PaymentController(PaymentRepository paymentRepository) {
+    public PaymentController(PaymentRepository paymentRepository, KeysetPagination pagination) {
         this.paymentRepository = paymentRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<PaymentDTO>> getAllPayments() {
-        List<PaymentDTO> payments = paymentRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(payments, HttpStatus.OK);
+    public ResponseEntity<List<PaymentDTO>> getAllPayments(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer size) {
+        List<PaymentDTO> payments = paymentRepository.findDtoByPaymentIdGreaterThanOrderByPaymentId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(payments, size, payment -> KeysetPagination.encodeCursor(payment.paymentId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllPayments() {
+        return pagination.stream(paymentRepository::streamDtoByOrderByPaymentId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<PaymentDTO> getPaymentById(@PathVariable Integer id) {
-        Optional<PaymentDTO> payment = paymentRepository.findById(id).map(this::convertToDTO);
+        Optional<PaymentDTO> payment = paymentRepository.findDtoByPaymentId(id);
         return payment.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -51,9 +58,7 @@ public class PaymentController {
 
     @GetMapping("/customer/{customerId}")
     public ResponseEntity<List<PaymentDTO>> getPaymentsByCustomer(@PathVariable Short customerId) {
-        List<PaymentDTO> payments = paymentRepository.findByCustomerId(customerId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<PaymentDTO> payments = paymentRepository.findDtoByCustomerId(customerId);
         return new ResponseEntity<>(payments, HttpStatus.OK);
     }
 
@@ -1,10 +1,12 @@
 package com.dvdrental.management.controller;
 
 import com.dvdrental.management.service.RealMCPBackupService;
+import com.dvdrental.management.service.migration.LogicalReplicationSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @RestController
@@ -15,6 +17,9 @@ public class RealMCPBackupController {
     @Autowired
     private RealMCPBackupService realMCPBackupService;
     
+    @Autowired
+    private LogicalReplicationSource replicationSource;
+    
     /**
      * Main REAL MCP-coordinated backup endpoint
      */
@@ -34,6 +39,231 @@ public class RealMCPBackupController {
         }
     }
     
+    /**
+     * Resume an interrupted REAL MCP backup from its last checkpoints.
+     * Without a runId the most recent unfinished run is resumed.
+     */
+    @PostMapping("/resume")
+    public ResponseEntity<Map<String, Object>> resumeRealMCPBackup(@RequestParam(required = false) String runId) {
+        try {
+            Map<String, Object> result = realMCPBackupService.resumeRealMCPBackup(runId);
+            if ("error".equals(result.get("status")) && !result.containsKey("executionResult")) {
+                return ResponseEntity.badRequest().body(result);
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "REAL MCP backup resume failed: " + e.getMessage(),
+                    "mcpTools", "PostgreSQL_MCP + MongoDB_MCP"
+                ));
+        }
+    }
+    
+    /**
+     * Incremental sync: upsert only rows changed since the previous sync's last_update watermark
+     */
+    @PostMapping("/incremental")
+    public ResponseEntity<Map<String, Object>> executeIncrementalSync() {
+        try {
+            Map<String, Object> result = realMCPBackupService.executeIncrementalSync();
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Incremental sync failed: " + e.getMessage(),
+                    "mcpTools", "PostgreSQL_MCP + MongoDB_MCP"
+                ));
+        }
+    }
+    
+    /**
+     * Build a denormalized collection: films (with language, categories and actors) or
+     * customers (with address, store, rentals and payments)
+     */
+    @PostMapping("/transform/{collection}")
+    public ResponseEntity<Map<String, Object>> executeDocumentTransform(@PathVariable String collection) {
+        try {
+            Map<String, Object> result = realMCPBackupService.executeDocumentTransform(collection);
+            if ("error".equals(result.get("status")) && result.containsKey("availableCollections")) {
+                return ResponseEntity.badRequest().body(result);
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Document transform failed: " + e.getMessage(),
+                    "mcpTools", "PostgreSQL_MCP + MongoDB_MCP"
+                ));
+        }
+    }
+    
+    /**
+     * Source analysis from the PostgreSQL catalog: row estimates, sizes, columns, keys and indexes.
+     * Exact counts are opt-in; refresh bypasses the cached analysis.
+     */
+    @GetMapping("/analysis")
+    public ResponseEntity<Map<String, Object>> getSourceAnalysis(
+            @RequestParam(defaultValue = "false") boolean exactCounts,
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        try {
+            return ResponseEntity.ok(realMCPBackupService.getSourceAnalysis(exactCounts, refresh));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Source analysis failed: " + e.getMessage()
+                ));
+        }
+    }
+    
+    /**
+     * Current migration throttle limits and usage
+     */
+    @GetMapping("/throttle")
+    public ResponseEntity<Map<String, Object>> getMigrationThrottle() {
+        return ResponseEntity.ok(realMCPBackupService.getMigrationThrottle());
+    }
+    
+    /**
+     * Change the migration throttle while a backup runs, e.g. tighten it during business hours.
+     * Omitted limits stay as they are; a rate of 0 removes the rate limit. The stream limit must leave
+     * migration connections for the snapshot and checkpoint writes, other values are rejected.
+     */
+    @PutMapping("/throttle")
+    public ResponseEntity<Map<String, Object>> updateMigrationThrottle(
+            @RequestParam(required = false) Integer maxConcurrentStreams,
+            @RequestParam(required = false) Double maxRowsPerSecond) {
+        try {
+            return ResponseEntity.ok(realMCPBackupService.updateMigrationThrottle(maxConcurrentStreams, maxRowsPerSecond));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "status", "error",
+                    "error", e.getMessage()
+                ));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Throttle update failed: " + e.getMessage()
+                ));
+        }
+    }
+    
+    /**
+     * Dry-run cost estimate of the backup plan from catalog statistics and a short calibration run,
+     * projected at the given number of workers, with recommended worker count and batch size
+     */
+    @GetMapping("/plan/estimate")
+    public ResponseEntity<Map<String, Object>> estimateMigrationPlan(
+            @RequestParam(required = false) Integer workers,
+            @RequestParam(required = false) Integer calibrationRows,
+            @RequestParam(required = false) Boolean calibrateSink) {
+        try {
+            return ResponseEntity.ok(realMCPBackupService.estimateMigrationPlan(workers, calibrationRows, calibrateSink));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "status", "error",
+                    "error", e.getMessage()
+                ));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Plan estimate failed: " + e.getMessage()
+                ));
+        }
+    }
+    
+    /**
+     * Verify migrated collections against the source with chunked checksums, drilling down to
+     * the differing keys; all tables unless one is given
+     */
+    @PostMapping("/verify")
+    public ResponseEntity<Map<String, Object>> verifyMigration(@RequestParam(required = false) String table) {
+        try {
+            return ResponseEntity.ok(realMCPBackupService.executeVerification(table));
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Verification failed: " + e.getMessage()
+                ));
+        }
+    }
+    
+    /**
+     * Live migration progress: rows/sec, bytes/sec, batch latency percentiles and queue depths per table
+     */
+    @GetMapping("/progress")
+    public ResponseEntity<Map<String, Object>> getMigrationProgress() {
+        try {
+            return ResponseEntity.ok(realMCPBackupService.getMigrationProgress());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Migration progress unavailable: " + e.getMessage()
+                ));
+        }
+    }
+    
+    /**
+     * Start continuous replication of PostgreSQL changes from the logical replication slot
+     */
+    @PostMapping("/cdc/start")
+    public ResponseEntity<Map<String, Object>> startChangeDataCapture() {
+        try {
+            boolean started = replicationSource.start();
+            Map<String, Object> result = new LinkedHashMap<>(replicationSource.status());
+            result.put("status", started ? "started" : "already running");
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Change data capture failed to start: " + e.getMessage(),
+                    "note", "The PostgreSQL server needs wal_level=logical and the wal2json plugin"
+                ));
+        }
+    }
+    
+    /**
+     * Stop continuous replication; the slot is kept so a later start resumes from the last applied commit
+     */
+    @PostMapping("/cdc/stop")
+    public ResponseEntity<Map<String, Object>> stopChangeDataCapture(
+            @RequestParam(defaultValue = "false") boolean dropSlot) {
+        try {
+            replicationSource.stop();
+            Map<String, Object> result = new LinkedHashMap<>(replicationSource.status());
+            result.put("status", "stopped");
+            if (dropSlot) {
+                result.put("slotDropped", replicationSource.dropSlot());
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                .body(Map.of(
+                    "status", "error",
+                    "error", "Change data capture failed to stop: " + e.getMessage()
+                ));
+        }
+    }
+    
+    /**
+     * Replication progress and lag of the change data capture source
+     */
+    @GetMapping("/cdc/status")
+    public ResponseEntity<Map<String, Object>> getChangeDataCaptureStatus() {
+        return ResponseEntity.ok(replicationSource.status());
+    }
+    
     /**
      * Command-based endpoint for REAL MCP backup operations
      */
@@ -53,7 +283,17 @@ public class RealMCPBackupController {
         try {
             userCommand = userCommand.toLowerCase().trim();
             
-            if (userCommand.contains("backup") || userCommand.contains("sync")) {
+            if (userCommand.contains("resume")) {
+                // User wants to continue an interrupted backup from its checkpoints
+                Map<String, Object> result = realMCPBackupService.resumeRealMCPBackup(null);
+                return ResponseEntity.ok(result);
+                
+            } else if (userCommand.contains("incremental")) {
+                // User wants only the rows changed since the last sync
+                Map<String, Object> result = realMCPBackupService.executeIncrementalSync();
+                return ResponseEntity.ok(result);
+                
+            } else if (userCommand.contains("backup") || userCommand.contains("sync")) {
                 // User wants to backup/sync using REAL MCP tools
                 Map<String, Object> result = realMCPBackupService.executeRealMCPBackup();
                 return ResponseEntity.ok(result);
@@ -82,6 +322,8 @@ public class RealMCPBackupController {
                         "backup postgres to mongodb",
                         "sync databases using real mcp",
                         "analyze with real mcp tools",
+                        "resume interrupted backup",
+                        "incremental sync",
                         "real mcp backup status"
                     },
                     "note", "This system demonstrates REAL MCP tool coordination patterns"
@@ -95,6 +337,8 @@ public class RealMCPBackupController {
                             "backup postgres to mongodb",
                             "sync databases using real mcp",
                             "analyze with real mcp tools",
+                            "resume interrupted backup",
+                            "incremental sync",
                             "real mcp backup status"
                         },
                         "mcpTools", "PostgreSQL_MCP + MongoDB_MCP",
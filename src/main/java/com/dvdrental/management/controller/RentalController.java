@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.RentalRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/rentals")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class RentalController {
 
     private final RentalRepository rentalRepository;
+    private final KeysetPagination pagination;
 
-    public RentalController(RentalRepository rentalRepository) {
+    public RentalController(RentalRepository rentalRepository, KeysetPagination pagination) {
         this.rentalRepository = rentalRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<RentalDTO>> getAllRentals() {
-        List<RentalDTO> rentals = rentalRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(rentals, HttpStatus.OK);
+    public ResponseEntity<List<RentalDTO>> getAllRentals(@RequestParam(required = false) String cursor,
+                                                         @RequestParam(required = false) Integer size) {
+        List<RentalDTO> rentals = rentalRepository.findDtoByRentalIdGreaterThanOrderByRentalId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(rentals, size, rental -> KeysetPagination.encodeCursor(rental.rentalId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllRentals() {
+        return pagination.stream(rentalRepository::streamDtoByOrderByRentalId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<RentalDTO> getRentalById(@PathVariable Integer id) {
-        Optional<RentalDTO> rental = rentalRepository.findById(id).map(this::convertToDTO);
+        Optional<RentalDTO> rental = rentalRepository.findDtoByRentalId(id);
         return rental.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -78,17 +85,13 @@ public class RentalController {
 
     @GetMapping("/customer/{customerId}")
     public ResponseEntity<List<RentalDTO>> getRentalsByCustomer(@PathVariable Short customerId) {
-        List<RentalDTO> rentals = rentalRepository.findByCustomerId(customerId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<RentalDTO> rentals = rentalRepository.findDtoByCustomerId(customerId);
         return new ResponseEntity<>(rentals, HttpStatus.OK);
     }
 
     @GetMapping("/active/{customerId}")
     public ResponseEntity<List<RentalDTO>> getActiveRentalsByCustomer(@PathVariable Short customerId) {
-        List<RentalDTO> rentals = rentalRepository.findActiveRentalsByCustomer(customerId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<RentalDTO> rentals = rentalRepository.findActiveRentalDtosByCustomer(customerId);
         return new ResponseEntity<>(rentals, HttpStatus.OK);
     }
 
@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.StaffRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/staff")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class StaffController {
 
     private final StaffRepository staffRepository;
+    private final KeysetPagination pagination;
 
-    public StaffController(StaffRepository staffRepository) {
+    public StaffController(StaffRepository staffRepository, KeysetPagination pagination) {
         this.staffRepository = staffRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<StaffDTO>> getAllStaff() {
-        List<StaffDTO> staff = staffRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(staff, HttpStatus.OK);
+    public ResponseEntity<List<StaffDTO>> getAllStaff(@RequestParam(required = false) String cursor,
+                                                      @RequestParam(required = false) Integer size) {
+        List<StaffDTO> staff = staffRepository.findDtoByStaffIdGreaterThanOrderByStaffId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(staff, size, member -> KeysetPagination.encodeCursor(member.staffId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllStaff() {
+        return pagination.stream(staffRepository::streamDtoByOrderByStaffId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<StaffDTO> getStaffById(@PathVariable Integer id) {
-        Optional<StaffDTO> staff = staffRepository.findById(id).map(this::convertToDTO);
+        Optional<StaffDTO> staff = staffRepository.findDtoByStaffId(id);
         return staff.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
@@ -70,9 +77,7 @@ public class StaffController {
 
     @GetMapping("/store/{storeId}")
     public ResponseEntity<List<StaffDTO>> getStaffByStore(@PathVariable Short storeId) {
-        List<StaffDTO> staff = staffRepository.findByStoreId(storeId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        List<StaffDTO> staff = staffRepository.findDtoByStoreId(storeId);
         return new ResponseEntity<>(staff, HttpStatus.OK);
     }
 
@@ -6,34 +6,41 @@ import com.dvdrental.management.repository.StoreRepository;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/stores")
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = KeysetPagination.NEXT_CURSOR_HEADER)
 public class StoreController {
 
     private final StoreRepository storeRepository;
+    private final KeysetPagination pagination;
 
-    public StoreController(StoreRepository storeRepository) {
+    public StoreController(StoreRepository storeRepository, KeysetPagination pagination) {
         this.storeRepository = storeRepository;
+        this.pagination = pagination;
     }
 
     @GetMapping
-    public ResponseEntity<List<StoreDTO>> getAllStores() {
-        List<StoreDTO> stores = storeRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
-        return new ResponseEntity<>(stores, HttpStatus.OK);
+    public ResponseEntity<List<StoreDTO>> getAllStores(@RequestParam(required = false) String cursor,
+                                                       @RequestParam(required = false) Integer size) {
+        List<StoreDTO> stores = storeRepository.findDtoByStoreIdGreaterThanOrderByStoreId(
+                KeysetPagination.decodeCursor(cursor), pagination.fetchLimit(size));
+        return pagination.page(stores, size, store -> KeysetPagination.encodeCursor(store.storeId()));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAllStores() {
+        return pagination.stream(storeRepository::streamDtoByOrderByStoreId);
     }
 
     @GetMapping("/{id}")
     public ResponseEntity<StoreDTO> getStoreById(@PathVariable Integer id) {
-        Optional<StoreDTO> store = storeRepository.findById(id).map(this::convertToDTO);
+        Optional<StoreDTO> store = storeRepository.findDtoByStoreId(id);
         return store.map(value -> new ResponseEntity<>(value, HttpStatus.OK))
                 .orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
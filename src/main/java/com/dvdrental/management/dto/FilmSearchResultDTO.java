@@ -0,0 +1,7 @@
+package com.dvdrental.management.dto;
+
+public record FilmSearchResultDTO(
+    FilmDTO film,
+    Float rank,
+    String headline
+) {}
@@ -1,14 +1,28 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.ActorDTO;
 import com.dvdrental.management.entity.Actor;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ActorRepository extends JpaRepository<Actor, Integer> {
     List<Actor> findByFirstNameContainingIgnoreCase(String firstName);
     List<Actor> findByLastNameContainingIgnoreCase(String lastName);
     List<Actor> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String firstName, String lastName);
+
+    Optional<ActorDTO> findDtoByActorId(Integer actorId);
+    List<ActorDTO> findDtoByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String firstName, String lastName);
+    List<ActorDTO> findDtoByActorIdGreaterThanOrderByActorId(Integer actorId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<ActorDTO> streamDtoByOrderByActorId();
 }
@@ -1,14 +1,28 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.AddressDTO;
 import com.dvdrental.management.entity.Address;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface AddressRepository extends JpaRepository<Address, Integer> {
     List<Address> findByCityId(Short cityId);
     List<Address> findByDistrictContainingIgnoreCase(String district);
     List<Address> findByPostalCode(String postalCode);
+
+    Optional<AddressDTO> findDtoByAddressId(Integer addressId);
+    List<AddressDTO> findDtoByCityId(Short cityId);
+    List<AddressDTO> findDtoByAddressIdGreaterThanOrderByAddressId(Integer addressId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<AddressDTO> streamDtoByOrderByAddressId();
 }
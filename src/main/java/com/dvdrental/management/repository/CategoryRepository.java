@@ -1,14 +1,80 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.config.CacheConfig;
+import com.dvdrental.management.dto.CategoryDTO;
 import com.dvdrental.management.entity.Category;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Integer> {
     Optional<Category> findByNameIgnoreCase(String name);
     List<Category> findByNameContainingIgnoreCase(String name);
+
+    @Cacheable(CacheConfig.CATEGORIES)
+    Optional<CategoryDTO> findDtoByCategoryId(Integer categoryId);
+
+    @Cacheable(CacheConfig.CATEGORIES)
+    List<CategoryDTO> findDtoByCategoryIdGreaterThanOrderByCategoryId(Integer categoryId, Limit limit);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    <S extends Category> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteById(Integer id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void delete(Category entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    <S extends Category> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    <S extends Category> S saveAndFlush(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    <S extends Category> List<S> saveAllAndFlush(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteAllById(Iterable<? extends Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteAll(Iterable<? extends Category> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteAllInBatch(Iterable<Category> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CATEGORIES, allEntries = true)
+    void deleteAllInBatch();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<CategoryDTO> streamDtoByOrderByCategoryId();
 }
@@ -1,13 +1,83 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.config.CacheConfig;
+import com.dvdrental.management.dto.CityDTO;
 import com.dvdrental.management.entity.City;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CityRepository extends JpaRepository<City, Integer> {
     List<City> findByCityContainingIgnoreCase(String city);
     List<City> findByCountryId(Short countryId);
+
+    @Cacheable(CacheConfig.CITIES)
+    Optional<CityDTO> findDtoByCityId(Integer cityId);
+
+    @Cacheable(CacheConfig.CITIES)
+    List<CityDTO> findDtoByCountryId(Short countryId);
+
+    @Cacheable(CacheConfig.CITIES)
+    List<CityDTO> findDtoByCityIdGreaterThanOrderByCityId(Integer cityId, Limit limit);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    <S extends City> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteById(Integer id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void delete(City entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    <S extends City> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    <S extends City> S saveAndFlush(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    <S extends City> List<S> saveAllAndFlush(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteAllById(Iterable<? extends Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteAll(Iterable<? extends City> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteAllInBatch(Iterable<City> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.CITIES, allEntries = true)
+    void deleteAllInBatch();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<CityDTO> streamDtoByOrderByCityId();
 }
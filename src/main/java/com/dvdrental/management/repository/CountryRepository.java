@@ -1,12 +1,82 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.config.CacheConfig;
+import com.dvdrental.management.dto.CountryDTO;
 import com.dvdrental.management.entity.Country;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CountryRepository extends JpaRepository<Country, Integer> {
     List<Country> findByCountryContainingIgnoreCase(String country);
+
+    @Cacheable(CacheConfig.COUNTRIES)
+    Optional<CountryDTO> findDtoByCountryId(Integer countryId);
+
+    @Cacheable(CacheConfig.COUNTRIES)
+    List<CountryDTO> findDtoByCountryContainingIgnoreCase(String country);
+
+    @Cacheable(CacheConfig.COUNTRIES)
+    List<CountryDTO> findDtoByCountryIdGreaterThanOrderByCountryId(Integer countryId, Limit limit);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    <S extends Country> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteById(Integer id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void delete(Country entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    <S extends Country> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    <S extends Country> S saveAndFlush(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    <S extends Country> List<S> saveAllAndFlush(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteAllById(Iterable<? extends Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteAll(Iterable<? extends Country> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteAllInBatch(Iterable<Country> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.COUNTRIES, allEntries = true)
+    void deleteAllInBatch();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<CountryDTO> streamDtoByOrderByCountryId();
 }
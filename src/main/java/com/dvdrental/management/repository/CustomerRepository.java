@@ -1,11 +1,21 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.CustomerDTO;
 import com.dvdrental.management.entity.Customer;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Integer> {
@@ -13,4 +23,22 @@ public interface CustomerRepository extends JpaRepository<Customer, Integer> {
     List<Customer> findByActivebool(Boolean activebool);
     Optional<Customer> findByEmail(String email);
     List<Customer> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String firstName, String lastName);
+
+    Optional<CustomerDTO> findDtoByCustomerId(Integer customerId);
+    List<CustomerDTO> findDtoByStoreId(Short storeId);
+    Optional<CustomerDTO> findDtoByEmail(String email);
+    List<CustomerDTO> findDtoByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String firstName, String lastName);
+    List<CustomerDTO> findDtoByCustomerIdGreaterThanOrderByCustomerId(Integer customerId, Limit limit);
+
+    @Query("SELECT c.customerId AS id, c.lastUpdate AS version, local datetime AS checkedAt FROM Customer c WHERE c.lastUpdate > :since")
+    List<EntityVersion> findVersionsChangedAfter(@Param("since") LocalDateTime since);
+
+    @Query("SELECT c.customerId AS id, c.lastUpdate AS version, local datetime AS checkedAt FROM Customer c ORDER BY c.lastUpdate DESC")
+    List<EntityVersion> findLatestVersions(Limit limit);
+
+    @Query("SELECT c.customerId FROM Customer c WHERE c.customerId IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<CustomerDTO> streamDtoByOrderByCustomerId();
 }
@@ -0,0 +1,13 @@
+package com.dvdrental.management.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id and last_update of a row, for checking cached copies against the table, with the database's
+ * own time of the check so that both are read from the same clock
+ */
+public interface EntityVersion {
+    Integer getId();
+    LocalDateTime getVersion();
+    LocalDateTime getCheckedAt();
+}
@@ -1,14 +1,35 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.FilmActorDTO;
 import com.dvdrental.management.entity.FilmActor;
 import com.dvdrental.management.entity.FilmActorId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface FilmActorRepository extends JpaRepository<FilmActor, FilmActorId> {
     List<FilmActor> findByActorId(Short actorId);
     List<FilmActor> findByFilmId(Short filmId);
+
+    Optional<FilmActorDTO> findDtoByActorIdAndFilmId(Short actorId, Short filmId);
+    List<FilmActorDTO> findDtoByActorId(Short actorId);
+    List<FilmActorDTO> findDtoByFilmId(Short filmId);
+
+    @Query("SELECT new com.dvdrental.management.dto.FilmActorDTO(fa.actorId, fa.filmId, fa.lastUpdate) FROM FilmActor fa " +
+           "WHERE fa.actorId > :actorId OR (fa.actorId = :actorId AND fa.filmId > :filmId) " +
+           "ORDER BY fa.actorId, fa.filmId")
+    List<FilmActorDTO> findDtoPageAfter(@Param("actorId") Short actorId, @Param("filmId") Short filmId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<FilmActorDTO> streamDtoByOrderByActorIdAscFilmIdAsc();
 }
@@ -1,14 +1,35 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.FilmCategoryDTO;
 import com.dvdrental.management.entity.FilmCategory;
 import com.dvdrental.management.entity.FilmCategoryId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface FilmCategoryRepository extends JpaRepository<FilmCategory, FilmCategoryId> {
     List<FilmCategory> findByFilmId(Short filmId);
     List<FilmCategory> findByCategoryId(Short categoryId);
+
+    Optional<FilmCategoryDTO> findDtoByFilmIdAndCategoryId(Short filmId, Short categoryId);
+    List<FilmCategoryDTO> findDtoByFilmId(Short filmId);
+    List<FilmCategoryDTO> findDtoByCategoryId(Short categoryId);
+
+    @Query("SELECT new com.dvdrental.management.dto.FilmCategoryDTO(fc.filmId, fc.categoryId, fc.lastUpdate) FROM FilmCategory fc " +
+           "WHERE fc.filmId > :filmId OR (fc.filmId = :filmId AND fc.categoryId > :categoryId) " +
+           "ORDER BY fc.filmId, fc.categoryId")
+    List<FilmCategoryDTO> findDtoPageAfter(@Param("filmId") Short filmId, @Param("categoryId") Short categoryId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<FilmCategoryDTO> streamDtoByOrderByFilmIdAscCategoryIdAsc();
 }
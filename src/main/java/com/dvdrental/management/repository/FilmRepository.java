@@ -1,13 +1,22 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.FilmDTO;
 import com.dvdrental.management.entity.Film;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface FilmRepository extends JpaRepository<Film, Integer> {
@@ -20,4 +29,61 @@ public interface FilmRepository extends JpaRepository<Film, Integer> {
     
     @Query("SELECT f FROM Film f WHERE f.title LIKE %:keyword% OR f.description LIKE %:keyword%")
     List<Film> searchByKeyword(@Param("keyword") String keyword);
+
+    Optional<FilmDTO> findDtoByFilmId(Integer filmId);
+    List<FilmDTO> findDtoByReleaseYear(Integer releaseYear);
+    List<FilmDTO> findDtoByLanguageId(Short languageId);
+    List<FilmDTO> findDtoByRating(String rating);
+    List<FilmDTO> findDtoByRentalRateBetween(BigDecimal minRate, BigDecimal maxRate);
+    List<FilmDTO> findDtoByFilmIdGreaterThanOrderByFilmId(Integer filmId, Limit limit);
+
+    List<FilmDTO> findDtoByFilmIdIn(Collection<Integer> filmIds);
+
+    String SELECT_DTO = "SELECT new com.dvdrental.management.dto.FilmDTO(f.filmId, f.title, f.description, " +
+            "f.releaseYear, f.languageId, f.rentalDuration, f.rentalRate, f.length, f.replacementCost, f.rating, " +
+            "f.lastUpdate, f.specialFeatures) FROM Film f ";
+
+    // ILIKE rather than upper(title) LIKE upper(...), so that the pg_trgm index on title can serve it
+    @Query(SELECT_DTO + "WHERE f.title ILIKE concat('%', :title, '%')")
+    List<FilmDTO> findDtoByTitleContainingIgnoreCase(@Param("title") String title);
+
+    @Query(SELECT_DTO + "WHERE f.title LIKE %:keyword% OR f.description LIKE %:keyword%")
+    List<FilmDTO> searchDtoByKeyword(@Param("keyword") String keyword);
+
+    // Headlines are computed for the requested page only, not for every match
+    @Query(value = "SELECT hit.film_id AS filmId, hit.rank AS rank, " +
+                   "ts_headline('english', f.description, hit.query, 'MaxFragments=2, MinWords=5, MaxWords=20') AS headline " +
+                   "FROM (SELECT f.film_id, ts_rank(f.fulltext, q) AS rank, q AS query " +
+                   "      FROM film f, websearch_to_tsquery('english', :query) q " +
+                   "      WHERE f.fulltext @@ q ORDER BY rank DESC, f.film_id LIMIT :limit OFFSET :offset) hit " +
+                   "JOIN film f ON f.film_id = hit.film_id ORDER BY hit.rank DESC, hit.film_id",
+           nativeQuery = true)
+    List<FilmSearchHit> searchFullText(@Param("query") String query, @Param("offset") int offset, @Param("limit") int limit);
+
+    @Query(value = "SELECT hit.film_id AS filmId, hit.rank AS rank, " +
+                   "ts_headline('english', f.description, hit.query, 'MaxFragments=2, MinWords=5, MaxWords=20') AS headline " +
+                   "FROM (SELECT f.film_id, ts_rank(f.fulltext, q) AS rank, q AS query " +
+                   "      FROM film f, to_tsquery('english', :query) q " +
+                   "      WHERE f.fulltext @@ q ORDER BY rank DESC, f.film_id LIMIT :limit OFFSET :offset) hit " +
+                   "JOIN film f ON f.film_id = hit.film_id ORDER BY hit.rank DESC, hit.film_id",
+           nativeQuery = true)
+    List<FilmSearchHit> searchTsQuery(@Param("query") String query, @Param("offset") int offset, @Param("limit") int limit);
+
+    @Query(value = "SELECT f.film_id AS filmId, similarity(f.title, :query) AS rank, CAST(NULL AS text) AS headline " +
+                   "FROM film f WHERE f.title % :query " +
+                   "ORDER BY rank DESC, f.film_id LIMIT :limit OFFSET :offset",
+           nativeQuery = true)
+    List<FilmSearchHit> searchTitleTrigram(@Param("query") String query, @Param("offset") int offset, @Param("limit") int limit);
+
+    @Query("SELECT f.filmId AS id, f.lastUpdate AS version, local datetime AS checkedAt FROM Film f WHERE f.lastUpdate > :since")
+    List<EntityVersion> findVersionsChangedAfter(@Param("since") LocalDateTime since);
+
+    @Query("SELECT f.filmId AS id, f.lastUpdate AS version, local datetime AS checkedAt FROM Film f ORDER BY f.lastUpdate DESC")
+    List<EntityVersion> findLatestVersions(Limit limit);
+
+    @Query("SELECT f.filmId FROM Film f WHERE f.filmId IN :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Integer> ids);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<FilmDTO> streamDtoByOrderByFilmId();
 }
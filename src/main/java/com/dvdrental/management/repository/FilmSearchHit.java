@@ -0,0 +1,11 @@
+package com.dvdrental.management.repository;
+
+/**
+ * One match of a film search: the film, its relevance and a highlighted snippet (null when the
+ * search does not produce one)
+ */
+public interface FilmSearchHit {
+    Integer getFilmId();
+    Float getRank();
+    String getHeadline();
+}
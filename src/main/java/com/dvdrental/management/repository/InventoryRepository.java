@@ -1,14 +1,29 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.InventoryDTO;
 import com.dvdrental.management.entity.Inventory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface InventoryRepository extends JpaRepository<Inventory, Integer> {
     List<Inventory> findByFilmId(Short filmId);
     List<Inventory> findByStoreId(Short storeId);
     List<Inventory> findByFilmIdAndStoreId(Short filmId, Short storeId);
+
+    Optional<InventoryDTO> findDtoByInventoryId(Integer inventoryId);
+    List<InventoryDTO> findDtoByFilmId(Short filmId);
+    List<InventoryDTO> findDtoByStoreId(Short storeId);
+    List<InventoryDTO> findDtoByInventoryIdGreaterThanOrderByInventoryId(Integer inventoryId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<InventoryDTO> streamDtoByOrderByInventoryId();
 }
@@ -1,14 +1,80 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.config.CacheConfig;
+import com.dvdrental.management.dto.LanguageDTO;
 import com.dvdrental.management.entity.Language;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LanguageRepository extends JpaRepository<Language, Integer> {
     Optional<Language> findByNameIgnoreCase(String name);
     List<Language> findByNameContainingIgnoreCase(String name);
+
+    @Cacheable(CacheConfig.LANGUAGES)
+    Optional<LanguageDTO> findDtoByLanguageId(Integer languageId);
+
+    @Cacheable(CacheConfig.LANGUAGES)
+    List<LanguageDTO> findDtoByLanguageIdGreaterThanOrderByLanguageId(Integer languageId, Limit limit);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    <S extends Language> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteById(Integer id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void delete(Language entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    <S extends Language> List<S> saveAll(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    <S extends Language> S saveAndFlush(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    <S extends Language> List<S> saveAllAndFlush(Iterable<S> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteAllById(Iterable<? extends Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteAll(Iterable<? extends Language> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteAll();
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteAllInBatch(Iterable<Language> entities);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteAllByIdInBatch(Iterable<Integer> ids);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.LANGUAGES, allEntries = true)
+    void deleteAllInBatch();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<LanguageDTO> streamDtoByOrderByLanguageId();
 }
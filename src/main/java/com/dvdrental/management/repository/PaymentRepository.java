@@ -1,14 +1,21 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.PaymentDTO;
 import com.dvdrental.management.entity.Payment;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Integer> {
@@ -20,4 +27,11 @@ public interface PaymentRepository extends JpaRepository<Payment, Integer> {
     
     @Query("SELECT SUM(p.amount) FROM Payment p WHERE p.customerId = :customerId")
     BigDecimal getTotalPaymentsByCustomer(@Param("customerId") Short customerId);
+
+    Optional<PaymentDTO> findDtoByPaymentId(Integer paymentId);
+    List<PaymentDTO> findDtoByCustomerId(Short customerId);
+    List<PaymentDTO> findDtoByPaymentIdGreaterThanOrderByPaymentId(Integer paymentId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<PaymentDTO> streamDtoByOrderByPaymentId();
 }
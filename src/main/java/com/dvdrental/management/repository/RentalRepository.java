@@ -1,13 +1,20 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.RentalDTO;
 import com.dvdrental.management.entity.Rental;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface RentalRepository extends JpaRepository<Rental, Integer> {
@@ -19,4 +26,15 @@ public interface RentalRepository extends JpaRepository<Rental, Integer> {
     
     @Query("SELECT r FROM Rental r WHERE r.customerId = :customerId AND r.returnDate IS NULL")
     List<Rental> findActiveRentalsByCustomer(@Param("customerId") Short customerId);
+
+    Optional<RentalDTO> findDtoByRentalId(Integer rentalId);
+    List<RentalDTO> findDtoByCustomerId(Short customerId);
+    List<RentalDTO> findDtoByRentalIdGreaterThanOrderByRentalId(Integer rentalId, Limit limit);
+
+    @Query("SELECT new com.dvdrental.management.dto.RentalDTO(r.rentalId, r.rentalDate, r.inventoryId, r.customerId, " +
+           "r.returnDate, r.staffId, r.lastUpdate) FROM Rental r WHERE r.customerId = :customerId AND r.returnDate IS NULL")
+    List<RentalDTO> findActiveRentalDtosByCustomer(@Param("customerId") Short customerId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<RentalDTO> streamDtoByOrderByRentalId();
 }
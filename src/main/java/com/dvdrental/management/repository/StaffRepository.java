@@ -1,11 +1,19 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.StaffDTO;
 import com.dvdrental.management.entity.Staff;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StaffRepository extends JpaRepository<Staff, Integer> {
@@ -13,4 +21,22 @@ public interface StaffRepository extends JpaRepository<Staff, Integer> {
     List<Staff> findByActive(Boolean active);
     Optional<Staff> findByUsername(String username);
     List<Staff> findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(String firstName, String lastName);
+
+    // Selected explicitly so that the password never leaves the database
+    String SELECT_DTO = "SELECT new com.dvdrental.management.dto.StaffDTO(s.staffId, s.firstName, s.lastName, " +
+            "s.addressId, s.email, s.storeId, s.active, s.username, cast(null as String), s.lastUpdate, s.picture) " +
+            "FROM Staff s ";
+
+    @Query(SELECT_DTO + "WHERE s.staffId = :staffId")
+    Optional<StaffDTO> findDtoByStaffId(@Param("staffId") Integer staffId);
+
+    @Query(SELECT_DTO + "WHERE s.storeId = :storeId")
+    List<StaffDTO> findDtoByStoreId(@Param("storeId") Short storeId);
+
+    @Query(SELECT_DTO + "WHERE s.staffId > :staffId ORDER BY s.staffId")
+    List<StaffDTO> findDtoByStaffIdGreaterThanOrderByStaffId(@Param("staffId") Integer staffId, Limit limit);
+
+    @Query(SELECT_DTO + "ORDER BY s.staffId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<StaffDTO> streamDtoByOrderByStaffId();
 }
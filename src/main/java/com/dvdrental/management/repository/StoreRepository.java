@@ -1,13 +1,26 @@
 package com.dvdrental.management.repository;
 
+import com.dvdrental.management.dto.StoreDTO;
 import com.dvdrental.management.entity.Store;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StoreRepository extends JpaRepository<Store, Integer> {
     List<Store> findByManagerStaffId(Short managerStaffId);
     List<Store> findByAddressId(Short addressId);
+
+    Optional<StoreDTO> findDtoByStoreId(Integer storeId);
+    List<StoreDTO> findDtoByStoreIdGreaterThanOrderByStoreId(Integer storeId, Limit limit);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<StoreDTO> streamDtoByOrderByStoreId();
 }
@@ -1,12 +1,15 @@
 package com.dvdrental.management.service;
 
 import com.dvdrental.management.dto.ActorDTO;
+import org.springframework.data.domain.Limit;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ActorService {
-    List<ActorDTO> getAllActors();
+    List<ActorDTO> getActorsAfter(Integer afterActorId, Limit limit);
+    Stream<ActorDTO> streamAllActors();
     Optional<ActorDTO> getActorById(Integer id);
     ActorDTO saveActor(ActorDTO actorDTO);
     ActorDTO updateActor(Integer id, ActorDTO actorDTO);
@@ -3,12 +3,13 @@ package com.dvdrental.management.service;
 import com.dvdrental.management.dto.ActorDTO;
 import com.dvdrental.management.entity.Actor;
 import com.dvdrental.management.repository.ActorRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ActorServiceImpl implements ActorService {
@@ -20,15 +21,18 @@ public class ActorServiceImpl implements ActorService {
     }
 
     @Override
-    public List<ActorDTO> getAllActors() {
-        return actorRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<ActorDTO> getActorsAfter(Integer afterActorId, Limit limit) {
+        return actorRepository.findDtoByActorIdGreaterThanOrderByActorId(afterActorId, limit);
+    }
+
+    @Override
+    public Stream<ActorDTO> streamAllActors() {
+        return actorRepository.streamDtoByOrderByActorId();
     }
 
     @Override
     public Optional<ActorDTO> getActorById(Integer id) {
-        return actorRepository.findById(id).map(this::convertToDTO);
+        return actorRepository.findDtoByActorId(id);
     }
 
     @Override
@@ -60,9 +64,7 @@ public class ActorServiceImpl implements ActorService {
 
     @Override
     public List<ActorDTO> searchActorsByName(String name) {
-        return actorRepository.findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(name, name).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return actorRepository.findDtoByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(name, name);
     }
 
     private ActorDTO convertToDTO(Actor actor) {
@@ -1,12 +1,15 @@
 package com.dvdrental.management.service;
 
 import com.dvdrental.management.dto.CountryDTO;
+import org.springframework.data.domain.Limit;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CountryService {
-    List<CountryDTO> getAllCountries();
+    List<CountryDTO> getCountriesAfter(Integer afterCountryId, Limit limit);
+    Stream<CountryDTO> streamAllCountries();
     Optional<CountryDTO> getCountryById(Integer id);
     CountryDTO saveCountry(CountryDTO countryDTO);
     CountryDTO updateCountry(Integer id, CountryDTO countryDTO);
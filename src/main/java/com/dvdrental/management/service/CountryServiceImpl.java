@@ -3,12 +3,13 @@ package com.dvdrental.management.service;
 import com.dvdrental.management.dto.CountryDTO;
 import com.dvdrental.management.entity.Country;
 import com.dvdrental.management.repository.CountryRepository;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CountryServiceImpl implements CountryService {
@@ -20,15 +21,18 @@ public class CountryServiceImpl implements CountryService {
     }
 
     @Override
-    public List<CountryDTO> getAllCountries() {
-        return countryRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<CountryDTO> getCountriesAfter(Integer afterCountryId, Limit limit) {
+        return countryRepository.findDtoByCountryIdGreaterThanOrderByCountryId(afterCountryId, limit);
+    }
+
+    @Override
+    public Stream<CountryDTO> streamAllCountries() {
+        return countryRepository.streamDtoByOrderByCountryId();
     }
 
     @Override
     public Optional<CountryDTO> getCountryById(Integer id) {
-        return countryRepository.findById(id).map(this::convertToDTO);
+        return countryRepository.findDtoByCountryId(id);
     }
 
     @Override
@@ -59,9 +63,7 @@ public class CountryServiceImpl implements CountryService {
 
     @Override
     public List<CountryDTO> searchCountriesByName(String name) {
-        return countryRepository.findByCountryContainingIgnoreCase(name).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return countryRepository.findDtoByCountryContainingIgnoreCase(name);
     }
 
     private CountryDTO convertToDTO(Country country) {
@@ -1,12 +1,15 @@
 package com.dvdrental.management.service;
 
 import com.dvdrental.management.dto.CustomerDTO;
+import org.springframework.data.domain.Limit;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CustomerService {
-    List<CustomerDTO> getAllCustomers();
+    List<CustomerDTO> getCustomersAfter(Integer afterCustomerId, Limit limit);
+    Stream<CustomerDTO> streamAllCustomers();
     Optional<CustomerDTO> getCustomerById(Integer id);
     CustomerDTO saveCustomer(CustomerDTO customerDTO);
     CustomerDTO updateCustomer(Integer id, CustomerDTO customerDTO);
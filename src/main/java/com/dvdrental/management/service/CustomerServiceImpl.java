@@ -3,33 +3,40 @@ package com.dvdrental.management.service;
 import com.dvdrental.management.dto.CustomerDTO;
 import com.dvdrental.management.entity.Customer;
 import com.dvdrental.management.repository.CustomerRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CustomerServiceImpl implements CustomerService {
 
     private final CustomerRepository customerRepository;
+    private final VersionedDtoCache<CustomerDTO> customerCache;
 
-    public CustomerServiceImpl(CustomerRepository customerRepository) {
+    public CustomerServiceImpl(CustomerRepository customerRepository, VersionedDtoCache<CustomerDTO> customerCache) {
         this.customerRepository = customerRepository;
+        this.customerCache = customerCache;
     }
 
     @Override
-    public List<CustomerDTO> getAllCustomers() {
-        return customerRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<CustomerDTO> getCustomersAfter(Integer afterCustomerId, Limit limit) {
+        return customerRepository.findDtoByCustomerIdGreaterThanOrderByCustomerId(afterCustomerId, limit);
+    }
+
+    @Override
+    public Stream<CustomerDTO> streamAllCustomers() {
+        return customerRepository.streamDtoByOrderByCustomerId();
     }
 
     @Override
     public Optional<CustomerDTO> getCustomerById(Integer id) {
-        return customerRepository.findById(id).map(this::convertToDTO);
+        return customerCache.get(id, customerRepository::findDtoByCustomerId);
     }
 
     @Override
@@ -53,6 +60,7 @@ public class CustomerServiceImpl implements CustomerService {
         customer.setActive(customerDTO.active());
         
         Customer updatedCustomer = customerRepository.save(customer);
+        customerCache.evict(id);
         return convertToDTO(updatedCustomer);
     }
 
@@ -62,25 +70,33 @@ public class CustomerServiceImpl implements CustomerService {
             throw new RuntimeException("Customer not found with id: " + id);
         }
         customerRepository.deleteById(id);
+        customerCache.evict(id);
     }
 
     @Override
     public List<CustomerDTO> searchCustomersByName(String name) {
-        return customerRepository.findByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(name, name).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return customerRepository.findDtoByFirstNameContainingIgnoreCaseOrLastNameContainingIgnoreCase(name, name);
     }
 
     @Override
     public List<CustomerDTO> getCustomersByStore(Short storeId) {
-        return customerRepository.findByStoreId(storeId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return customerRepository.findDtoByStoreId(storeId);
     }
 
     @Override
     public Optional<CustomerDTO> getCustomerByEmail(String email) {
-        return customerRepository.findByEmail(email).map(this::convertToDTO);
+        return customerRepository.findDtoByEmail(email);
+    }
+
+    /**
+     * Evict cached customers whose row has since been changed or deleted, also by writers outside this service
+     */
+    @Scheduled(fixedDelayString = "${api.cache.hot.version-check-interval:PT30S}")
+    public void checkCachedCustomerVersions() {
+        customerCache.checkVersions(since -> since == null
+                ? customerRepository.findLatestVersions(Limit.of(1))
+                : customerRepository.findVersionsChangedAfter(since),
+                customerRepository::findExistingIds);
     }
 
     private CustomerDTO convertToDTO(Customer customer) {
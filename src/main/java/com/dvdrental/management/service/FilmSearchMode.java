@@ -0,0 +1,13 @@
+package com.dvdrental.management.service;
+
+/**
+ * How /api/films/search interprets its query
+ */
+public enum FilmSearchMode {
+    /** Search engine syntax (quoted phrases, or, -exclusion) via websearch_to_tsquery, ranked by ts_rank */
+    WEB,
+    /** Raw tsquery syntax (and, or, not, followed-by and prefix operators) via to_tsquery, ranked by ts_rank */
+    TSQUERY,
+    /** Fuzzy title match with pg_trgm, ranked by similarity */
+    TRIGRAM
+}
@@ -1,13 +1,17 @@
 package com.dvdrental.management.service;
 
 import com.dvdrental.management.dto.FilmDTO;
+import com.dvdrental.management.dto.FilmSearchResultDTO;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface FilmService {
-    List<FilmDTO> getAllFilms();
+    List<FilmDTO> getFilmsAfter(Integer afterFilmId, Limit limit);
+    Stream<FilmDTO> streamAllFilms();
     Optional<FilmDTO> getFilmById(Integer id);
     FilmDTO saveFilm(FilmDTO filmDTO);
     FilmDTO updateFilm(Integer id, FilmDTO filmDTO);
@@ -19,4 +23,5 @@ public interface FilmService {
     List<FilmDTO> getFilmsByRating(String rating);
     List<FilmDTO> getFilmsByRentalRateRange(BigDecimal minRate, BigDecimal maxRate);
     List<FilmDTO> searchFilmsByKeyword(String keyword);
+    List<FilmSearchResultDTO> searchFilms(String query, FilmSearchMode mode, int offset, int limit);
 }
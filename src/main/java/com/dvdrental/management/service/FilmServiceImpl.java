@@ -1,35 +1,47 @@
 package com.dvdrental.management.service;
 
 import com.dvdrental.management.dto.FilmDTO;
+import com.dvdrental.management.dto.FilmSearchResultDTO;
 import com.dvdrental.management.entity.Film;
 import com.dvdrental.management.repository.FilmRepository;
+import com.dvdrental.management.repository.FilmSearchHit;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class FilmServiceImpl implements FilmService {
 
     private final FilmRepository filmRepository;
+    private final VersionedDtoCache<FilmDTO> filmCache;
 
-    public FilmServiceImpl(FilmRepository filmRepository) {
+    public FilmServiceImpl(FilmRepository filmRepository, VersionedDtoCache<FilmDTO> filmCache) {
         this.filmRepository = filmRepository;
+        this.filmCache = filmCache;
     }
 
     @Override
-    public List<FilmDTO> getAllFilms() {
-        return filmRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    public List<FilmDTO> getFilmsAfter(Integer afterFilmId, Limit limit) {
+        return filmRepository.findDtoByFilmIdGreaterThanOrderByFilmId(afterFilmId, limit);
+    }
+
+    @Override
+    public Stream<FilmDTO> streamAllFilms() {
+        return filmRepository.streamDtoByOrderByFilmId();
     }
 
     @Override
     public Optional<FilmDTO> getFilmById(Integer id) {
-        return filmRepository.findById(id).map(this::convertToDTO);
+        return filmCache.get(id, filmRepository::findDtoByFilmId);
     }
 
     @Override
@@ -56,6 +68,7 @@ public class FilmServiceImpl implements FilmService {
         film.setSpecialFeatures(filmDTO.specialFeatures());
         
         Film updatedFilm = filmRepository.save(film);
+        filmCache.evict(id);
         return convertToDTO(updatedFilm);
     }
 
@@ -65,50 +78,70 @@ public class FilmServiceImpl implements FilmService {
             throw new RuntimeException("Film not found with id: " + id);
         }
         filmRepository.deleteById(id);
+        filmCache.evict(id);
     }
 
     @Override
     public List<FilmDTO> searchFilmsByTitle(String title) {
-        return filmRepository.findByTitleContainingIgnoreCase(title).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return filmRepository.findDtoByTitleContainingIgnoreCase(title);
     }
 
     @Override
     public List<FilmDTO> getFilmsByYear(Integer year) {
-        return filmRepository.findByReleaseYear(year).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return filmRepository.findDtoByReleaseYear(year);
     }
 
     @Override
     public List<FilmDTO> getFilmsByLanguage(Short languageId) {
-        return filmRepository.findByLanguageId(languageId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return filmRepository.findDtoByLanguageId(languageId);
     }
 
     @Override
     public List<FilmDTO> getFilmsByRating(String rating) {
-        return filmRepository.findByRating(rating).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return filmRepository.findDtoByRating(rating);
     }
 
     @Override
     public List<FilmDTO> getFilmsByRentalRateRange(BigDecimal minRate, BigDecimal maxRate) {
-        return filmRepository.findByRentalRateBetween(minRate, maxRate).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return filmRepository.findDtoByRentalRateBetween(minRate, maxRate);
     }
 
     @Override
     public List<FilmDTO> searchFilmsByKeyword(String keyword) {
-        return filmRepository.searchByKeyword(keyword).stream()
-                .map(this::convertToDTO)
+        return filmRepository.searchDtoByKeyword(keyword);
+    }
+
+    @Override
+    public List<FilmSearchResultDTO> searchFilms(String query, FilmSearchMode mode, int offset, int limit) {
+        List<FilmSearchHit> hits = switch (mode) {
+            case WEB -> filmRepository.searchFullText(query, offset, limit);
+            case TSQUERY -> filmRepository.searchTsQuery(query, offset, limit);
+            case TRIGRAM -> filmRepository.searchTitleTrigram(query, offset, limit);
+        };
+        if (hits.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, FilmDTO> films = filmRepository.findDtoByFilmIdIn(
+                        hits.stream().map(FilmSearchHit::getFilmId).collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(FilmDTO::filmId, Function.identity()));
+        // Keep the ranked order of the hits
+        return hits.stream()
+                .filter(hit -> films.containsKey(hit.getFilmId()))
+                .map(hit -> new FilmSearchResultDTO(films.get(hit.getFilmId()), hit.getRank(), hit.getHeadline()))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Evict cached films whose row has since been changed or deleted, also by writers outside this service
+     */
+    @Scheduled(fixedDelayString = "${api.cache.hot.version-check-interval:PT30S}")
+    public void checkCachedFilmVersions() {
+        filmCache.checkVersions(since -> since == null
+                ? filmRepository.findLatestVersions(Limit.of(1))
+                : filmRepository.findVersionsChangedAfter(since),
+                filmRepository::findExistingIds);
+    }
+
     private FilmDTO convertToDTO(Film film) {
         return new FilmDTO(
                 film.getFilmId(),
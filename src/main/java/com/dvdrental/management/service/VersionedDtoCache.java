@@ -0,0 +1,164 @@
+package com.dvdrental.management.service;
+
+import com.dvdrental.management.repository.EntityVersion;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded in-process cache of DTOs by id, kept in step with the table through its last_update
+ * column.
+ *
+ * Writes made through the services evict their entry. Writes made anywhere else (or a read that
+ * raced a write and cached the old row) are caught by {@link #checkVersions}: it is given the ids
+ * and last_update of the rows changed since the previous check, and drops every cached entry
+ * whose own lastUpdate is older. The check re-reads an overlap window before its watermark, since
+ * last_update is set when a transaction writes the row, not when it commits. Until the first check
+ * there is no watermark, so the first one clears the whole cache. Rows deleted since they were
+ * cached leave nothing to compare, so the check also looks up which cached ids still exist and
+ * drops the others.
+ *
+ * Meters: cache.gets (hit/miss), cache.size and cache.evictions from Caffeine, cache.hit.ratio,
+ * cache.stale.evictions (by reason, changed or deleted) and cache.staleness (time from the change
+ * to its detection, both read from the database clock), all tagged with the cache name.
+ */
+public class VersionedDtoCache<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(VersionedDtoCache.class);
+
+    private static final int EXISTENCE_CHECK_BATCH = 1000;
+
+    private final String name;
+    private final Function<V, LocalDateTime> versionOf;
+    private final Duration overlap;
+    private final Cache<Integer, V> cache;
+    private final Counter changedEvictions;
+    private final Counter deletedEvictions;
+    private final Timer staleness;
+
+    private volatile LocalDateTime watermark;
+
+    public VersionedDtoCache(String name, Function<V, LocalDateTime> versionOf, long maximumSize,
+                             Duration expireAfterWrite, Duration overlap, MeterRegistry registry) {
+        this.name = name;
+        this.versionOf = versionOf;
+        this.overlap = overlap;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWrite)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        Gauge.builder("cache.hit.ratio", cache, c -> c.stats().hitRate())
+            .description("Share of lookups served from the cache")
+            .tags("cache", name)
+            .register(registry);
+        this.changedEvictions = Counter.builder("cache.stale.evictions")
+            .description("Cached entries dropped because the row was changed or deleted")
+            .tags("cache", name, "reason", "changed")
+            .register(registry);
+        this.deletedEvictions = Counter.builder("cache.stale.evictions")
+            .description("Cached entries dropped because the row was changed or deleted")
+            .tags("cache", name, "reason", "deleted")
+            .register(registry);
+        this.staleness = Timer.builder("cache.staleness")
+            .description("Time from a row's last_update to the eviction of its stale cached copy")
+            .tags("cache", name)
+            .register(registry);
+    }
+
+    /**
+     * Cached value for the id, or the loader's result, which is cached when present
+     */
+    public Optional<V> get(Integer id, Function<Integer, Optional<V>> loader) {
+        V cached = cache.getIfPresent(id);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<V> loaded = loader.apply(id);
+        loaded.ifPresent(value -> cache.put(id, value));
+        return loaded;
+    }
+
+    public void evict(Integer id) {
+        cache.invalidate(id);
+    }
+
+    /**
+     * Drop entries older than the given row versions, and entries whose row is gone. changedRows is
+     * called with the time from which rows must be read, or with null on the first check, when only
+     * the current maximum last_update (a single row) is needed to start the watermark. existingIds is
+     * given cached ids in batches and returns those that still have a row.
+     */
+    public void checkVersions(Function<LocalDateTime, List<EntityVersion>> changedRows,
+                              Function<List<Integer>, List<Integer>> existingIds) {
+        LocalDateTime since = watermark;
+        List<EntityVersion> versions = changedRows.apply(since == null ? null : since.minus(overlap));
+        if (since == null) {
+            cache.invalidateAll();
+        }
+        LocalDateTime latest = since;
+        int stale = 0;
+        for (EntityVersion version : versions) {
+            if (version.getVersion() == null) {
+                continue;
+            }
+            // Through the map view, so that checks do not count as cache hits or misses
+            V cached = cache.asMap().get(version.getId());
+            if (cached != null && isOlder(versionOf.apply(cached), version.getVersion())) {
+                cache.invalidate(version.getId());
+                changedEvictions.increment();
+                Duration lag = Duration.between(version.getVersion(), version.getCheckedAt());
+                if (!lag.isNegative()) {
+                    staleness.record(lag);
+                }
+                stale++;
+            }
+            if (latest == null || version.getVersion().isAfter(latest)) {
+                latest = version.getVersion();
+            }
+        }
+        // Stays unset while the table is empty, so the next check starts over
+        watermark = latest;
+        int deleted = evictDeleted(existingIds);
+        if (stale > 0 || deleted > 0) {
+            logger.debug("Evicted {} changed and {} deleted entries from the {} cache", stale, deleted, name);
+        }
+    }
+
+    private int evictDeleted(Function<List<Integer>, List<Integer>> existingIds) {
+        List<Integer> cachedIds = new ArrayList<>(cache.asMap().keySet());
+        int deleted = 0;
+        for (int from = 0; from < cachedIds.size(); from += EXISTENCE_CHECK_BATCH) {
+            List<Integer> batch = cachedIds.subList(from, Math.min(cachedIds.size(), from + EXISTENCE_CHECK_BATCH));
+            Set<Integer> existing = new HashSet<>(existingIds.apply(batch));
+            for (Integer id : batch) {
+                if (!existing.contains(id)) {
+                    cache.invalidate(id);
+                    deletedEvictions.increment();
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static boolean isOlder(LocalDateTime cachedVersion, LocalDateTime currentVersion) {
+        return cachedVersion == null || cachedVersion.isBefore(currentVersion);
+    }
+}
@@ -0,0 +1,125 @@
+package com.dvdrental.management.service.migration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * AIMD controller for the page size of one table, shared by all of its chunk pipelines.
+ *
+ * Every page acknowledged by the sink within the latency target grows the page by a fixed step
+ * (additive increase); a page over the target, which includes sink retries and their backoff,
+ * halves it (multiplicative decrease). Pages acknowledged together are all measured against the
+ * size they were sent with, so only one decrease is taken per latency target interval.
+ * The size settles where a page takes about the target latency to land, which is the largest
+ * page the target absorbs without queueing, and is always capped by the bytes a page may hold
+ * (from the observed average row width) so wide rows cannot exceed the heap or request budget.
+ */
+public class AdaptiveBatchSizer {
+
+    private final int minSize;
+    private final int maxSize;
+    private final int increaseStep;
+    private final long targetLatencyNanos;
+    private final long maxPageBytes;
+    private final LongSupplier nanoClock;
+
+    private int size;
+    private double averageRowBytes;
+    private boolean decreasedBefore;
+    private long lastDecreaseNanos;
+    private long increases;
+    private long decreases;
+    private long pagesObserved;
+
+    public AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, int increaseStep,
+                              long targetLatencyMillis, long maxPageBytes) {
+        this(initialSize, minSize, maxSize, increaseStep, targetLatencyMillis, maxPageBytes, System::nanoTime);
+    }
+
+    /**
+     * Same as the public constructor, timing decreases with the given nanosecond clock
+     */
+    AdaptiveBatchSizer(int initialSize, int minSize, int maxSize, int increaseStep,
+                       long targetLatencyMillis, long maxPageBytes, LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.minSize = Math.max(1, minSize);
+        this.maxSize = Math.max(this.minSize, maxSize);
+        this.size = clamp(initialSize);
+        this.increaseStep = Math.max(1, increaseStep);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatencyMillis));
+        this.maxPageBytes = Math.max(1, maxPageBytes);
+    }
+
+    /**
+     * Rows for the next page: the controller's size, capped by the page byte budget
+     */
+    public synchronized int currentSize() {
+        if (averageRowBytes <= 0) {
+            return size;
+        }
+        long byBytes = (long) (maxPageBytes / averageRowBytes);
+        return (int) Math.max(minSize, Math.min(size, byBytes));
+    }
+
+    /**
+     * A page of rows and bytes was acknowledged by the sink latencyNanos after it entered the load stage
+     */
+    public synchronized void onAcknowledged(int rows, long bytes, long latencyNanos) {
+        pagesObserved++;
+        if (rows > 0) {
+            double rowBytes = (double) bytes / rows;
+            // Exponential moving average, so a few unusually wide pages do not dominate
+            averageRowBytes = averageRowBytes <= 0 ? rowBytes : averageRowBytes * 0.8 + rowBytes * 0.2;
+        }
+        if (latencyNanos > targetLatencyNanos) {
+            decrease();
+        } else if (rows >= currentSize()) {
+            // Only full pages say anything about whether a larger page would still fit the target
+            int grown = clamp(size + increaseStep);
+            if (grown != size) {
+                size = grown;
+                increases++;
+            }
+        }
+    }
+
+    /**
+     * A page could not be written; back off as for a page over the latency target
+     */
+    public synchronized void onFailure() {
+        decrease();
+    }
+
+    private void decrease() {
+        long now = nanoClock.getAsLong();
+        if (decreasedBefore && now - lastDecreaseNanos < targetLatencyNanos) {
+            return;
+        }
+        decreasedBefore = true;
+        lastDecreaseNanos = now;
+        int shrunk = clamp(size / 2);
+        if (shrunk != size) {
+            size = shrunk;
+            decreases++;
+        }
+    }
+
+    private int clamp(int value) {
+        return Math.max(minSize, Math.min(maxSize, value));
+    }
+
+    public synchronized Map<String, Object> toMap() {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("currentSize", currentSize());
+        view.put("minSize", minSize);
+        view.put("maxSize", maxSize);
+        view.put("targetLatencyMillis", TimeUnit.NANOSECONDS.toMillis(targetLatencyNanos));
+        view.put("averageRowBytes", Math.round(averageRowBytes));
+        view.put("pagesObserved", pagesObserved);
+        view.put("increases", increases);
+        view.put("decreases", decreases);
+        return view;
+    }
+}
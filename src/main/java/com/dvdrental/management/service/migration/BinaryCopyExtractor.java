@@ -0,0 +1,290 @@
+package com.dvdrental.management.service.migration;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a table with {@code COPY (SELECT ...) TO STDOUT (FORMAT binary)} through the PostgreSQL
+ * CopyManager and decodes the binary tuples straight into the handler's {@link ColumnarRowBatch}.
+ *
+ * This skips the per-column ResultSet accessors and text parsing of the query path: each field is
+ * decoded from its send representation by a {@link PgBinaryFieldDecoder} chosen once per column
+ * from pg_type, and fixed-width fields land in the batch's primitive columns without boxing.
+ * Columns of types without a decoder are selected as ::text. Rows come out in primary-key order,
+ * so pages still carry their last key and checkpoints work exactly as for keyset extraction.
+ * The column types are read from the catalog on the connection of every COPY, and the decoders are
+ * rebuilt when they no longer match, so a schema change between runs is picked up.
+ */
+@Component
+public class BinaryCopyExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(BinaryCopyExtractor.class);
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    private static final int STREAM_BUFFER_BYTES = 1 << 16;
+
+    private static final String COLUMN_TYPES_QUERY =
+        "SELECT a.attname, " +
+        "CASE WHEN t.typtype = 'd' THEN bt.typname WHEN t.typtype = 'e' THEN 'enum' ELSE t.typname END, " +
+        "CASE WHEN et.typtype = 'e' THEN 'enum' ELSE et.typname END " +
+        "FROM pg_attribute a " +
+        "JOIN pg_type t ON t.oid = a.atttypid " +
+        "LEFT JOIN pg_type bt ON bt.oid = t.typbasetype " +
+        "LEFT JOIN pg_type et ON et.oid = t.typelem AND t.typcategory = 'A' " +
+        "WHERE a.attrelid = to_regclass('public.' || quote_ident(?)) AND a.attnum > 0 AND NOT a.attisdropped " +
+        "ORDER BY a.attnum";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, ResolvedColumns> columnsByTable = new ConcurrentHashMap<>();
+
+    public BinaryCopyExtractor(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Column to copy: the SQL expression selected and the decoder for its binary form
+     */
+    private record CopyColumn(String name, String selectExpression, PgBinaryFieldDecoder decoder) {}
+
+    /**
+     * A column as listed in the catalog: its name, type and array element type (null for scalars)
+     */
+    private record ColumnType(String name, String typeName, String elementType) {}
+
+    private record ResolvedColumns(List<ColumnType> types, List<CopyColumn> columns) {}
+
+    /**
+     * Key types whose decoded values can be fed back as a resume key
+     */
+    static boolean isResumableKey(List<KeysetTableExtractor.KeyColumn> keyColumns) {
+        return keyColumns.stream().allMatch(column -> {
+            String type = column.sqlType();
+            return type.equals("integer") || type.equals("smallint") || type.equals("bigint")
+                || type.equals("text") || type.startsWith("character varying");
+        });
+    }
+
+    /**
+     * Copy the rows of the table that are inside the range (all when null), sort after startAfterKey
+     * (all when null) and match the filter condition, calling onPage after every page of
+     * {@link RowHandler#nextPageSize} rows.
+     * The filter must not have bind parameters, COPY cannot take any.
+     */
+    long extract(String tableName, List<KeysetTableExtractor.KeyColumn> keyColumns, int pageSize,
+                 KeyRange range, Object[] startAfterKey, RowFilter filter, RowHandler handler) {
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            List<CopyColumn> columns = resolveColumns(con, tableName);
+            String sql = copySql(tableName, columns, keyColumns, range, startAfterKey, filter);
+            logger.debug("Binary copy of {}: {}", tableName, sql);
+
+            List<String> columnNames = columns.stream().map(CopyColumn::name).toList();
+            int[] keyIndexes = keyColumns.stream().mapToInt(key -> columnNames.indexOf(key.name())).toArray();
+            PgBinaryFieldDecoder[] decoders = columns.stream().map(CopyColumn::decoder)
+                .toArray(PgBinaryFieldDecoder[]::new);
+            List<RowCodec.ColumnKind> kinds = columns.stream().map(column -> column.decoder().kind()).toList();
+
+            PGConnection pgConnection = con.unwrap(PGConnection.class);
+            try (PGCopyInputStream copy = new PGCopyInputStream(pgConnection, sql);
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(copy, STREAM_BUFFER_BYTES))) {
+                handler.onColumns(columnNames, kinds);
+                return readTuples(in, decoders, keyIndexes, Math.max(1, pageSize), handler);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Binary copy of " + tableName + " failed", e);
+            }
+        });
+        return copied != null ? copied : 0L;
+    }
+
+    private static long readTuples(DataInputStream in, PgBinaryFieldDecoder[] decoders, int[] keyIndexes,
+                                   int pageSize, RowHandler handler) throws IOException {
+        readHeader(in);
+
+        byte[] field = new byte[256];
+        ByteBuffer buffer = ByteBuffer.wrap(field);
+        long rows = 0;
+        int rowsInPage = 0;
+        int pageLimit = Math.max(1, handler.nextPageSize(pageSize));
+        ColumnarRowBatch batch = null;
+        int row = -1;
+
+        while (true) {
+            short fieldCount;
+            try {
+                fieldCount = in.readShort();
+            } catch (EOFException e) {
+                break;
+            }
+            if (fieldCount == -1) {
+                break;
+            }
+            if (fieldCount != decoders.length) {
+                throw new IOException("Expected " + decoders.length + " fields per tuple, got " + fieldCount);
+            }
+
+            batch = handler.decodedRows();
+            row = batch.addRow();
+            for (int i = 0; i < fieldCount; i++) {
+                int length = in.readInt();
+                if (length < 0) {
+                    batch.setNull(i, row);
+                    continue;
+                }
+                if (length > field.length) {
+                    field = new byte[Math.max(length, field.length * 2)];
+                    buffer = ByteBuffer.wrap(field);
+                }
+                in.readFully(field, 0, length);
+                buffer.clear().limit(length);
+                decoders[i].decodeInto(buffer, length, batch, i, row);
+            }
+
+            rows++;
+            if (++rowsInPage >= pageLimit) {
+                handler.onPage(rowsInPage, lastKey(batch, row, keyIndexes));
+                rowsInPage = 0;
+                pageLimit = Math.max(1, handler.nextPageSize(pageSize));
+            }
+        }
+
+        if (rowsInPage > 0) {
+            handler.onPage(rowsInPage, lastKey(batch, row, keyIndexes));
+        }
+        return rows;
+    }
+
+    private static void readHeader(DataInputStream in) throws IOException {
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("Not a PostgreSQL binary COPY stream");
+        }
+        int flags = in.readInt();
+        if ((flags & (1 << 16)) != 0) {
+            throw new IOException("Binary COPY with OIDs is not supported");
+        }
+        int extensionLength = in.readInt();
+        in.skipNBytes(extensionLength);
+    }
+
+    private static Object[] lastKey(ColumnarRowBatch batch, int row, int[] keyIndexes) {
+        if (keyIndexes.length == 0) {
+            return null;
+        }
+        Object[] key = new Object[keyIndexes.length];
+        for (int k = 0; k < keyIndexes.length; k++) {
+            key[k] = batch.getValue(keyIndexes[k], row);
+        }
+        return key;
+    }
+
+    /**
+     * Columns to copy, as the catalog lists them now; the decoders of the previous copy of the
+     * table are reused while its column names and types are unchanged
+     */
+    private List<CopyColumn> resolveColumns(Connection con, String tableName) throws SQLException {
+        List<ColumnType> types = new ArrayList<>();
+        try (PreparedStatement ps = con.prepareStatement(COLUMN_TYPES_QUERY)) {
+            ps.setString(1, tableName);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    types.add(new ColumnType(rs.getString(1), rs.getString(2), rs.getString(3)));
+                }
+            }
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("Table not found for binary copy: " + tableName);
+        }
+
+        ResolvedColumns cached = columnsByTable.get(tableName);
+        if (cached != null && cached.types().equals(types)) {
+            return cached.columns();
+        }
+        if (cached != null) {
+            logger.info("Columns of {} changed since its last binary copy, rebuilding the decoders", tableName);
+        }
+        List<CopyColumn> columns = types.stream().map(BinaryCopyExtractor::copyColumn).toList();
+        columnsByTable.put(tableName, new ResolvedColumns(types, columns));
+        return columns;
+    }
+
+    private static CopyColumn copyColumn(ColumnType type) {
+        String quoted = KeysetTableExtractor.quoteIdentifier(type.name());
+        if (type.elementType() != null) {
+            PgBinaryFieldDecoder elementDecoder = PgBinaryFieldDecoder.forType(type.elementType());
+            return elementDecoder != null
+                ? new CopyColumn(type.name(), quoted, PgBinaryFieldDecoder.arrayOf(elementDecoder))
+                : new CopyColumn(type.name(), quoted + "::text[]", PgBinaryFieldDecoder.arrayOf(PgBinaryFieldDecoder.TEXT));
+        }
+        PgBinaryFieldDecoder decoder = PgBinaryFieldDecoder.forType(type.typeName());
+        return decoder != null
+            ? new CopyColumn(type.name(), quoted, decoder)
+            : new CopyColumn(type.name(), quoted + "::text", PgBinaryFieldDecoder.TEXT);
+    }
+
+    private static String copySql(String tableName, List<CopyColumn> columns,
+                                  List<KeysetTableExtractor.KeyColumn> keyColumns, KeyRange range,
+                                  Object[] startAfterKey, RowFilter filter) {
+        List<String> conditions = new ArrayList<>();
+        if (startAfterKey != null) {
+            // COPY takes no bind parameters, so the resume key is inlined as cast literals
+            List<String> literals = new ArrayList<>();
+            for (int k = 0; k < keyColumns.size(); k++) {
+                literals.add("CAST(" + quoteLiteral(String.valueOf(startAfterKey[k])) + " AS " +
+                    keyColumns.get(k).sqlType() + ")");
+            }
+            conditions.add("(" + keyList(keyColumns) + ") > (" + String.join(", ", literals) + ")");
+        }
+        if (range != null) {
+            conditions.add(KeysetTableExtractor.quoteIdentifier(keyColumns.get(0).name()) +
+                " BETWEEN " + range.lowerBound() + " AND " + range.upperBound());
+        }
+        if (filter != null) {
+            conditions.add("(" + filter.condition() + ")");
+        }
+
+        StringBuilder select = new StringBuilder("SELECT ")
+            .append(columns.stream().map(CopyColumn::selectExpression).collect(Collectors.joining(", ")))
+            .append(" FROM ").append(KeysetTableExtractor.quoteIdentifier(tableName));
+        if (!conditions.isEmpty()) {
+            select.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (!keyColumns.isEmpty()) {
+            select.append(" ORDER BY ").append(keyList(keyColumns));
+        }
+        return "COPY (" + select + ") TO STDOUT (FORMAT binary)";
+    }
+
+    private static String keyList(List<KeysetTableExtractor.KeyColumn> keyColumns) {
+        return keyColumns.stream()
+            .map(column -> KeysetTableExtractor.quoteIdentifier(column.name()))
+            .collect(Collectors.joining(", "));
+    }
+
+    private static String quoteLiteral(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+}
@@ -0,0 +1,62 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Output buffers that a whole page of documents is encoded into, recycled across pages.
+ *
+ * The documents of a page are {@link org.bson.RawBsonDocument} slices over the buffer's bytes, so a
+ * buffer may only be released once the sink has acknowledged every document of the page. Buffers
+ * that grew beyond the retention limit (a page of unusually large rows) are dropped instead of
+ * pooled so one outlier does not pin its memory for the rest of the run.
+ */
+final class BsonBufferPool {
+
+    private final BlockingQueue<BasicOutputBuffer> buffers;
+    private final int initialBytes;
+    private final int maxRetainedBytes;
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+
+    BsonBufferPool(int maxPooled, int initialBytes, int maxRetainedBytes) {
+        this.buffers = new ArrayBlockingQueue<>(Math.max(1, maxPooled));
+        this.initialBytes = Math.max(1024, initialBytes);
+        this.maxRetainedBytes = Math.max(this.initialBytes, maxRetainedBytes);
+    }
+
+    /**
+     * Empty buffer, pooled when one is available
+     */
+    BasicOutputBuffer acquire() {
+        acquired.incrementAndGet();
+        BasicOutputBuffer buffer = buffers.poll();
+        if (buffer == null) {
+            allocated.incrementAndGet();
+            buffer = new BasicOutputBuffer(initialBytes);
+        }
+        return buffer;
+    }
+
+    /**
+     * Return a buffer whose documents are no longer referenced
+     */
+    void release(BasicOutputBuffer buffer) {
+        if (buffer.getInternalBuffer().length > maxRetainedBytes) {
+            return;
+        }
+        buffer.truncateToPosition(0);
+        buffers.offer(buffer);
+    }
+
+    long getAcquired() {
+        return acquired.get();
+    }
+
+    long getAllocated() {
+        return allocated.get();
+    }
+}
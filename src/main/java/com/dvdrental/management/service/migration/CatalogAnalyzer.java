@@ -0,0 +1,332 @@
+package com.dvdrental.management.service.migration;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Analyzes the source schema from pg_catalog in a fixed number of bulk queries, whatever the number of tables:
+ * row estimates and sizes (pg_class.reltuples, pg_stat_user_tables), columns with their pg_stats
+ * statistics, primary and foreign keys, and indexes. Nothing is counted or sampled per table,
+ * so analysis takes milliseconds even on large databases.
+ *
+ * Exact row counts are opt-in (migration.analysis.exact-counts) and run in parallel on a small pool.
+ * The result is cached for migration.analysis.cache-ttl-seconds so that planning and execution
+ * of a backup work from the same analysis instead of querying the catalog again.
+ */
+@Component
+public class CatalogAnalyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogAnalyzer.class);
+
+    private static final String RELATIONS_QUERY =
+        "SELECT c.relname, c.relkind, c.reltuples, c.relpages, s.n_live_tup, " +
+        "pg_total_relation_size(c.oid) AS total_bytes, pg_relation_size(c.oid) AS table_bytes, " +
+        "greatest(s.last_analyze, s.last_autoanalyze) AS last_analyzed " +
+        "FROM pg_class c " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "LEFT JOIN pg_stat_user_tables s ON s.relid = c.oid " +
+        "WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p', 'v', 'm') " +
+        "ORDER BY c.relname";
+
+    private static final String COLUMNS_QUERY =
+        "SELECT c.relname, a.attname, format_type(a.atttypid, a.atttypmod) AS data_type, " +
+        "NOT a.attnotnull AS nullable, pg_get_expr(d.adbin, d.adrelid) AS column_default, " +
+        "st.avg_width, st.null_frac, st.n_distinct " +
+        "FROM pg_attribute a " +
+        "JOIN pg_class c ON c.oid = a.attrelid " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "LEFT JOIN pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum " +
+        "LEFT JOIN pg_stats st ON st.schemaname = n.nspname AND st.tablename = c.relname AND st.attname = a.attname " +
+        "WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p', 'v', 'm') AND a.attnum > 0 AND NOT a.attisdropped " +
+        "ORDER BY c.relname, a.attnum";
+
+    private static final String CONSTRAINTS_QUERY =
+        "SELECT c.relname, con.conname, con.contype, ref.relname AS referenced_table, " +
+        "ARRAY(SELECT a.attname FROM unnest(con.conkey) WITH ORDINALITY k(attnum, ord) " +
+        "      JOIN pg_attribute a ON a.attrelid = con.conrelid AND a.attnum = k.attnum ORDER BY k.ord)::text[] AS columns, " +
+        "ARRAY(SELECT a.attname FROM unnest(con.confkey) WITH ORDINALITY k(attnum, ord) " +
+        "      JOIN pg_attribute a ON a.attrelid = con.confrelid AND a.attnum = k.attnum ORDER BY k.ord)::text[] AS referenced_columns " +
+        "FROM pg_constraint con " +
+        "JOIN pg_class c ON c.oid = con.conrelid " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "LEFT JOIN pg_class ref ON ref.oid = con.confrelid " +
+        "WHERE n.nspname = 'public' AND con.contype IN ('p', 'f') " +
+        "ORDER BY c.relname, con.conname";
+
+    private static final String INDEXES_QUERY =
+        "SELECT t.relname AS table_name, i.relname AS index_name, ix.indisunique, ix.indisprimary, " +
+        "pg_relation_size(i.oid) AS index_bytes, pg_get_indexdef(ix.indexrelid) AS definition " +
+        "FROM pg_index ix " +
+        "JOIN pg_class t ON t.oid = ix.indrelid " +
+        "JOIN pg_class i ON i.oid = ix.indexrelid " +
+        "JOIN pg_namespace n ON n.oid = t.relnamespace " +
+        "WHERE n.nspname = 'public' " +
+        "ORDER BY t.relname, i.relname";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ExecutorService countExecutor;
+
+    @Value("${migration.analysis.exact-counts:false}")
+    private boolean exactCountsByDefault;
+
+    @Value("${migration.analysis.cache-ttl-seconds:300}")
+    private long cacheTtlSeconds;
+
+    private volatile SourceAnalysis cached;
+
+    public CatalogAnalyzer(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                           @Value("${migration.analysis.count-threads:4}") int countThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.countExecutor = Executors.newFixedThreadPool(Math.max(1, countThreads),
+            TableMigrationScheduler.namedThreadFactory("migration-count-"));
+    }
+
+    public record ColumnInfo(String name, String dataType, boolean nullable, String columnDefault,
+                             Integer averageWidth, Double nullFraction, Double distinctValues) {}
+
+    public record ForeignKeyInfo(String name, List<String> columns, String referencedTable,
+                                 List<String> referencedColumns) {}
+
+    public record IndexInfo(String name, boolean unique, boolean primary, long sizeBytes, String definition) {}
+
+    /**
+     * Catalog view of one table or view. estimatedRows is null for views and for tables that
+     * have never been analyzed or vacuumed; exactRows is only set when exact counts were requested.
+     */
+    public record TableInfo(String name, String kind, Long estimatedRows, Long exactRows, long totalBytes,
+                            long tableBytes, LocalDateTime lastAnalyzed, List<ColumnInfo> columns,
+                            List<String> primaryKey, List<ForeignKeyInfo> foreignKeys, List<IndexInfo> indexes) {
+
+        /**
+         * Best known row count: exact when counted, else the planner estimate, else 0
+         */
+        public long rowCount() {
+            return exactRows != null ? exactRows : estimatedRows != null ? estimatedRows : 0L;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("kind", kind);
+            view.put("recordCount", rowCount());
+            view.put("recordCountSource", exactRows != null ? "exact" : estimatedRows != null ? "estimate" : "unknown");
+            view.put("estimatedRows", estimatedRows);
+            view.put("totalBytes", totalBytes);
+            view.put("tableBytes", tableBytes);
+            view.put("lastAnalyzed", lastAnalyzed != null ? lastAnalyzed.toString() : null);
+            view.put("primaryKey", primaryKey);
+            view.put("schema", columns.stream().map(column -> {
+                Map<String, Object> columnView = new LinkedHashMap<>();
+                columnView.put("column_name", column.name());
+                columnView.put("data_type", column.dataType());
+                columnView.put("is_nullable", column.nullable() ? "YES" : "NO");
+                columnView.put("column_default", column.columnDefault());
+                columnView.put("avg_width", column.averageWidth());
+                columnView.put("null_frac", column.nullFraction());
+                columnView.put("n_distinct", column.distinctValues());
+                return columnView;
+            }).toList());
+            view.put("foreignKeys", foreignKeys.stream().map(foreignKey -> Map.of(
+                "name", foreignKey.name(),
+                "columns", foreignKey.columns(),
+                "referencedTable", foreignKey.referencedTable(),
+                "referencedColumns", foreignKey.referencedColumns()
+            )).toList());
+            view.put("indexes", indexes.stream().map(index -> Map.of(
+                "name", index.name(),
+                "unique", index.unique(),
+                "primary", index.primary(),
+                "sizeBytes", index.sizeBytes(),
+                "definition", index.definition()
+            )).toList());
+            return view;
+        }
+    }
+
+    /**
+     * Result of one analysis, tables by name
+     */
+    public record SourceAnalysis(Map<String, TableInfo> tables, LocalDateTime analyzedAt, long durationMillis,
+                                 boolean exactCounts) {
+
+        public List<String> tableNames() {
+            return new ArrayList<>(tables.keySet());
+        }
+
+        /**
+         * Table → parent tables from the foreign keys, as used by {@link ForeignKeyGraph#fromDependencies}
+         */
+        public Map<String, List<String>> dependencies() {
+            Map<String, List<String>> dependencies = new TreeMap<>();
+            tables.forEach((name, table) -> dependencies.put(name, table.foreignKeys().stream()
+                .map(ForeignKeyInfo::referencedTable)
+                .distinct()
+                .toList()));
+            return dependencies;
+        }
+
+        public ForeignKeyGraph foreignKeyGraph() {
+            return ForeignKeyGraph.fromDependencies(dependencies());
+        }
+
+        boolean isFresherThan(long ttlSeconds) {
+            return analyzedAt.plusSeconds(ttlSeconds).isAfter(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Cached analysis when it is recent enough and has exact counts if those are wanted, else a new one
+     */
+    public SourceAnalysis analyze() {
+        return analyze(exactCountsByDefault);
+    }
+
+    public SourceAnalysis analyze(boolean exactCounts) {
+        SourceAnalysis current = cached;
+        if (current != null && current.isFresherThan(cacheTtlSeconds) && (current.exactCounts() || !exactCounts)) {
+            return current;
+        }
+        SourceAnalysis analysis = runAnalysis(exactCounts);
+        cached = analysis;
+        return analysis;
+    }
+
+    /**
+     * Drop the cached analysis, e.g. after the source schema changed
+     */
+    public void invalidate() {
+        cached = null;
+    }
+
+    private SourceAnalysis runAnalysis(boolean exactCounts) {
+        long start = System.nanoTime();
+
+        Map<String, List<ColumnInfo>> columns = new TreeMap<>();
+        jdbcTemplate.query(COLUMNS_QUERY, rs -> {
+            columns.computeIfAbsent(rs.getString("relname"), table -> new ArrayList<>()).add(new ColumnInfo(
+                rs.getString("attname"),
+                rs.getString("data_type"),
+                rs.getBoolean("nullable"),
+                rs.getString("column_default"),
+                (Integer) rs.getObject("avg_width"),
+                getDouble(rs, "null_frac"),
+                getDouble(rs, "n_distinct")));
+        });
+
+        Map<String, List<String>> primaryKeys = new TreeMap<>();
+        Map<String, List<ForeignKeyInfo>> foreignKeys = new TreeMap<>();
+        jdbcTemplate.query(CONSTRAINTS_QUERY, rs -> {
+            String table = rs.getString("relname");
+            List<String> keyColumns = textArray(rs.getArray("columns"));
+            if ("p".equals(rs.getString("contype"))) {
+                primaryKeys.put(table, keyColumns);
+            } else {
+                foreignKeys.computeIfAbsent(table, name -> new ArrayList<>()).add(new ForeignKeyInfo(
+                    rs.getString("conname"), keyColumns, rs.getString("referenced_table"),
+                    textArray(rs.getArray("referenced_columns"))));
+            }
+        });
+
+        Map<String, List<IndexInfo>> indexes = new TreeMap<>();
+        jdbcTemplate.query(INDEXES_QUERY, rs -> {
+            indexes.computeIfAbsent(rs.getString("table_name"), table -> new ArrayList<>()).add(new IndexInfo(
+                rs.getString("index_name"),
+                rs.getBoolean("indisunique"),
+                rs.getBoolean("indisprimary"),
+                rs.getLong("index_bytes"),
+                rs.getString("definition")));
+        });
+
+        Map<String, TableInfo> tables = new TreeMap<>();
+        jdbcTemplate.query(RELATIONS_QUERY, rs -> {
+            String name = rs.getString("relname");
+            String relkind = rs.getString("relkind");
+            boolean isView = "v".equals(relkind);
+            Timestamp lastAnalyzed = rs.getTimestamp("last_analyzed");
+            tables.put(name, new TableInfo(
+                name,
+                isView ? "view" : "m".equals(relkind) ? "materialized_view" : "table",
+                isView ? null : estimateRows(rs),
+                null,
+                rs.getLong("total_bytes"),
+                rs.getLong("table_bytes"),
+                lastAnalyzed != null ? lastAnalyzed.toLocalDateTime() : null,
+                columns.getOrDefault(name, Collections.emptyList()),
+                primaryKeys.getOrDefault(name, Collections.emptyList()),
+                foreignKeys.getOrDefault(name, Collections.emptyList()),
+                indexes.getOrDefault(name, Collections.emptyList())));
+        });
+
+        if (exactCounts) {
+            countExactly(tables);
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Analyzed {} relations from the catalog in {} ms (exact counts: {})",
+            tables.size(), durationMillis, exactCounts);
+        return new SourceAnalysis(Collections.unmodifiableMap(tables), LocalDateTime.now(), durationMillis, exactCounts);
+    }
+
+    /**
+     * reltuples is -1 (PostgreSQL 14+) or 0 with no pages for a table that was never vacuumed or
+     * analyzed; the statistics collector's live tuple count is the fallback
+     */
+    private static Long estimateRows(ResultSet rs) throws SQLException {
+        double reltuples = rs.getDouble("reltuples");
+        long relpages = rs.getLong("relpages");
+        if (reltuples > 0 || (reltuples == 0 && relpages > 0)) {
+            return Math.round(reltuples);
+        }
+        long liveTuples = rs.getLong("n_live_tup");
+        return rs.wasNull() ? null : liveTuples;
+    }
+
+    private void countExactly(Map<String, TableInfo> tables) {
+        Map<String, CompletableFuture<Long>> counts = new LinkedHashMap<>();
+        for (String name : tables.keySet()) {
+            counts.put(name, CompletableFuture.supplyAsync(() -> jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM " + KeysetTableExtractor.quoteIdentifier(name), Long.class), countExecutor));
+        }
+        counts.forEach((name, count) -> {
+            TableInfo table = tables.get(name);
+            tables.put(name, new TableInfo(table.name(), table.kind(), table.estimatedRows(), count.join(),
+                table.totalBytes(), table.tableBytes(), table.lastAnalyzed(), table.columns(), table.primaryKey(),
+                table.foreignKeys(), table.indexes()));
+        });
+    }
+
+    private static Double getDouble(ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static List<String> textArray(Array array) throws SQLException {
+        return array == null ? Collections.emptyList() : Arrays.asList((String[]) array.getArray());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        countExecutor.shutdownNow();
+    }
+}
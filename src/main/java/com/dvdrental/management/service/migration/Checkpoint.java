@@ -0,0 +1,29 @@
+package com.dvdrental.management.service.migration;
+
+import java.util.List;
+
+/**
+ * Last committed position of one table (chunkId 0) or one key-range chunk of a table within a backup run.
+ * lastKey holds the primary key values of the last row acknowledged by the target, as text,
+ * or null if nothing has been committed yet or the table has no primary key.
+ */
+public record Checkpoint(String runId, String tableName, int chunkId, Long lowerBound, Long upperBound,
+                         List<String> lastKey, long rowsCommitted, Status status) {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    public Checkpoint withProgress(List<String> newLastKey, long newRowsCommitted, Status newStatus) {
+        return new Checkpoint(runId, tableName, chunkId, lowerBound, upperBound, newLastKey, newRowsCommitted, newStatus);
+    }
+
+    public KeyRange range() {
+        return lowerBound == null || upperBound == null ? null : new KeyRange(chunkId, lowerBound, upperBound);
+    }
+
+    /**
+     * Key to resume after, in the form the extractors bind (text values cast by PostgreSQL)
+     */
+    public Object[] resumeKey() {
+        return lastKey == null ? null : lastKey.toArray();
+    }
+}
@@ -0,0 +1,205 @@
+package com.dvdrental.management.service.migration;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Persists backup runs, per-table / per-chunk checkpoints and incremental sync watermarks
+ * in a PostgreSQL control schema.
+ * The schema (migration_control) is kept out of public so the control tables are never
+ * picked up by the backup itself, and is created on first use.
+ */
+@Component
+public class CheckpointStore {
+
+    private static final String[] SCHEMA_DDL = {
+        "CREATE SCHEMA IF NOT EXISTS migration_control",
+        "CREATE TABLE IF NOT EXISTS migration_control.backup_run (" +
+            "run_id VARCHAR(36) PRIMARY KEY, " +
+            "status VARCHAR(20) NOT NULL, " +
+            "plan TEXT NOT NULL, " +
+            "started_at TIMESTAMP NOT NULL, " +
+            "finished_at TIMESTAMP)",
+        "CREATE TABLE IF NOT EXISTS migration_control.backup_checkpoint (" +
+            "run_id VARCHAR(36) NOT NULL REFERENCES migration_control.backup_run (run_id) ON DELETE CASCADE, " +
+            "table_name VARCHAR(128) NOT NULL, " +
+            "chunk_id INTEGER NOT NULL, " +
+            "lower_bound BIGINT, " +
+            "upper_bound BIGINT, " +
+            "last_key TEXT, " +
+            "rows_committed BIGINT NOT NULL DEFAULT 0, " +
+            "status VARCHAR(20) NOT NULL, " +
+            "updated_at TIMESTAMP NOT NULL, " +
+            "PRIMARY KEY (run_id, table_name, chunk_id))",
+        "CREATE TABLE IF NOT EXISTS migration_control.sync_watermark (" +
+            "table_name VARCHAR(128) PRIMARY KEY, " +
+            "watermark TIMESTAMP NOT NULL, " +
+            "updated_at TIMESTAMP NOT NULL)"
+    };
+
+    private static final String UPSERT_CHECKPOINT =
+        "INSERT INTO migration_control.backup_checkpoint " +
+        "(run_id, table_name, chunk_id, lower_bound, upper_bound, last_key, rows_committed, status, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON CONFLICT (run_id, table_name, chunk_id) DO UPDATE SET " +
+        "last_key = EXCLUDED.last_key, rows_committed = EXCLUDED.rows_committed, " +
+        "status = EXCLUDED.status, updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private volatile boolean schemaReady;
+
+    public CheckpointStore(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * A recorded backup run together with the plan it was started with
+     */
+    public record BackupRun(String runId, String status, Map<String, Object> plan,
+                            LocalDateTime startedAt, LocalDateTime finishedAt) {}
+
+    private void ensureSchema() {
+        if (schemaReady) {
+            return;
+        }
+        synchronized (this) {
+            if (!schemaReady) {
+                for (String ddl : SCHEMA_DDL) {
+                    jdbcTemplate.execute(ddl);
+                }
+                schemaReady = true;
+            }
+        }
+    }
+
+    /**
+     * Record a new run for the given plan and return its id
+     */
+    public String createRun(Map<String, Object> plan) {
+        ensureSchema();
+        String runId = UUID.randomUUID().toString();
+        jdbcTemplate.update(
+            "INSERT INTO migration_control.backup_run (run_id, status, plan, started_at) VALUES (?, ?, ?, ?)",
+            runId, "RUNNING", toJson(plan), Timestamp.valueOf(LocalDateTime.now()));
+        return runId;
+    }
+
+    public void finishRun(String runId, String status) {
+        ensureSchema();
+        jdbcTemplate.update(
+            "UPDATE migration_control.backup_run SET status = ?, finished_at = ? WHERE run_id = ?",
+            status, Timestamp.valueOf(LocalDateTime.now()), runId);
+    }
+
+    public Optional<BackupRun> findRun(String runId) {
+        ensureSchema();
+        return jdbcTemplate.query(
+            "SELECT run_id, status, plan, started_at, finished_at FROM migration_control.backup_run WHERE run_id = ?",
+            this::mapRun, runId).stream().findFirst();
+    }
+
+    /**
+     * Most recently started run that did not finish successfully
+     */
+    public Optional<BackupRun> findLatestUnfinishedRun() {
+        ensureSchema();
+        return jdbcTemplate.query(
+            "SELECT run_id, status, plan, started_at, finished_at FROM migration_control.backup_run " +
+            "WHERE status <> 'success' ORDER BY started_at DESC LIMIT 1",
+            this::mapRun).stream().findFirst();
+    }
+
+    /**
+     * Checkpoints of one table in a run, keyed by chunk id
+     */
+    public Map<Integer, Checkpoint> loadCheckpoints(String runId, String tableName) {
+        ensureSchema();
+        Map<Integer, Checkpoint> checkpoints = new TreeMap<>();
+        jdbcTemplate.query(
+            "SELECT run_id, table_name, chunk_id, lower_bound, upper_bound, last_key, rows_committed, status " +
+            "FROM migration_control.backup_checkpoint WHERE run_id = ? AND table_name = ?",
+            rs -> {
+                Checkpoint checkpoint = mapCheckpoint(rs);
+                checkpoints.put(checkpoint.chunkId(), checkpoint);
+            }, runId, tableName);
+        return checkpoints;
+    }
+
+    public void save(Checkpoint checkpoint) {
+        ensureSchema();
+        jdbcTemplate.update(UPSERT_CHECKPOINT,
+            checkpoint.runId(), checkpoint.tableName(), checkpoint.chunkId(),
+            checkpoint.lowerBound(), checkpoint.upperBound(),
+            checkpoint.lastKey() == null ? null : toJson(checkpoint.lastKey()),
+            checkpoint.rowsCommitted(), checkpoint.status().name(),
+            Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Highest last_update copied by the previous incremental sync of a table
+     */
+    public Optional<LocalDateTime> findWatermark(String tableName) {
+        ensureSchema();
+        return jdbcTemplate.query(
+            "SELECT watermark FROM migration_control.sync_watermark WHERE table_name = ?",
+            (rs, rowNum) -> rs.getTimestamp(1).toLocalDateTime(), tableName).stream().findFirst();
+    }
+
+    public void saveWatermark(String tableName, LocalDateTime watermark) {
+        ensureSchema();
+        jdbcTemplate.update(
+            "INSERT INTO migration_control.sync_watermark (table_name, watermark, updated_at) VALUES (?, ?, ?) " +
+            "ON CONFLICT (table_name) DO UPDATE SET watermark = EXCLUDED.watermark, updated_at = EXCLUDED.updated_at",
+            tableName, Timestamp.valueOf(watermark), Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private BackupRun mapRun(ResultSet rs, int rowNum) throws SQLException {
+        Timestamp finishedAt = rs.getTimestamp("finished_at");
+        return new BackupRun(
+            rs.getString("run_id"),
+            rs.getString("status"),
+            fromJson(rs.getString("plan"), new TypeReference<Map<String, Object>>() {}),
+            rs.getTimestamp("started_at").toLocalDateTime(),
+            finishedAt != null ? finishedAt.toLocalDateTime() : null);
+    }
+
+    private Checkpoint mapCheckpoint(ResultSet rs) throws SQLException {
+        String lastKey = rs.getString("last_key");
+        return new Checkpoint(
+            rs.getString("run_id"),
+            rs.getString("table_name"),
+            rs.getInt("chunk_id"),
+            (Long) rs.getObject("lower_bound"),
+            (Long) rs.getObject("upper_bound"),
+            lastKey != null ? fromJson(lastKey, new TypeReference<List<String>>() {}) : null,
+            rs.getLong("rows_committed"),
+            Checkpoint.Status.valueOf(rs.getString("status")));
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize checkpoint data", e);
+        }
+    }
+
+    private <T> T fromJson(String json, TypeReference<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to read checkpoint data", e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.dvdrental.management.service.migration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Advances the checkpoint of one table or chunk as the target acknowledges its pages.
+ *
+ * Pages can be acknowledged out of order when several batches are in flight, so
+ * acknowledgements are chained: a page's key is only committed once every earlier page
+ * has been committed too. Checkpoints are written at most once per interval while running,
+ * and always when the table or chunk completes or fails.
+ */
+public class CheckpointTracker {
+
+    private final CheckpointStore store;
+    private final long saveIntervalMillis;
+
+    private volatile Checkpoint checkpoint;
+    private CompletableFuture<Void> committed = CompletableFuture.completedFuture(null);
+    private long lastSavedAt;
+
+    public CheckpointTracker(CheckpointStore store, Checkpoint initial, long saveIntervalMillis) {
+        this.store = store;
+        this.checkpoint = initial;
+        this.saveIntervalMillis = saveIntervalMillis;
+    }
+
+    /**
+     * Tracker that counts committed rows but persists nothing, for runs that are not resumable
+     */
+    public static CheckpointTracker untracked(String tableName) {
+        return new CheckpointTracker(null,
+            new Checkpoint(null, tableName, 0, null, null, null, 0, Checkpoint.Status.PENDING), Long.MAX_VALUE);
+    }
+
+    private void persist(Checkpoint value) {
+        if (store != null) {
+            store.save(value);
+        }
+    }
+
+    public Checkpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Register a page handed to the sink; its key is committed once the acknowledgement
+     * and those of all earlier pages have completed
+     */
+    public void onPageLoaded(CompletableFuture<Void> acknowledged, Object[] lastKey, int rows) {
+        List<String> key = toText(lastKey);
+        committed = committed
+            .thenCombine(acknowledged, (previous, current) -> (Void) null)
+            .thenRun(() -> advance(key, rows));
+    }
+
+    private synchronized void advance(List<String> key, int rows) {
+        Checkpoint current = checkpoint;
+        checkpoint = current.withProgress(key != null ? key : current.lastKey(),
+            current.rowsCommitted() + rows, Checkpoint.Status.RUNNING);
+        long now = System.currentTimeMillis();
+        if (now - lastSavedAt >= saveIntervalMillis) {
+            persist(checkpoint);
+            lastSavedAt = now;
+        }
+    }
+
+    /**
+     * Wait for all registered pages to be committed and mark the checkpoint completed
+     */
+    public void complete() {
+        committed.join();
+        synchronized (this) {
+            checkpoint = checkpoint.withProgress(checkpoint.lastKey(), checkpoint.rowsCommitted(),
+                Checkpoint.Status.COMPLETED);
+            persist(checkpoint);
+        }
+    }
+
+    /**
+     * Keep the last committed key and mark the checkpoint failed so a resume picks up from there
+     */
+    public void abort() {
+        try {
+            committed.join();
+        } catch (RuntimeException ignored) {
+            // The checkpoint already holds the last page that was acknowledged
+        }
+        synchronized (this) {
+            checkpoint = checkpoint.withProgress(checkpoint.lastKey(), checkpoint.rowsCommitted(),
+                Checkpoint.Status.FAILED);
+            persist(checkpoint);
+        }
+    }
+
+    private static List<String> toText(Object[] key) {
+        if (key == null) {
+            return null;
+        }
+        List<String> text = new ArrayList<>(key.length);
+        for (Object value : key) {
+            text.add(value == null ? null : value.toString());
+        }
+        return text;
+    }
+}
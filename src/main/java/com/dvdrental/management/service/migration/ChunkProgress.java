@@ -0,0 +1,92 @@
+package com.dvdrental.management.service.migration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live progress of one chunk of a table extraction.
+ * Updated by the chunk's worker thread and read concurrently by reporting code.
+ */
+public class ChunkProgress {
+
+    public enum Status { PENDING, RUNNING, COMPLETED, FAILED }
+
+    private final String tableName;
+    private final KeyRange range;
+    private final AtomicLong rowsExtracted = new AtomicLong();
+    private volatile Object lastKey;
+    private volatile Status status = Status.PENDING;
+    private volatile String error;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+
+    public ChunkProgress(String tableName, KeyRange range) {
+        this.tableName = tableName;
+        this.range = range;
+    }
+
+    void markRunning() {
+        startedAt = System.currentTimeMillis();
+        status = Status.RUNNING;
+    }
+
+    void recordPage(int rows, Object[] pageLastKey) {
+        rowsExtracted.addAndGet(rows);
+        if (pageLastKey != null && pageLastKey.length > 0) {
+            lastKey = pageLastKey[0];
+        }
+    }
+
+    void markCompleted() {
+        finishedAt = System.currentTimeMillis();
+        status = Status.COMPLETED;
+    }
+
+    void markFailed(Throwable failure) {
+        finishedAt = System.currentTimeMillis();
+        error = failure.getMessage();
+        status = Status.FAILED;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public KeyRange getRange() {
+        return range;
+    }
+
+    public long getRowsExtracted() {
+        return rowsExtracted.get();
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * JSON-friendly view of the chunk, for backup results and progress reports
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("chunkId", range.chunkId());
+        view.put("lowerBound", range.lowerBound());
+        view.put("upperBound", range.upperBound());
+        view.put("status", status.name());
+        view.put("rowsExtracted", rowsExtracted.get());
+        view.put("lastKey", lastKey);
+        if (startedAt > 0) {
+            long end = finishedAt > 0 ? finishedAt : System.currentTimeMillis();
+            view.put("elapsedMillis", end - startedAt);
+        }
+        if (error != null) {
+            view.put("error", error);
+        }
+        return view;
+    }
+}
@@ -0,0 +1,144 @@
+package com.dvdrental.management.service.migration;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Reusable, column-oriented page of rows laid out by a {@link RowCodec}.
+ *
+ * Integer, bigint, boolean and timestamp columns live in long arrays and floating point columns in
+ * double arrays, so reading a row boxes nothing; only values that are objects anyway (strings,
+ * decimals, arrays, binaries) are kept as references. Batches are cleared and refilled instead of
+ * reallocated, so once the pipeline has warmed up, extraction allocates almost nothing per row.
+ * Decoding extractors fill batches directly (see {@link RowHandler#decodedRows()}), which is why the
+ * type is public; its accessors stay package-private.
+ */
+public final class ColumnarRowBatch {
+
+    private final RowCodec.ColumnKind[] kinds;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final Object[][] objects;
+    private final boolean[][] nulls;
+    private int capacity;
+    private int size;
+
+    ColumnarRowBatch(RowCodec.ColumnKind[] kinds, int initialCapacity) {
+        this.kinds = kinds;
+        this.capacity = Math.max(16, initialCapacity);
+        this.longs = new long[kinds.length][];
+        this.doubles = new double[kinds.length][];
+        this.objects = new Object[kinds.length][];
+        this.nulls = new boolean[kinds.length][];
+        for (int c = 0; c < kinds.length; c++) {
+            allocate(c, capacity);
+        }
+    }
+
+    private void allocate(int column, int newCapacity) {
+        switch (kinds[column].storage()) {
+            case LONG:
+                longs[column] = longs[column] == null ? new long[newCapacity] : Arrays.copyOf(longs[column], newCapacity);
+                break;
+            case DOUBLE:
+                doubles[column] = doubles[column] == null ? new double[newCapacity] : Arrays.copyOf(doubles[column], newCapacity);
+                break;
+            default:
+                objects[column] = objects[column] == null ? new Object[newCapacity] : Arrays.copyOf(objects[column], newCapacity);
+                break;
+        }
+        nulls[column] = nulls[column] == null ? new boolean[newCapacity] : Arrays.copyOf(nulls[column], newCapacity);
+    }
+
+    /**
+     * Reserve the next row and return its index; the caller sets every column of it
+     */
+    int addRow() {
+        if (size == capacity) {
+            int newCapacity = capacity * 2;
+            for (int c = 0; c < kinds.length; c++) {
+                allocate(c, newCapacity);
+            }
+            capacity = newCapacity;
+        }
+        return size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int columnCount() {
+        return kinds.length;
+    }
+
+    /**
+     * Forget all rows; object references are dropped so the previous page can be collected
+     */
+    void clear() {
+        for (Object[] column : objects) {
+            if (column != null) {
+                Arrays.fill(column, 0, size, null);
+            }
+        }
+        size = 0;
+    }
+
+    void setNull(int column, int row) {
+        nulls[column][row] = true;
+    }
+
+    void setLong(int column, int row, long value) {
+        nulls[column][row] = false;
+        longs[column][row] = value;
+    }
+
+    void setDouble(int column, int row, double value) {
+        nulls[column][row] = false;
+        doubles[column][row] = value;
+    }
+
+    void setObject(int column, int row, Object value) {
+        nulls[column][row] = value == null;
+        objects[column][row] = value;
+    }
+
+    boolean isNull(int column, int row) {
+        return nulls[column][row];
+    }
+
+    long getLong(int column, int row) {
+        return longs[column][row];
+    }
+
+    double getDouble(int column, int row) {
+        return doubles[column][row];
+    }
+
+    Object getObject(int column, int row) {
+        return objects[column][row];
+    }
+
+    /**
+     * Cell boxed to the Java type its column kind stands for, e.g. for the last key of a page
+     */
+    Object getValue(int column, int row) {
+        if (nulls[column][row]) {
+            return null;
+        }
+        switch (kinds[column]) {
+            case INT32:
+                return (int) longs[column][row];
+            case INT64:
+                return longs[column][row];
+            case BOOLEAN:
+                return longs[column][row] != 0;
+            case DATE_TIME:
+                return new Date(longs[column][row]);
+            case DOUBLE:
+                return doubles[column][row];
+            default:
+                return objects[column][row];
+        }
+    }
+}
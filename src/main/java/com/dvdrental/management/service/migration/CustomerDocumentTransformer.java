@@ -0,0 +1,426 @@
+package com.dvdrental.management.service.migration;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Builds the customers collection of mongodb_schema_design.md: each customer with address, store,
+ * rental history and payments embedded.
+ *
+ * address/city/country, store and the inventory → film title lookup are loaded into maps; customer,
+ * rental and payment are streamed in customer_id order on three cursors and merge-joined in one pass.
+ * All of these reads share one exported {@link SnapshotCoordinator} snapshot, so a customer's
+ * rentals and payments are embedded as of the same instant. The build holds {@link MigrationThrottle}
+ * stream slots for its connections while it runs.
+ * The most recent rentals and payments (up to the configured caps) are embedded in the customer
+ * document; older entries overflow into bucket documents in a separate collection, so even very
+ * active customers stay far below MongoDB's 16 MB document limit and memory never holds more
+ * than the embedded entries and one bucket per history. Buckets are numbered from the oldest entry,
+ * so new activity only changes a customer's last bucket, and buckets past the new count left by an
+ * earlier build are deleted.
+ */
+@Component
+public class CustomerDocumentTransformer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CustomerDocumentTransformer.class);
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private static final int BUILD_CONNECTIONS = 4;
+
+    private static final int STALE_BUCKET_DELETE_BATCH = 1000;
+
+    public static final String COLLECTION = "customers";
+    public static final String BUCKET_COLLECTION = "customer_history";
+
+    private static final String ADDRESS_QUERY =
+        "SELECT a.address_id, a.address, a.address2, a.district, a.postal_code, a.phone, " +
+        "ci.city, co.country FROM address a " +
+        "JOIN city ci ON ci.city_id = a.city_id " +
+        "JOIN country co ON co.country_id = ci.country_id";
+
+    private static final String CUSTOMER_QUERY =
+        "SELECT customer_id, store_id, first_name, last_name, email, address_id, activebool, " +
+        "create_date, last_update FROM customer ORDER BY customer_id";
+
+    private static final String RENTAL_QUERY =
+        "SELECT customer_id, rental_id, rental_date, return_date, inventory_id, staff_id FROM rental " +
+        "ORDER BY customer_id, rental_date, rental_id";
+
+    private static final String PAYMENT_QUERY =
+        "SELECT customer_id, payment_id, rental_id, amount, payment_date, staff_id FROM payment " +
+        "ORDER BY customer_id, payment_date, payment_id";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final MigrationPipelineFactory pipelineFactory;
+    private final SnapshotCoordinator snapshots;
+    private final MigrationThrottle throttle;
+
+    @Value("${migration.extract.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${migration.transform.customer.max-embedded-rentals:100}")
+    private int maxEmbeddedRentals;
+
+    @Value("${migration.transform.customer.max-embedded-payments:100}")
+    private int maxEmbeddedPayments;
+
+    @Value("${migration.transform.customer.bucket-size:500}")
+    private int bucketSize;
+
+    public CustomerDocumentTransformer(@Qualifier(MigrationDataSources.DATA_SOURCE) DataSource dataSource,
+                                       @Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                                       MigrationPipelineFactory pipelineFactory, SnapshotCoordinator snapshots,
+                                       MigrationThrottle throttle) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pipelineFactory = pipelineFactory;
+        this.snapshots = snapshots;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Build and upsert one document per customer plus their overflow buckets.
+     * Returns counts of what was read, embedded and written.
+     */
+    public Map<String, Object> transform() throws SQLException {
+        // Stream slots for every connection the build holds at once: its snapshot and three cursors
+        throttle.acquireStreams(BUILD_CONNECTIONS);
+        try (SnapshotCoordinator.ExportedSnapshot snapshot = snapshots.export()) {
+            return transform(snapshot);
+        } finally {
+            throttle.releaseStreams(BUILD_CONNECTIONS);
+        }
+    }
+
+    private Map<String, Object> transform(SnapshotCoordinator.ExportedSnapshot snapshot) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        Map<Integer, Document> addresses = new HashMap<>();
+        Map<Integer, Document> stores = new HashMap<>();
+        Map<Integer, String> filmTitleByInventory = new HashMap<>();
+        snapshots.bind(snapshot, () -> snapshots.inCurrentSnapshot(() -> {
+            jdbcTemplate.query(ADDRESS_QUERY, rs -> {
+                addresses.put(rs.getInt("address_id"), new Document("street", rs.getString("address"))
+                    .append("street2", rs.getString("address2"))
+                    .append("district", rs.getString("district"))
+                    .append("city", rs.getString("city"))
+                    .append("postalCode", rs.getString("postal_code"))
+                    .append("country", rs.getString("country"))
+                    .append("phone", rs.getString("phone")));
+            });
+            jdbcTemplate.query("SELECT store_id, address_id FROM store", rs -> {
+                Document address = addresses.get(rs.getInt("address_id"));
+                stores.put(rs.getInt("store_id"), new Document("_id", rs.getInt("store_id"))
+                    .append("address", address != null ? address.getString("street") : null));
+            });
+            jdbcTemplate.query("SELECT i.inventory_id, f.title FROM inventory i JOIN film f ON f.film_id = i.film_id",
+                rs -> {
+                    filmTitleByInventory.put(rs.getInt(1), rs.getString(2));
+                });
+            return null;
+        }));
+
+        DocumentBatcher customerBatcher = pipelineFactory.newBatcher(COLLECTION, DocumentSink.WriteMode.UPSERT);
+        DocumentBatcher bucketBatcher = pipelineFactory.newBatcher(BUCKET_COLLECTION, DocumentSink.WriteMode.UPSERT);
+        StaleBucketCleaner staleBuckets = new StaleBucketCleaner(pipelineFactory.getSink());
+        long customers = 0;
+        long rentals = 0;
+        long payments = 0;
+        long rentalsEmbedded = 0;
+        long paymentsEmbedded = 0;
+
+        try (SortedRowCursor customer =
+                 new SortedRowCursor(dataSource, CUSTOMER_QUERY, "customer_id", fetchSize, snapshot);
+             SortedRowCursor rental =
+                 new SortedRowCursor(dataSource, RENTAL_QUERY, "customer_id", fetchSize, snapshot);
+             SortedRowCursor payment =
+                 new SortedRowCursor(dataSource, PAYMENT_QUERY, "customer_id", fetchSize, snapshot)) {
+
+            int customerId = customer.column("customer_id");
+            int storeId = customer.column("store_id");
+            int firstName = customer.column("first_name");
+            int lastName = customer.column("last_name");
+            int email = customer.column("email");
+            int addressId = customer.column("address_id");
+            int active = customer.column("activebool");
+            int createDate = customer.column("create_date");
+            int lastUpdate = customer.column("last_update");
+
+            RentalColumns rentalColumns = new RentalColumns(rental);
+            PaymentColumns paymentColumns = new PaymentColumns(payment);
+
+            while (customer.hasRow()) {
+                long id = customer.key();
+                Object[] row = customer.row();
+
+                HistoryWriter rentalHistory =
+                    new HistoryWriter(id, "rentals", maxEmbeddedRentals, bucketBatcher, staleBuckets);
+                if (rental.skipTo(id)) {
+                    do {
+                        rentalHistory.add(rentalColumns.toDocument(rental.row(), filmTitleByInventory));
+                        rental.advance();
+                    } while (rental.hasRow() && rental.key() == id);
+                }
+                rentalHistory.finish();
+
+                HistoryWriter paymentHistory =
+                    new HistoryWriter(id, "payments", maxEmbeddedPayments, bucketBatcher, staleBuckets);
+                BigDecimal totalSpent = BigDecimal.ZERO;
+                if (payment.skipTo(id)) {
+                    do {
+                        Object[] paymentRow = payment.row();
+                        paymentHistory.add(paymentColumns.toDocument(paymentRow));
+                        Object amount = paymentRow[paymentColumns.amount];
+                        if (amount != null) {
+                            totalSpent = totalSpent.add(((Decimal128) amount).bigDecimalValue());
+                        }
+                        payment.advance();
+                    } while (payment.hasRow() && payment.key() == id);
+                }
+                paymentHistory.finish();
+
+                Object customerStore = row[storeId];
+                Document document = new Document("_id", row[customerId])
+                    .append("storeId", customerStore)
+                    .append("firstName", row[firstName])
+                    .append("lastName", row[lastName])
+                    .append("email", row[email])
+                    .append("active", row[active])
+                    .append("createDate", row[createDate])
+                    .append("lastUpdate", row[lastUpdate])
+                    .append("address", addresses.get((Integer) row[addressId]))
+                    .append("store", customerStore != null ? stores.get((Integer) customerStore) : null)
+                    .append("rentalHistory", rentalHistory.embedded)
+                    .append("payments", paymentHistory.embedded)
+                    .append("totalRentals", rentalHistory.total)
+                    .append("totalPayments", paymentHistory.total)
+                    .append("totalSpent", new Decimal128(totalSpent))
+                    .append("rentalBuckets", rentalHistory.buckets)
+                    .append("paymentBuckets", paymentHistory.buckets);
+                customerBatcher.add(new RawBsonDocument(document, DOCUMENT_CODEC));
+
+                customers++;
+                rentals += rentalHistory.total;
+                payments += paymentHistory.total;
+                rentalsEmbedded += rentalHistory.embedded.size();
+                paymentsEmbedded += paymentHistory.embedded.size();
+                customer.advance();
+            }
+
+            customerBatcher.finish();
+            bucketBatcher.finish();
+            staleBuckets.finish();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("collection", COLLECTION);
+            result.put("bucketCollection", BUCKET_COLLECTION);
+            result.put("documentsWritten", customerBatcher.getDocumentsWritten());
+            result.put("bucketDocumentsWritten", bucketBatcher.getDocumentsWritten());
+            result.put("staleBucketChecks", staleBuckets.checked);
+            result.put("bytesWritten", customerBatcher.getBytesWritten() + bucketBatcher.getBytesWritten());
+            result.put("customers", customers);
+            result.put("rentals", rentals);
+            result.put("rentalsEmbedded", rentalsEmbedded);
+            result.put("payments", payments);
+            result.put("paymentsEmbedded", paymentsEmbedded);
+            result.put("rowsWithoutCustomer", rental.getRowsSkipped() + payment.getRowsSkipped());
+            result.put("maxEmbeddedRentals", maxEmbeddedRentals);
+            result.put("maxEmbeddedPayments", maxEmbeddedPayments);
+            result.put("bucketSize", bucketSize);
+            result.put("elapsedMillis", System.currentTimeMillis() - start);
+            logger.info("Built {} customer documents from {} rentals and {} payments ({} overflow buckets)",
+                customers, rentals, payments, bucketBatcher.getDocumentsWritten());
+            return result;
+        } finally {
+            // On failure, wait for the batches already sent rather than leave them writing
+            customerBatcher.abandon();
+            bucketBatcher.abandon();
+            staleBuckets.abandon();
+        }
+    }
+
+    /**
+     * Collects one history array of a customer from entries added oldest first: the last maxEmbedded entries
+     * (the most recent) stay in the customer document, newest first; the older ones are written out, oldest
+     * first, as buckets of bucketSize entries numbered from 0
+     */
+    private final class HistoryWriter {
+        private final long customerId;
+        private final String type;
+        private final int maxEmbedded;
+        private final DocumentBatcher bucketBatcher;
+        private final StaleBucketCleaner staleBuckets;
+
+        private final ArrayDeque<Document> recent = new ArrayDeque<>();
+        private final List<Document> embedded = new ArrayList<>();
+        private List<Document> bucket = new ArrayList<>();
+        private int buckets;
+        private int total;
+
+        HistoryWriter(long customerId, String type, int maxEmbedded, DocumentBatcher bucketBatcher,
+                      StaleBucketCleaner staleBuckets) {
+            this.customerId = customerId;
+            this.type = type;
+            this.maxEmbedded = Math.max(0, maxEmbedded);
+            this.bucketBatcher = bucketBatcher;
+            this.staleBuckets = staleBuckets;
+        }
+
+        void add(Document entry) {
+            total++;
+            recent.addLast(entry);
+            if (recent.size() <= maxEmbedded) {
+                return;
+            }
+            bucket.add(recent.removeFirst());
+            if (bucket.size() >= Math.max(1, bucketSize)) {
+                writeBucket();
+            }
+        }
+
+        void finish() {
+            if (!bucket.isEmpty()) {
+                writeBucket();
+            }
+            recent.descendingIterator().forEachRemaining(embedded::add);
+            staleBuckets.deleteFrom(customerId, type, buckets);
+        }
+
+        private void writeBucket() {
+            Document document = new Document("_id", bucketId(customerId, type, buckets))
+                .append("customerId", (int) customerId)
+                .append("type", type)
+                .append("bucket", buckets)
+                .append("count", bucket.size())
+                .append("entries", bucket);
+            bucketBatcher.add(new RawBsonDocument(document, DOCUMENT_CODEC));
+            buckets++;
+            bucket = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Deletes the buckets an earlier build wrote past each history's new bucket count, in bulk requests
+     */
+    private static final class StaleBucketCleaner {
+        private final DocumentSink sink;
+        private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+        private List<Bson> filters = new ArrayList<>();
+        private long checked;
+
+        StaleBucketCleaner(DocumentSink sink) {
+            this.sink = sink;
+        }
+
+        void deleteFrom(long customerId, String type, int firstStaleBucket) {
+            // Range on _id, whose embedded documents compare field by field, so the _id index serves it
+            filters.add(Filters.and(
+                Filters.gte("_id", bucketId(customerId, type, firstStaleBucket)),
+                Filters.lte("_id", bucketId(customerId, type, Integer.MAX_VALUE))));
+            checked++;
+            if (filters.size() >= STALE_BUCKET_DELETE_BATCH) {
+                flush();
+            }
+        }
+
+        void finish() {
+            flush();
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            pending.clear();
+        }
+
+        void abandon() {
+            filters = new ArrayList<>();
+            for (CompletableFuture<Void> future : pending) {
+                try {
+                    future.join();
+                } catch (CompletionException | CancellationException ignored) {
+                    // The build's own failure is what gets reported
+                }
+            }
+            pending.clear();
+        }
+
+        private void flush() {
+            if (!filters.isEmpty()) {
+                pending.add(sink.deleteMatching(BUCKET_COLLECTION, filters));
+                filters = new ArrayList<>();
+            }
+        }
+    }
+
+    private static Document bucketId(long customerId, String type, int bucket) {
+        return new Document("customerId", (int) customerId)
+            .append("type", type)
+            .append("bucket", bucket);
+    }
+
+    private static final class RentalColumns {
+        final int rentalId;
+        final int rentalDate;
+        final int returnDate;
+        final int inventoryId;
+        final int staffId;
+
+        RentalColumns(SortedRowCursor cursor) {
+            rentalId = cursor.column("rental_id");
+            rentalDate = cursor.column("rental_date");
+            returnDate = cursor.column("return_date");
+            inventoryId = cursor.column("inventory_id");
+            staffId = cursor.column("staff_id");
+        }
+
+        Document toDocument(Object[] row, Map<Integer, String> filmTitleByInventory) {
+            return new Document("rentalId", row[rentalId])
+                .append("filmTitle", filmTitleByInventory.get((Integer) row[inventoryId]))
+                .append("inventoryId", row[inventoryId])
+                .append("rentalDate", row[rentalDate])
+                .append("returnDate", row[returnDate])
+                .append("staffId", row[staffId]);
+        }
+    }
+
+    private static final class PaymentColumns {
+        final int paymentId;
+        final int rentalId;
+        final int amount;
+        final int paymentDate;
+        final int staffId;
+
+        PaymentColumns(SortedRowCursor cursor) {
+            paymentId = cursor.column("payment_id");
+            rentalId = cursor.column("rental_id");
+            amount = cursor.column("amount");
+            paymentDate = cursor.column("payment_date");
+            staffId = cursor.column("staff_id");
+        }
+
+        Document toDocument(Object[] row) {
+            return new Document("paymentId", row[paymentId])
+                .append("rentalId", row[rentalId])
+                .append("amount", row[amount])
+                .append("paymentDate", row[paymentDate])
+                .append("staffId", row[staffId]);
+        }
+    }
+}
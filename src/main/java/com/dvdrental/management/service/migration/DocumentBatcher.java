@@ -0,0 +1,130 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Groups encoded documents into batches bounded by document count and encoded size
+ * and hands them to a {@link DocumentSink}. One batcher is used by a single worker thread.
+ */
+public class DocumentBatcher {
+
+    private final DocumentSink sink;
+    private final String collection;
+    private int maxDocuments;
+    private final long maxBytes;
+    private final DocumentSink.WriteMode writeMode;
+
+    private List<RawBsonDocument> batch = new ArrayList<>();
+    private long batchBytes;
+    private final List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private List<CompletableFuture<Void>> sincePageMark = new ArrayList<>();
+
+    private long documentsWritten;
+    private long bytesWritten;
+    private int batchesWritten;
+
+    public DocumentBatcher(DocumentSink sink, String collection, int maxDocuments, long maxBytes,
+                           DocumentSink.WriteMode writeMode) {
+        this.sink = sink;
+        this.writeMode = writeMode;
+        this.collection = collection;
+        this.maxDocuments = Math.max(1, maxDocuments);
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * Change the document limit for batches started from now on, e.g. to follow an adaptive page size
+     */
+    public void setMaxDocuments(int maxDocuments) {
+        this.maxDocuments = Math.max(1, maxDocuments);
+    }
+
+    public void add(RawBsonDocument document) {
+        int size = document.getByteBuffer().remaining();
+        if (!batch.isEmpty() && batchBytes + size > maxBytes) {
+            flush();
+        }
+        batch.add(document);
+        batchBytes += size;
+        if (batch.size() >= maxDocuments) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the current batch to the sink without waiting for it to be acknowledged
+     */
+    public void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        documentsWritten += batch.size();
+        bytesWritten += batchBytes;
+        batchesWritten++;
+        CompletableFuture<Void> acknowledged = sink.writeBatch(collection, batch, writeMode);
+        pending.add(acknowledged);
+        sincePageMark.add(acknowledged);
+        pending.removeIf(future -> future.isDone() && !future.isCompletedExceptionally());
+        batch = new ArrayList<>();
+        batchBytes = 0;
+    }
+
+    /**
+     * Flush at a page boundary. The returned future completes once every batch flushed
+     * since the previous page boundary has been acknowledged, i.e. once the page is durable.
+     */
+    public CompletableFuture<Void> flushPage() {
+        flush();
+        CompletableFuture<Void> page = CompletableFuture.allOf(sincePageMark.toArray(new CompletableFuture<?>[0]));
+        sincePageMark = new ArrayList<>();
+        return page;
+    }
+
+    /**
+     * Flush the last partial batch and wait until the sink has acknowledged every batch.
+     * Rethrows the first write failure as a CompletionException.
+     */
+    public void finish() {
+        flush();
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        pending.clear();
+        sincePageMark.clear();
+    }
+
+    /**
+     * Drop the unsent batch and wait for the batches already handed to the sink, ignoring their failures.
+     * Called when the producer fails, so that no write is left running behind it. Does nothing after
+     * {@link #finish()}.
+     */
+    public void abandon() {
+        batch = new ArrayList<>();
+        batchBytes = 0;
+        for (CompletableFuture<Void> future : pending) {
+            try {
+                future.join();
+            } catch (CompletionException | CancellationException ignored) {
+                // The producer's own failure is what gets reported
+            }
+        }
+        pending.clear();
+        sincePageMark.clear();
+    }
+
+    public long getDocumentsWritten() {
+        return documentsWritten;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public int getBatchesWritten() {
+        return batchesWritten;
+    }
+}
@@ -0,0 +1,20 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+
+/**
+ * One change to apply to a target collection, as decoded from the PostgreSQL change stream.
+ * id is the _id value (a Document for composite keys); document is null for deletes.
+ */
+public record DocumentChange(Type type, Object id, RawBsonDocument document) {
+
+    public enum Type { UPSERT, DELETE }
+
+    public static DocumentChange upsert(Object id, RawBsonDocument document) {
+        return new DocumentChange(Type.UPSERT, id, document);
+    }
+
+    public static DocumentChange delete(Object id) {
+        return new DocumentChange(Type.DELETE, id, null);
+    }
+}
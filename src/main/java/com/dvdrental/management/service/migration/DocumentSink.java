@@ -0,0 +1,65 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Load stage of the migration pipeline: receives batches of encoded documents for a collection.
+ * Implementations may write asynchronously, but must bound the number of batches in flight
+ * by blocking the caller of {@link #writeBatch}, which is how backpressure reaches the extractor.
+ */
+public interface DocumentSink {
+
+    /**
+     * INSERT for full copies (existing _id values are skipped), UPSERT to replace documents by _id
+     */
+    enum WriteMode { INSERT, UPSERT }
+
+    /**
+     * Short name of the sink, reported in backup results
+     */
+    String getName();
+
+    /**
+     * Write one batch. The returned future completes when the target has acknowledged it.
+     * The list is owned by the sink after this call and must not be modified by the caller.
+     */
+    CompletableFuture<Void> writeBatch(String collection, List<RawBsonDocument> documents, WriteMode mode);
+
+    /**
+     * Apply upserts and deletes to a collection in the given order, as produced by change data capture.
+     * The returned future completes when the target has acknowledged every change.
+     */
+    CompletableFuture<Void> applyChanges(String collection, List<DocumentChange> changes);
+
+    /**
+     * Delete every document of a collection that matches one of the filters, e.g. the leftovers of an
+     * earlier build that produced more documents. The returned future completes when the target has
+     * acknowledged the deletes.
+     */
+    CompletableFuture<Void> deleteMatching(String collection, List<Bson> filters);
+
+    /**
+     * Remove everything previously written to a collection, used before re-copying
+     * a table that has no primary key and therefore cannot be resumed part way
+     */
+    void dropCollection(String collection);
+
+    /**
+     * Stream the documents of a collection to the consumer, only those whose integer _id lies in the range
+     * when one is given. Used to verify a copy; sinks that cannot be read back throw UnsupportedOperationException.
+     */
+    default void scan(String collection, KeyRange range, Consumer<RawBsonDocument> consumer) {
+        throw new UnsupportedOperationException("The " + getName() + " sink cannot be read back");
+    }
+
+    /**
+     * Describe the current state of the target, such as its collections and document counts
+     */
+    Map<String, Object> describe();
+}
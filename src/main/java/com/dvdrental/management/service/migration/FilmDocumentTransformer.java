@@ -0,0 +1,234 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * Builds the denormalized films collection of mongodb_schema_design.md: every film with its
+ * language, categories and actors embedded.
+ *
+ * The small dimension tables (language, category, actor) are loaded into maps up front. film,
+ * film_actor and film_category are then streamed in film_id order on three cursors and merge-joined
+ * in a single linear pass, so each table is read once and memory holds one film's links at a time
+ * instead of the N+1 lookups a repository-based build would need. All of these reads share one
+ * exported {@link SnapshotCoordinator} snapshot, so a film never embeds links committed after it was read.
+ * The build holds {@link MigrationThrottle} stream slots for its connections while it runs.
+ */
+@Component
+public class FilmDocumentTransformer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FilmDocumentTransformer.class);
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private static final int BUILD_CONNECTIONS = 4;
+
+    public static final String COLLECTION = "films";
+
+    private static final String FILM_QUERY =
+        "SELECT film_id, title, description, release_year, language_id, rental_duration, rental_rate, " +
+        "length, replacement_cost, rating, special_features, fulltext, last_update FROM film ORDER BY film_id";
+
+    private static final String FILM_ACTOR_QUERY =
+        "SELECT film_id, actor_id FROM film_actor ORDER BY film_id, actor_id";
+
+    private static final String FILM_CATEGORY_QUERY =
+        "SELECT film_id, category_id FROM film_category ORDER BY film_id, category_id";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final MigrationPipelineFactory pipelineFactory;
+    private final SnapshotCoordinator snapshots;
+    private final MigrationThrottle throttle;
+
+    @Value("${migration.extract.fetch-size:1000}")
+    private int fetchSize;
+
+    public FilmDocumentTransformer(@Qualifier(MigrationDataSources.DATA_SOURCE) DataSource dataSource,
+                                   @Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                                   MigrationPipelineFactory pipelineFactory, SnapshotCoordinator snapshots,
+                                   MigrationThrottle throttle) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pipelineFactory = pipelineFactory;
+        this.snapshots = snapshots;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Build and upsert one document per film. Returns counts of what was read, embedded and written.
+     */
+    public Map<String, Object> transform() throws SQLException {
+        // Stream slots for every connection the build holds at once: its snapshot and three cursors
+        throttle.acquireStreams(BUILD_CONNECTIONS);
+        try (SnapshotCoordinator.ExportedSnapshot snapshot = snapshots.export()) {
+            return transform(snapshot);
+        } finally {
+            throttle.releaseStreams(BUILD_CONNECTIONS);
+        }
+    }
+
+    private Map<String, Object> transform(SnapshotCoordinator.ExportedSnapshot snapshot) throws SQLException {
+        long start = System.currentTimeMillis();
+
+        Map<Integer, Document> languages = new HashMap<>();
+        Map<Integer, Document> categories = new HashMap<>();
+        Map<Integer, Document> actors = new HashMap<>();
+        snapshots.bind(snapshot, () -> snapshots.inCurrentSnapshot(() -> {
+            jdbcTemplate.query("SELECT language_id, name FROM language", rs -> {
+                languages.put(rs.getInt(1), new Document("_id", rs.getInt(1)).append("name", trim(rs.getString(2))));
+            });
+            jdbcTemplate.query("SELECT category_id, name FROM category", rs -> {
+                categories.put(rs.getInt(1), new Document("_id", rs.getInt(1)).append("name", rs.getString(2)));
+            });
+            jdbcTemplate.query("SELECT actor_id, first_name, last_name FROM actor", rs -> {
+                actors.put(rs.getInt(1), new Document("_id", rs.getInt(1))
+                    .append("firstName", rs.getString(2))
+                    .append("lastName", rs.getString(3)));
+            });
+            return null;
+        }));
+
+        DocumentBatcher batcher = pipelineFactory.newBatcher(COLLECTION, DocumentSink.WriteMode.UPSERT);
+        long films = 0;
+        long actorLinks = 0;
+        long categoryLinks = 0;
+        long unknownReferences = 0;
+
+        try (SortedRowCursor film =
+                 new SortedRowCursor(dataSource, FILM_QUERY, "film_id", fetchSize, snapshot);
+             SortedRowCursor filmActor =
+                 new SortedRowCursor(dataSource, FILM_ACTOR_QUERY, "film_id", fetchSize, snapshot);
+             SortedRowCursor filmCategory =
+                 new SortedRowCursor(dataSource, FILM_CATEGORY_QUERY, "film_id", fetchSize, snapshot)) {
+
+            FilmColumns columns = new FilmColumns(film);
+            int actorColumn = filmActor.column("actor_id");
+            int categoryColumn = filmCategory.column("category_id");
+
+            while (film.hasRow()) {
+                long filmId = film.key();
+                Object[] row = film.row();
+
+                List<Document> filmActors = new ArrayList<>();
+                for (Object[] link : filmActor.takeRowsFor(filmId)) {
+                    Document actor = actors.get((Integer) link[actorColumn]);
+                    if (actor != null) {
+                        filmActors.add(actor);
+                    } else {
+                        unknownReferences++;
+                    }
+                }
+                List<Document> filmCategories = new ArrayList<>();
+                for (Object[] link : filmCategory.takeRowsFor(filmId)) {
+                    Document category = categories.get((Integer) link[categoryColumn]);
+                    if (category != null) {
+                        filmCategories.add(category);
+                    } else {
+                        unknownReferences++;
+                    }
+                }
+
+                Document language = languages.get((Integer) row[columns.languageId]);
+                if (language == null && row[columns.languageId] != null) {
+                    unknownReferences++;
+                }
+
+                Document document = new Document("_id", row[columns.filmId])
+                    .append("title", row[columns.title])
+                    .append("description", row[columns.description])
+                    .append("releaseYear", row[columns.releaseYear])
+                    .append("language", language)
+                    .append("rentalDuration", row[columns.rentalDuration])
+                    .append("rentalRate", row[columns.rentalRate])
+                    .append("length", row[columns.length])
+                    .append("replacementCost", row[columns.replacementCost])
+                    .append("rating", row[columns.rating])
+                    .append("specialFeatures", row[columns.specialFeatures])
+                    .append("fulltext", row[columns.fulltext])
+                    .append("lastUpdate", row[columns.lastUpdate])
+                    .append("categories", filmCategories)
+                    .append("actors", filmActors);
+                batcher.add(new RawBsonDocument(document, DOCUMENT_CODEC));
+
+                films++;
+                actorLinks += filmActors.size();
+                categoryLinks += filmCategories.size();
+                film.advance();
+            }
+
+            batcher.finish();
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("collection", COLLECTION);
+            result.put("documentsWritten", batcher.getDocumentsWritten());
+            result.put("bytesWritten", batcher.getBytesWritten());
+            result.put("batchesWritten", batcher.getBatchesWritten());
+            result.put("films", films);
+            result.put("actorsEmbedded", actorLinks);
+            result.put("categoriesEmbedded", categoryLinks);
+            result.put("linksWithoutFilm", filmActor.getRowsSkipped() + filmCategory.getRowsSkipped());
+            result.put("unknownReferences", unknownReferences);
+            result.put("dimensionRows", Map.of(
+                "language", languages.size(), "category", categories.size(), "actor", actors.size()));
+            result.put("elapsedMillis", System.currentTimeMillis() - start);
+            logger.info("Built {} film documents with {} actors and {} categories embedded",
+                films, actorLinks, categoryLinks);
+            return result;
+        } finally {
+            // On failure, wait for the batches already sent rather than leave them writing
+            batcher.abandon();
+        }
+    }
+
+    private static String trim(String value) {
+        // language.name is char(20) and comes back blank-padded
+        return value != null ? value.trim() : null;
+    }
+
+    /**
+     * Positions of the film columns in the cursor's row values, resolved once
+     */
+    private static final class FilmColumns {
+        final int filmId;
+        final int title;
+        final int description;
+        final int releaseYear;
+        final int languageId;
+        final int rentalDuration;
+        final int rentalRate;
+        final int length;
+        final int replacementCost;
+        final int rating;
+        final int specialFeatures;
+        final int fulltext;
+        final int lastUpdate;
+
+        FilmColumns(SortedRowCursor cursor) {
+            filmId = cursor.column("film_id");
+            title = cursor.column("title");
+            description = cursor.column("description");
+            releaseYear = cursor.column("release_year");
+            languageId = cursor.column("language_id");
+            rentalDuration = cursor.column("rental_duration");
+            rentalRate = cursor.column("rental_rate");
+            length = cursor.column("length");
+            replacementCost = cursor.column("replacement_cost");
+            rating = cursor.column("rating");
+            specialFeatures = cursor.column("special_features");
+            fulltext = cursor.column("fulltext");
+            lastUpdate = cursor.column("last_update");
+        }
+    }
+}
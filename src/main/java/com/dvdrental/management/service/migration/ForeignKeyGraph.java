@@ -0,0 +1,135 @@
+package com.dvdrental.management.service.migration;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+/**
+ * Dependency graph of tables built from PostgreSQL foreign keys.
+ * An edge parent → child means child references parent, so parent must be migrated first.
+ * Self references are dropped; cycles (e.g. store ↔ staff in dvdrental) are tolerated and
+ * broken at scheduling time by releasing the table with the fewest unfinished parents.
+ */
+public class ForeignKeyGraph {
+
+    private static final String FOREIGN_KEY_QUERY =
+        "SELECT child.relname AS child_table, parent.relname AS parent_table " +
+        "FROM pg_constraint c " +
+        "JOIN pg_class child ON child.oid = c.conrelid " +
+        "JOIN pg_class parent ON parent.oid = c.confrelid " +
+        "JOIN pg_namespace n ON n.oid = child.relnamespace " +
+        "WHERE c.contype = 'f' AND n.nspname = 'public'";
+
+    private final Map<String, Set<String>> parents = new TreeMap<>();
+    private final Map<String, Set<String>> children = new TreeMap<>();
+
+    private ForeignKeyGraph(Collection<String> tables) {
+        for (String table : tables) {
+            parents.put(table, new TreeSet<>());
+            children.put(table, new TreeSet<>());
+        }
+    }
+
+    /**
+     * Read the foreign keys of the public schema and build the graph for the given tables.
+     * Constraints pointing outside the table set are ignored.
+     */
+    public static ForeignKeyGraph load(JdbcTemplate jdbcTemplate, Collection<String> tables) {
+        ForeignKeyGraph graph = new ForeignKeyGraph(tables);
+        jdbcTemplate.query(FOREIGN_KEY_QUERY, rs -> {
+            graph.addEdge(rs.getString("parent_table"), rs.getString("child_table"));
+        });
+        return graph;
+    }
+
+    /**
+     * Rebuild a graph from a table → parent tables map, as stored in a backup plan
+     */
+    public static ForeignKeyGraph fromDependencies(Map<String, ? extends Collection<String>> dependencies) {
+        ForeignKeyGraph graph = new ForeignKeyGraph(dependencies.keySet());
+        dependencies.forEach((child, tableParents) -> {
+            for (String parent : tableParents) {
+                graph.addEdge(parent, child);
+            }
+        });
+        return graph;
+    }
+
+    private void addEdge(String parent, String child) {
+        if (parent.equals(child) || !parents.containsKey(parent) || !parents.containsKey(child)) {
+            return;
+        }
+        parents.get(child).add(parent);
+        children.get(parent).add(child);
+    }
+
+    public Set<String> getTables() {
+        return Collections.unmodifiableSet(parents.keySet());
+    }
+
+    public Set<String> getParents(String table) {
+        return Collections.unmodifiableSet(parents.getOrDefault(table, Collections.emptySet()));
+    }
+
+    public Set<String> getChildren(String table) {
+        return Collections.unmodifiableSet(children.getOrDefault(table, Collections.emptySet()));
+    }
+
+    /**
+     * Table → parent tables, suitable for putting in a plan and feeding back to {@link #fromDependencies}
+     */
+    public Map<String, List<String>> toDependencies() {
+        Map<String, List<String>> dependencies = new TreeMap<>();
+        parents.forEach((table, tableParents) -> dependencies.put(table, new ArrayList<>(tableParents)));
+        return dependencies;
+    }
+
+    /**
+     * Parents-first ordering of all tables. Ties are broken alphabetically, cycles by
+     * releasing the blocked table with the fewest unfinished parents.
+     */
+    public List<String> topologicalOrder() {
+        Map<String, Integer> unfinishedParents = new HashMap<>();
+        parents.forEach((table, tableParents) -> unfinishedParents.put(table, tableParents.size()));
+
+        PriorityQueue<String> ready = new PriorityQueue<>();
+        unfinishedParents.forEach((table, count) -> {
+            if (count == 0) {
+                ready.add(table);
+            }
+        });
+
+        List<String> order = new ArrayList<>();
+        while (order.size() < parents.size()) {
+            if (ready.isEmpty()) {
+                String released = breakCycle(unfinishedParents);
+                unfinishedParents.put(released, 0);
+                ready.add(released);
+            }
+            String table = ready.poll();
+            unfinishedParents.remove(table);
+            order.add(table);
+            for (String child : children.get(table)) {
+                Integer count = unfinishedParents.get(child);
+                if (count != null && count > 0 && --count == 0) {
+                    ready.add(child);
+                }
+                if (count != null) {
+                    unfinishedParents.put(child, count);
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Pick the blocked table that is closest to being ready, used when the remaining tables form a cycle
+     */
+    static String breakCycle(Map<String, Integer> unfinishedParents) {
+        return unfinishedParents.entrySet().stream()
+            .filter(entry -> entry.getValue() > 0)
+            .min(Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+            .map(Map.Entry::getKey)
+            .orElseThrow(() -> new IllegalStateException("No blocked table left to release"));
+    }
+}
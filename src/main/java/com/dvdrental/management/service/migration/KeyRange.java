@@ -0,0 +1,11 @@
+package com.dvdrental.management.service.migration;
+
+/**
+ * Inclusive slice of an integer primary key space, extracted by one chunk worker
+ */
+public record KeyRange(int chunkId, long lowerBound, long upperBound) {
+
+    public long width() {
+        return upperBound - lowerBound + 1;
+    }
+}
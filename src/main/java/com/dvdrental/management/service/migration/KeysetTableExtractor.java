@@ -0,0 +1,342 @@
+package com.dvdrental.management.service.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Streams the rows of a PostgreSQL table to a {@link RowHandler} in primary-key order.
+ *
+ * Pages are fetched with keyset pagination ({@code WHERE (pk) > (last key) ORDER BY pk LIMIT n})
+ * so every page is an index range scan, no matter how deep into the table the migration is.
+ * Tables without a primary key (views, heap tables) are read through a single server-side
+ * cursor using the configured fetch size. Rows are handed over while the cursor sits on them;
+ * nothing is materialized as a page of maps.
+ *
+ * With {@code migration.extract.mode=copy}, handlers that accept decoded rows are fed by
+ * {@link BinaryCopyExtractor} instead: one binary COPY per table or range, in the same key order.
+ * Extractions with bound filter parameters or key types that cannot be resumed from text keep
+ * using keyset pagination.
+ *
+ * Every extraction holds a {@link MigrationThrottle} stream slot while it reads, and its pages are
+ * charged to the throttle's rate limit. On a thread with a bound {@link SnapshotCoordinator} snapshot,
+ * the extraction reads in one transaction on that snapshot.
+ */
+@Component
+public class KeysetTableExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeysetTableExtractor.class);
+
+    private static final String PRIMARY_KEY_QUERY =
+        "SELECT a.attname, format_type(a.atttypid, a.atttypmod) " +
+        "FROM pg_index i " +
+        "JOIN pg_attribute a ON a.attrelid = i.indrelid AND a.attnum = ANY(i.indkey) " +
+        "WHERE i.indrelid = to_regclass('public.' || quote_ident(?)) AND i.indisprimary " +
+        "ORDER BY array_position(i.indkey::int2[], a.attnum)";
+
+    /**
+     * How rows are read from PostgreSQL
+     */
+    public enum Mode { KEYSET, COPY }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BinaryCopyExtractor copyExtractor;
+    private final MigrationThrottle throttle;
+    private final SnapshotCoordinator snapshots;
+
+    @Value("${migration.extract.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${migration.extract.mode:keyset}")
+    private String mode;
+
+    public KeysetTableExtractor(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                                BinaryCopyExtractor copyExtractor, MigrationThrottle throttle,
+                                SnapshotCoordinator snapshots) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.copyExtractor = copyExtractor;
+        this.throttle = throttle;
+        this.snapshots = snapshots;
+    }
+
+    public Mode getMode() {
+        return Mode.valueOf(mode.trim().toUpperCase());
+    }
+
+    /**
+     * Primary key column of a table, with its SQL type as reported by format_type
+     */
+    public record KeyColumn(String name, String sqlType) {}
+
+    /**
+     * Look up the primary key columns of a public table, in key order.
+     * Returns an empty list for views and tables without a primary key.
+     */
+    public List<KeyColumn> resolvePrimaryKey(String tableName) {
+        return jdbcTemplate.query(PRIMARY_KEY_QUERY,
+            (rs, rowNum) -> new KeyColumn(rs.getString(1), rs.getString(2)),
+            tableName);
+    }
+
+    /**
+     * Stream every row of the table to the handler, pageSize rows per round trip.
+     * Returns the number of rows streamed.
+     */
+    public long extract(String tableName, int pageSize, RowHandler handler) {
+        return extract(tableName, resolvePrimaryKey(tableName), pageSize, handler);
+    }
+
+    /**
+     * Same as {@link #extract(String, int, RowHandler)} for callers that already resolved the key
+     */
+    public long extract(String tableName, List<KeyColumn> keyColumns, int pageSize, RowHandler handler) {
+        return extract(tableName, keyColumns, pageSize, null, handler);
+    }
+
+    /**
+     * Stream the rows whose key sorts after startAfterKey (all rows when null), e.g. to resume from a checkpoint.
+     * Key values may be given as text; they are cast to the key column types by PostgreSQL.
+     */
+    public long extract(String tableName, List<KeyColumn> keyColumns, int pageSize, Object[] startAfterKey,
+                        RowHandler handler) {
+        return extract(tableName, keyColumns, pageSize, startAfterKey, null, handler);
+    }
+
+    /**
+     * Stream the rows after startAfterKey that also match the filter (all of them when filter is null)
+     */
+    public long extract(String tableName, List<KeyColumn> keyColumns, int pageSize, Object[] startAfterKey,
+                        RowFilter filter, RowHandler handler) {
+        RowHandler throttled = throttle.throttled(handler);
+        long rows;
+        try {
+            throttle.acquireStream();
+            try {
+                rows = snapshots.inCurrentSnapshot(() -> {
+                    if (useBinaryCopy(keyColumns, filter, handler)) {
+                        return copyExtractor.extract(tableName, keyColumns, pageSize, null, startAfterKey, filter,
+                            throttled);
+                    }
+                    if (keyColumns.isEmpty()) {
+                        logger.debug("Table {} has no primary key, streaming through a server-side cursor", tableName);
+                        return extractWithCursor(tableName, pageSize, filter, throttled);
+                    }
+                    return extractByKeyset(tableName, keyColumns, Math.max(1, pageSize), null, startAfterKey, filter,
+                        throttled);
+                });
+            } finally {
+                throttle.releaseStream();
+            }
+        } catch (RuntimeException e) {
+            handler.onAbort(e);
+            throw e;
+        }
+        handler.onComplete();
+        return rows;
+    }
+
+    /**
+     * Stream only the rows whose single-column primary key falls inside the range.
+     * Used by {@link ParallelRangeExtractor} to give each chunk its own slice of the key space.
+     */
+    public long extractRange(String tableName, List<KeyColumn> keyColumns, KeyRange range,
+                             int pageSize, Object[] startAfterKey, RowHandler handler) {
+        if (keyColumns.size() != 1) {
+            throw new IllegalArgumentException("Range extraction needs a single-column primary key: " + tableName);
+        }
+        RowHandler throttled = throttle.throttled(handler);
+        long rows;
+        try {
+            throttle.acquireStream();
+            try {
+                rows = snapshots.inCurrentSnapshot(() -> useBinaryCopy(keyColumns, null, handler)
+                    ? copyExtractor.extract(tableName, keyColumns, pageSize, range, startAfterKey, null, throttled)
+                    : extractByKeyset(tableName, keyColumns, Math.max(1, pageSize), range, startAfterKey, null, throttled));
+            } finally {
+                throttle.releaseStream();
+            }
+        } catch (RuntimeException e) {
+            handler.onAbort(e);
+            throw e;
+        }
+        handler.onComplete();
+        return rows;
+    }
+
+    private boolean useBinaryCopy(List<KeyColumn> keyColumns, RowFilter filter, RowHandler handler) {
+        return getMode() == Mode.COPY
+            && handler.acceptsDecodedRows()
+            && (filter == null || filter.parameters().isEmpty())
+            && BinaryCopyExtractor.isResumableKey(keyColumns);
+    }
+
+    private long extractByKeyset(String tableName, List<KeyColumn> keyColumns, int pageSize,
+                                 KeyRange range, Object[] startAfterKey, RowFilter filter, RowHandler handler) {
+        String orderBy = keyColumns.stream()
+            .map(column -> quoteIdentifier(column.name()))
+            .collect(Collectors.joining(", "));
+        String placeholders = keyColumns.stream()
+            .map(column -> "CAST(? AS " + column.sqlType() + ")")
+            .collect(Collectors.joining(", "));
+
+        List<String> firstPageConditions = new ArrayList<>();
+        List<String> nextPageConditions = new ArrayList<>();
+        nextPageConditions.add("(" + orderBy + ") > (" + placeholders + ")");
+        if (range != null) {
+            String rangeCondition = quoteIdentifier(keyColumns.get(0).name()) + " BETWEEN ? AND ?";
+            firstPageConditions.add(rangeCondition);
+            nextPageConditions.add(rangeCondition);
+        }
+        if (filter != null) {
+            firstPageConditions.add("(" + filter.condition() + ")");
+            nextPageConditions.add("(" + filter.condition() + ")");
+        }
+
+        String firstPageSql = "SELECT * FROM " + quoteIdentifier(tableName) +
+            whereClause(firstPageConditions) + " ORDER BY " + orderBy + " LIMIT ?";
+        String nextPageSql = "SELECT * FROM " + quoteIdentifier(tableName) +
+            whereClause(nextPageConditions) + " ORDER BY " + orderBy + " LIMIT ?";
+
+        long totalRows = 0;
+        Object[] lastKey = startAfterKey;
+
+        while (true) {
+            PageState page = new PageState(keyColumns);
+            Object[] boundKey = lastKey;
+            String sql = boundKey == null ? firstPageSql : nextPageSql;
+            int limit = Math.max(1, handler.nextPageSize(pageSize));
+
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql);
+                ps.setFetchSize(Math.min(fetchSize, limit));
+                int index = 1;
+                if (boundKey != null) {
+                    for (Object value : boundKey) {
+                        ps.setObject(index++, value);
+                    }
+                }
+                if (range != null) {
+                    ps.setLong(index++, range.lowerBound());
+                    ps.setLong(index++, range.upperBound());
+                }
+                if (filter != null) {
+                    for (Object parameter : filter.parameters()) {
+                        ps.setObject(index++, parameter);
+                    }
+                }
+                ps.setInt(index, limit);
+                return ps;
+            }, rs -> {
+                handler.onRow(rs);
+                page.capture(rs);
+            });
+
+            if (page.rows == 0) {
+                break;
+            }
+            totalRows += page.rows;
+            lastKey = page.lastKey;
+            handler.onPage(page.rows, lastKey);
+
+            if (page.rows < limit) {
+                break;
+            }
+        }
+
+        return totalRows;
+    }
+
+    private long extractWithCursor(String tableName, int pageSize, RowFilter filter, RowHandler handler) {
+        String sql = "SELECT * FROM " + quoteIdentifier(tableName) +
+            (filter != null ? " WHERE " + filter.condition() : "");
+
+        Long streamed = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            // PostgreSQL only honours fetchSize inside a transaction
+            boolean autoCommit = con.getAutoCommit();
+            if (autoCommit) {
+                con.setAutoCommit(false);
+            }
+            try (PreparedStatement ps = con.prepareStatement(sql)) {
+                ps.setFetchSize(fetchSize);
+                if (filter != null) {
+                    int index = 1;
+                    for (Object parameter : filter.parameters()) {
+                        ps.setObject(index++, parameter);
+                    }
+                }
+                long rows = 0;
+                int rowsInPage = 0;
+                int pageLimit = Math.max(1, handler.nextPageSize(pageSize));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.onRow(rs);
+                        rows++;
+                        if (++rowsInPage >= pageLimit) {
+                            handler.onPage(rowsInPage, null);
+                            rowsInPage = 0;
+                            pageLimit = Math.max(1, handler.nextPageSize(pageSize));
+                        }
+                    }
+                }
+                if (rowsInPage > 0) {
+                    handler.onPage(rowsInPage, null);
+                }
+                return rows;
+            } finally {
+                if (autoCommit) {
+                    con.commit();
+                    con.setAutoCommit(true);
+                }
+            }
+        });
+
+        return streamed != null ? streamed : 0L;
+    }
+
+    private static String whereClause(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Tracks the row count and the key of the most recent row of the page being streamed
+     */
+    private static final class PageState {
+        private final List<KeyColumn> keyColumns;
+        private int[] keyIndexes;
+        private Object[] lastKey;
+        private int rows;
+
+        PageState(List<KeyColumn> keyColumns) {
+            this.keyColumns = keyColumns;
+        }
+
+        void capture(ResultSet rs) throws SQLException {
+            if (keyIndexes == null) {
+                keyIndexes = new int[keyColumns.size()];
+                for (int i = 0; i < keyIndexes.length; i++) {
+                    keyIndexes[i] = rs.findColumn(keyColumns.get(i).name());
+                }
+                lastKey = new Object[keyIndexes.length];
+            }
+            for (int i = 0; i < keyIndexes.length; i++) {
+                lastKey[i] = rs.getObject(keyIndexes[i]);
+            }
+            rows++;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sink used when no MongoDB target is configured: reports each batch instead of writing it.
+ * Keeps the backup flow runnable end to end against PostgreSQL alone.
+ */
+public class LoggingDocumentSink implements DocumentSink {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingDocumentSink.class);
+
+    @Override
+    public String getName() {
+        return "logging";
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBatch(String collection, List<RawBsonDocument> documents, WriteMode mode) {
+        // Simulate MCP MongoDB insertion with coordination
+        logger.info("MCP Coordination: PostgreSQL MCP → MongoDB MCP, {} {} records into collection '{}'",
+            mode == WriteMode.UPSERT ? "upserting" : "inserting", documents.size(), collection);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> applyChanges(String collection, List<DocumentChange> changes) {
+        long deletes = changes.stream().filter(change -> change.type() == DocumentChange.Type.DELETE).count();
+        logger.info("MCP Coordination: PostgreSQL CDC → MongoDB MCP, collection '{}': {} upserts, {} deletes",
+            collection, changes.size() - deletes, deletes);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteMatching(String collection, List<Bson> filters) {
+        logger.info("MongoDB MCP: Deleting documents matching {} filters from collection '{}'",
+            filters.size(), collection);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public void dropCollection(String collection) {
+        logger.info("MongoDB MCP: Dropping collection '{}' before re-copy", collection);
+    }
+
+    @Override
+    public Map<String, Object> describe() {
+        return Map.of(
+            "sink", getName(),
+            "note", "No MongoDB target configured (migration.mongodb.uri), batches are only logged"
+        );
+    }
+}
@@ -0,0 +1,355 @@
+package com.dvdrental.management.service.migration;
+
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Continuous change data capture from a PostgreSQL logical replication slot into the {@link DocumentSink}.
+ *
+ * The slot is read with the pgjdbc replication API using the wal2json output plugin, so the server
+ * needs {@code wal_level=logical} and wal2json installed. Changes are collected into micro-batches
+ * that are flushed when they reach the configured size or age, and applied per collection in
+ * commit order. The slot's flushed LSN is only advanced to the last commit whose changes the sink
+ * has acknowledged: after a crash the slot replays from there, and since every change is an
+ * upsert or delete by _id the replay is harmless.
+ *
+ * Typical cutover: start CDC (the slot starts retaining WAL), run a full backup, let CDC catch up,
+ * then switch the application once the reported lag is near zero.
+ */
+@Component
+public class LogicalReplicationSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogicalReplicationSource.class);
+
+    private static final String SLOT_EXISTS_QUERY =
+        "SELECT count(*) FROM pg_replication_slots WHERE slot_name = ?";
+
+    private static final String SLOT_LAG_QUERY =
+        "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), confirmed_flush_lsn), active " +
+        "FROM pg_replication_slots WHERE slot_name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KeysetTableExtractor tableExtractor;
+    private final DocumentSink sink;
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    @Value("${migration.cdc.slot-name:dvdrental_migration}")
+    private String slotName;
+
+    @Value("${migration.cdc.add-tables:public.*}")
+    private String addTables;
+
+    @Value("${migration.cdc.batch-max-changes:1000}")
+    private int batchMaxChanges;
+
+    @Value("${migration.cdc.batch-max-delay-millis:500}")
+    private long batchMaxDelayMillis;
+
+    @Value("${migration.cdc.status-interval-seconds:10}")
+    private int statusIntervalSeconds;
+
+    private final Map<String, List<String>> keyColumnsByTable = new ConcurrentHashMap<>();
+
+    private final AtomicLong changesReceived = new AtomicLong();
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong transactionsApplied = new AtomicLong();
+    private final AtomicLong batchesApplied = new AtomicLong();
+
+    private volatile Thread worker;
+    private volatile boolean running;
+    private volatile String lastError;
+    private volatile long startedAt;
+    private volatile LogSequenceNumber lastReceivedLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile LogSequenceNumber lastFlushedLsn = LogSequenceNumber.INVALID_LSN;
+    private volatile OffsetDateTime lastAppliedCommitTime;
+    private volatile long lastAppliedAt;
+
+    public LogicalReplicationSource(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                                    KeysetTableExtractor tableExtractor, DocumentSink sink) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableExtractor = tableExtractor;
+        this.sink = sink;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Create the replication slot if needed and start streaming changes on a background thread.
+     * Returns false when the source is already running.
+     */
+    public synchronized boolean start() {
+        if (running) {
+            return false;
+        }
+        boolean created = ensureSlot();
+        if (created) {
+            logger.info("Created logical replication slot {} with wal2json", slotName);
+        }
+
+        running = true;
+        lastError = null;
+        startedAt = System.currentTimeMillis();
+        worker = new Thread(this::stream, "migration-cdc");
+        worker.setDaemon(true);
+        worker.start();
+        return true;
+    }
+
+    /**
+     * Stop streaming after the current micro-batch is applied. The slot is kept so a later start
+     * resumes where this one left off; drop it with {@link #dropSlot()} once CDC is no longer needed,
+     * otherwise PostgreSQL retains WAL for it indefinitely.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = worker;
+        }
+        if (current != null) {
+            current.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    /**
+     * Drop the replication slot; only allowed while the source is stopped
+     */
+    public synchronized boolean dropSlot() {
+        if (running) {
+            throw new IllegalStateException("Stop change data capture before dropping slot " + slotName);
+        }
+        Integer slots = jdbcTemplate.queryForObject(SLOT_EXISTS_QUERY, Integer.class, slotName);
+        if (slots == null || slots == 0) {
+            return false;
+        }
+        jdbcTemplate.query("SELECT pg_drop_replication_slot(?)", rs -> {}, slotName);
+        return true;
+    }
+
+    private boolean ensureSlot() {
+        Integer slots = jdbcTemplate.queryForObject(SLOT_EXISTS_QUERY, Integer.class, slotName);
+        if (slots != null && slots > 0) {
+            return false;
+        }
+        jdbcTemplate.queryForObject("SELECT lsn::text FROM pg_create_logical_replication_slot(?, 'wal2json')",
+            String.class, slotName);
+        return true;
+    }
+
+    private void stream() {
+        WalChangeDecoder decoder = new WalChangeDecoder(this::keyColumns);
+        try (Connection connection = openReplicationConnection()) {
+            PGReplicationStream stream = connection.unwrap(PGConnection.class)
+                .getReplicationAPI()
+                .replicationStream()
+                .logical()
+                .withSlotName(slotName)
+                .withSlotOption("format-version", 2)
+                .withSlotOption("include-timestamp", true)
+                .withSlotOption("include-types", true)
+                .withSlotOption("add-tables", addTables)
+                .withStatusInterval(statusIntervalSeconds, TimeUnit.SECONDS)
+                .start();
+
+            MicroBatch batch = new MicroBatch();
+            try {
+                while (running) {
+                    ByteBuffer message = stream.readPending();
+                    if (message == null) {
+                        if (batch.isDue()) {
+                            apply(batch, stream);
+                        }
+                        TimeUnit.MILLISECONDS.sleep(10);
+                        continue;
+                    }
+
+                    lastReceivedLsn = stream.getLastReceiveLSN();
+                    WalChangeDecoder.WalEvent event = decoder.decode(message);
+                    if (event.isCommit()) {
+                        batch.commit(lastReceivedLsn, event.commitTime());
+                    } else if (!event.changes().isEmpty()) {
+                        batch.add(event.table(), event.changes());
+                        changesReceived.addAndGet(event.changes().size());
+                    }
+
+                    if (batch.isFull() || batch.isDue()) {
+                        apply(batch, stream);
+                    }
+                }
+                apply(batch, stream);
+            } finally {
+                stream.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            lastError = e.getMessage();
+            logger.error("Change data capture from slot {} stopped", slotName, e);
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Write the batch to the sink, then confirm its last commit to the slot
+     */
+    private void apply(MicroBatch batch, PGReplicationStream stream) throws SQLException {
+        if (!batch.changesByCollection.isEmpty()) {
+            List<CompletableFuture<Void>> writes = new ArrayList<>();
+            batch.changesByCollection.forEach((collection, changes) ->
+                writes.add(sink.applyChanges(collection, changes)));
+            CompletableFuture.allOf(writes.toArray(new CompletableFuture<?>[0])).join();
+
+            changesApplied.addAndGet(batch.changes);
+            batchesApplied.incrementAndGet();
+        }
+
+        if (batch.commitLsn != null) {
+            // Changes after the last commit belong to an open transaction and are replayed on restart
+            stream.setAppliedLSN(batch.commitLsn);
+            stream.setFlushedLSN(batch.commitLsn);
+            stream.forceUpdateStatus();
+            lastFlushedLsn = batch.commitLsn;
+            transactionsApplied.addAndGet(batch.commits);
+            if (batch.commitTime != null) {
+                lastAppliedCommitTime = batch.commitTime;
+            }
+            lastAppliedAt = System.currentTimeMillis();
+        }
+        batch.reset();
+    }
+
+    private Connection openReplicationConnection() throws SQLException {
+        Properties properties = new Properties();
+        PGProperty.USER.set(properties, username);
+        PGProperty.PASSWORD.set(properties, password);
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+        PGProperty.REPLICATION.set(properties, "database");
+        PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+        return DriverManager.getConnection(url, properties);
+    }
+
+    private List<String> keyColumns(String table) {
+        return keyColumnsByTable.computeIfAbsent(table, name -> tableExtractor.resolvePrimaryKey(name).stream()
+            .map(KeysetTableExtractor.KeyColumn::name)
+            .toList());
+    }
+
+    /**
+     * Replication state and lag: bytes of WAL the slot has not confirmed yet, and how long after
+     * its commit in PostgreSQL the last transaction reached the sink
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("running", running);
+        status.put("slotName", slotName);
+        status.put("addTables", addTables);
+        status.put("changesReceived", changesReceived.get());
+        status.put("changesApplied", changesApplied.get());
+        status.put("transactionsApplied", transactionsApplied.get());
+        status.put("batchesApplied", batchesApplied.get());
+        status.put("lastReceivedLsn", lastReceivedLsn.asString());
+        status.put("lastFlushedLsn", lastFlushedLsn.asString());
+        if (startedAt > 0) {
+            status.put("uptimeSeconds", (System.currentTimeMillis() - startedAt) / 1000);
+        }
+        if (lastAppliedCommitTime != null) {
+            status.put("lastAppliedCommitTime", lastAppliedCommitTime.toString());
+            status.put("applyLagMillis", Math.max(0, Duration.between(lastAppliedCommitTime.toInstant(),
+                Instant.ofEpochMilli(lastAppliedAt)).toMillis()));
+            status.put("secondsSinceLastApply", (System.currentTimeMillis() - lastAppliedAt) / 1000);
+        }
+        if (lastError != null) {
+            status.put("lastError", lastError);
+        }
+
+        try {
+            jdbcTemplate.query(SLOT_LAG_QUERY, rs -> {
+                long lagBytes = rs.getLong(1);
+                status.put("slotLagBytes", rs.wasNull() ? null : lagBytes);
+                status.put("slotActive", rs.getBoolean(2));
+            }, slotName);
+        } catch (Exception e) {
+            status.put("slotLagError", e.getMessage());
+        }
+        return status;
+    }
+
+    /**
+     * Changes read since the last flush, grouped per collection in arrival order
+     */
+    private final class MicroBatch {
+        private final Map<String, List<DocumentChange>> changesByCollection = new LinkedHashMap<>();
+        private int changes;
+        private int commits;
+        private LogSequenceNumber commitLsn;
+        private OffsetDateTime commitTime;
+        private long openedAt;
+
+        void add(String collection, List<DocumentChange> tableChanges) {
+            if (changes == 0 && commits == 0) {
+                openedAt = System.currentTimeMillis();
+            }
+            changesByCollection.computeIfAbsent(collection, name -> new ArrayList<>()).addAll(tableChanges);
+            changes += tableChanges.size();
+        }
+
+        void commit(LogSequenceNumber lsn, OffsetDateTime time) {
+            if (changes == 0 && commits == 0) {
+                openedAt = System.currentTimeMillis();
+            }
+            commitLsn = lsn;
+            commitTime = time;
+            commits++;
+        }
+
+        boolean isFull() {
+            return changes >= batchMaxChanges;
+        }
+
+        boolean isDue() {
+            return (changes > 0 || commits > 0) && System.currentTimeMillis() - openedAt >= batchMaxDelayMillis;
+        }
+
+        void reset() {
+            changesByCollection.clear();
+            changes = 0;
+            commits = 0;
+            commitLsn = null;
+            commitTime = null;
+        }
+    }
+}
@@ -0,0 +1,541 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Dry run of a migration plan: projects duration, peak memory, connections and target storage
+ * for a level of parallelism without migrating anything.
+ *
+ * A short calibration run reads the first migration.estimate.calibration-rows rows of every table
+ * in key order, encodes them with the table's row codec and, unless disabled, writes them to a
+ * scratch collection that is dropped again. That gives per-row costs of the extract, transform and
+ * load stages and the BSON size of a document. Row counts come from the catalog analysis.
+ *
+ * The projection then replays the {@link TableMigrationScheduler}: tables start once their parents
+ * finished, at most workers at a time, and split tables run one stream per chunk. A stream moves at
+ * the pace of its slowest stage, slowed down further while more streams are running than there
+ * are source connections, cores or in-flight sink batches to go round.
+ */
+@Component
+public class MigrationCostEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationCostEstimator.class);
+
+    private static final String CALIBRATION_COLLECTION_PREFIX = "_calibration_";
+
+    /**
+     * A projection within this factor of the fastest one is considered as good, so the smallest such
+     * worker count is recommended
+     */
+    private static final double RECOMMENDATION_TOLERANCE = 1.05;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogAnalyzer catalogAnalyzer;
+    private final TableRangeSplitter rangeSplitter;
+    private final TableMigrationScheduler tableScheduler;
+    private final ParallelRangeExtractor rangeExtractor;
+    private final DocumentSink documentSink;
+    private final MigrationThrottle throttle;
+
+    /** Rows the sample batch starts with; it grows as rows arrive, so a small table never allocates for the cap */
+    private static final int INITIAL_SAMPLE_CAPACITY = 1024;
+
+    @Value("${migration.estimate.calibration-rows:2000}")
+    private int defaultCalibrationRows;
+
+    @Value("${migration.estimate.max-calibration-rows:20000}")
+    private int maxCalibrationRows;
+
+    @Value("${migration.estimate.calibrate-sink:true}")
+    private boolean defaultCalibrateSink;
+
+    @Value("${migration.estimate.storage-compression-ratio:0.5}")
+    private double storageCompressionRatio;
+
+    @Value("${migration.estimate.index-bytes-per-document:40}")
+    private long indexBytesPerDocument;
+
+    @Value("${migration.datasource.hikari.maximum-pool-size:6}")
+    private int sourcePoolSize;
+
+    @Value("${migration.sink.max-in-flight-batches:4}")
+    private int maxInFlightBatches;
+
+    @Value("${migration.sink.batch-max-bytes:8388608}")
+    private long batchMaxBytes;
+
+    @Value("${migration.pipeline.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${migration.batch.min-size:100}")
+    private int minBatchSize;
+
+    @Value("${migration.batch.max-size:20000}")
+    private int maxBatchSize;
+
+    @Value("${migration.batch.target-latency-millis:500}")
+    private long batchTargetLatencyMillis;
+
+    public MigrationCostEstimator(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                                  CatalogAnalyzer catalogAnalyzer, TableRangeSplitter rangeSplitter,
+                                  TableMigrationScheduler tableScheduler, ParallelRangeExtractor rangeExtractor,
+                                  DocumentSink documentSink, MigrationThrottle throttle) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogAnalyzer = catalogAnalyzer;
+        this.rangeSplitter = rangeSplitter;
+        this.tableScheduler = tableScheduler;
+        this.rangeExtractor = rangeExtractor;
+        this.documentSink = documentSink;
+        this.throttle = throttle;
+    }
+
+    /**
+     * Reject a requested sample larger than migration.estimate.max-calibration-rows with an IllegalArgumentException,
+     * since every sampled row of a table is held in memory at once
+     */
+    public void checkCalibrationRows(Integer calibrationRows) {
+        if (calibrationRows != null && calibrationRows > maxCalibrationRows) {
+            throw new IllegalArgumentException("calibrationRows must be at most " + maxCalibrationRows);
+        }
+    }
+
+    /**
+     * Per-row costs of one table measured by the calibration run; costs are 0 when nothing was sampled
+     */
+    record TableCost(String tableName, long rows, int chunks, int sampledRows, double extractNanosPerRow,
+                     double transformNanosPerRow, double loadNanosPerRow, double bytesPerDocument, String error) {
+
+        TableCost withCosts(double extract, double transform, double load, double bytes) {
+            return new TableCost(tableName, rows, chunks, sampledRows, extract, transform, load, bytes, error);
+        }
+    }
+
+    /**
+     * Simulated run at one worker count
+     */
+    record Projection(int workers, long durationNanos, int peakStreams, long peakMemoryBytes,
+                      Map<String, Long> tableNanos, String bottleneck) {}
+
+    /**
+     * Calibrate every table and project the migration at the given number of table workers
+     * (the configured worker threads when null), with the recommended worker count and batch size
+     */
+    public Map<String, Object> estimate(Integer workers, Integer calibrationRows, Boolean calibrateSink) {
+        checkCalibrationRows(calibrationRows);
+        long start = System.nanoTime();
+        CatalogAnalyzer.SourceAnalysis analysis = catalogAnalyzer.analyze();
+        ForeignKeyGraph graph = analysis.foreignKeyGraph();
+        int sampleRows = calibrationRows != null && calibrationRows > 0 ? calibrationRows : defaultCalibrationRows;
+        boolean writeSample = calibrateSink != null ? calibrateSink : defaultCalibrateSink;
+
+        Map<String, TableCost> costs = new TreeMap<>();
+        for (CatalogAnalyzer.TableInfo table : analysis.tables().values()) {
+            costs.put(table.name(), calibrate(table, sampleRows, writeSample));
+        }
+        List<String> warnings = new ArrayList<>();
+        fillUnsampledCosts(analysis, costs, warnings);
+        long calibrationNanos = System.nanoTime() - start;
+
+        int requestedWorkers = workers != null && workers > 0 ? workers : tableScheduler.getWorkerThreads();
+        Projection projection = simulate(graph, costs, requestedWorkers);
+
+        // Beyond one worker per table the scheduler has nothing left to run in parallel
+        int maxWorkers = Math.max(1, Math.min(Math.max(requestedWorkers, 2 * Runtime.getRuntime().availableProcessors()),
+            graph.getTables().size()));
+        List<Map<String, Object>> scaling = new ArrayList<>();
+        List<Projection> candidates = new ArrayList<>();
+        for (int candidate = 1; candidate <= maxWorkers; candidate++) {
+            Projection candidateProjection = simulate(graph, costs, candidate);
+            candidates.add(candidateProjection);
+            scaling.add(Map.of(
+                "workers", candidate,
+                "durationSeconds", seconds(candidateProjection.durationNanos()),
+                "peakStreams", candidateProjection.peakStreams(),
+                "peakMemoryBytes", candidateProjection.peakMemoryBytes()
+            ));
+        }
+        long fastest = candidates.stream().mapToLong(Projection::durationNanos).min().orElse(0);
+        Projection recommended = candidates.stream()
+            .filter(candidate -> candidate.durationNanos() <= fastest * RECOMMENDATION_TOLERANCE)
+            .findFirst()
+            .orElse(projection);
+
+        long documents = costs.values().stream().mapToLong(TableCost::rows).sum();
+        long dataBytes = Math.round(costs.values().stream().mapToDouble(cost -> cost.rows() * cost.bytesPerDocument()).sum());
+        if (projection.peakStreams() > sourceSlots()) {
+            warnings.add("Up to " + projection.peakStreams() + " concurrent streams but only " + sourceSlots() +
+                " may read from the source at once; the others wait for a slot");
+        }
+        if (!writeSample) {
+            warnings.add("Sink calibration disabled: load costs are not measured and the projection may be optimistic");
+        }
+
+        Map<String, Object> projected = new LinkedHashMap<>();
+        projected.put("workers", projection.workers());
+        projected.put("chunkWorkers", rangeExtractor.getWorkerThreads());
+        projected.put("durationSeconds", seconds(projection.durationNanos()));
+        projected.put("bottleneck", projection.bottleneck());
+        projected.put("peakStreams", projection.peakStreams());
+        projected.put("peakMemoryBytes", projection.peakMemoryBytes());
+        projected.put("sourceConnections", Math.min(projection.peakStreams(), sourceSlots()));
+        projected.put("sourcePoolSize", sourcePoolSize);
+        projected.put("throttle", throttle.toMap());
+        projected.put("targetConnections", Math.min(projection.peakStreams(), maxInFlightBatches));
+        projected.put("documents", documents);
+        projected.put("targetDataBytes", dataBytes);
+        projected.put("targetStorageBytes", Math.round(dataBytes * storageCompressionRatio));
+        projected.put("targetIndexBytes", documents * indexBytesPerDocument);
+
+        Map<String, Object> recommendation = new LinkedHashMap<>();
+        recommendation.put("workers", recommended.workers());
+        recommendation.put("batchSize", recommendedBatchSize(costs.values()));
+        recommendation.put("durationSeconds", seconds(recommended.durationNanos()));
+        recommendation.put("reason", "Fewest workers projected within " +
+            Math.round((RECOMMENDATION_TOLERANCE - 1) * 100) + "% of the fastest run; batch size lands a page in about " +
+            batchTargetLatencyMillis + " ms");
+
+        Map<String, Object> tables = new LinkedHashMap<>();
+        costs.forEach((name, cost) -> tables.put(name, toMap(cost, projection.tableNanos().get(name))));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", "success");
+        result.put("calibration", Map.of(
+            "rowsPerTable", sampleRows,
+            "sink", documentSink.getName(),
+            "sinkCalibrated", writeSample,
+            "durationMillis", TimeUnit.NANOSECONDS.toMillis(calibrationNanos)
+        ));
+        result.put("projection", projected);
+        result.put("recommendation", recommendation);
+        result.put("scaling", scaling);
+        result.put("warnings", warnings);
+        result.put("tables", tables);
+        logger.info("Estimated migration of {} tables: {} s with {} workers, {} workers recommended",
+            costs.size(), seconds(projection.durationNanos()), projection.workers(), recommended.workers());
+        return result;
+    }
+
+    /**
+     * Time the stages of the pipeline on the first rows of a table
+     */
+    private TableCost calibrate(CatalogAnalyzer.TableInfo table, int sampleRows, boolean writeSample) {
+        List<KeysetTableExtractor.KeyColumn> keyColumns = keyColumnsOf(table);
+        int chunks = rangeSplitter.isSplittable(keyColumns)
+            ? Math.min(rangeSplitter.chunkCountFor(table.rowCount()), rangeExtractor.getWorkerThreads())
+            : 1;
+        List<String> keyColumnNames = keyColumns.stream().map(KeysetTableExtractor.KeyColumn::name).toList();
+        String orderBy = keyColumnNames.isEmpty() ? "" : " ORDER BY " + keyColumnNames.stream()
+            .map(KeysetTableExtractor::quoteIdentifier)
+            .collect(Collectors.joining(", "));
+        String sql = "SELECT * FROM " + KeysetTableExtractor.quoteIdentifier(table.name()) + orderBy + " LIMIT ?";
+
+        try {
+            RowCodec[] codec = new RowCodec[1];
+            ColumnarRowBatch[] batch = new ColumnarRowBatch[1];
+            long extractStart = System.nanoTime();
+            jdbcTemplate.query(sql, rs -> {
+                if (codec[0] == null) {
+                    codec[0] = RowCodec.compile(rs.getMetaData(), keyColumnNames);
+                    batch[0] = codec[0].newBatch(Math.min(sampleRows, INITIAL_SAMPLE_CAPACITY));
+                }
+                codec[0].read(rs, batch[0]);
+            }, sampleRows);
+            long extractNanos = System.nanoTime() - extractStart;
+            int sampled = batch[0] != null ? batch[0].size() : 0;
+            if (sampled == 0) {
+                return new TableCost(table.name(), table.rowCount(), chunks, 0, 0, 0, 0, 0, null);
+            }
+
+            BasicOutputBuffer buffer = new BasicOutputBuffer(1 << 20);
+            List<RawBsonDocument> documents = new ArrayList<>(sampled);
+            long transformStart = System.nanoTime();
+            for (int row = 0; row < sampled; row++) {
+                documents.add(codec[0].encode(batch[0], row, buffer));
+            }
+            long transformNanos = System.nanoTime() - transformStart;
+
+            long loadNanos = writeSample ? timeSampleWrite(table.name(), documents) : 0;
+            return new TableCost(table.name(), table.rowCount(), chunks, sampled, (double) extractNanos / sampled,
+                (double) transformNanos / sampled, (double) loadNanos / sampled, (double) buffer.getPosition() / sampled,
+                null);
+        } catch (RuntimeException e) {
+            logger.warn("Calibration of {} failed: {}", table.name(), e.getMessage());
+            return new TableCost(table.name(), table.rowCount(), chunks, 0, 0, 0, 0, 0, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the sample in sink-sized batches to a scratch collection, which is dropped afterwards
+     */
+    private long timeSampleWrite(String tableName, List<RawBsonDocument> documents) {
+        String collection = CALIBRATION_COLLECTION_PREFIX + tableName;
+        documentSink.dropCollection(collection);
+        try {
+            long start = System.nanoTime();
+            int batchSize = Math.max(1, (int) Math.min(documents.size(),
+                batchMaxBytes / Math.max(1, documents.get(0).getByteBuffer().remaining())));
+            for (int from = 0; from < documents.size(); from += batchSize) {
+                documentSink.writeBatch(collection, documents.subList(from, Math.min(documents.size(), from + batchSize)),
+                    DocumentSink.WriteMode.INSERT).join();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            documentSink.dropCollection(collection);
+        }
+    }
+
+    private List<KeysetTableExtractor.KeyColumn> keyColumnsOf(CatalogAnalyzer.TableInfo table) {
+        Map<String, String> types = table.columns().stream()
+            .collect(Collectors.toMap(CatalogAnalyzer.ColumnInfo::name, CatalogAnalyzer.ColumnInfo::dataType));
+        return table.primaryKey().stream()
+            .map(column -> new KeysetTableExtractor.KeyColumn(column, types.get(column)))
+            .toList();
+    }
+
+    /**
+     * Tables that returned no sample (empty at calibration time, or failed) but are expected to hold rows
+     * get the row-weighted average costs of the sampled tables, with their document size from the catalog
+     */
+    private void fillUnsampledCosts(CatalogAnalyzer.SourceAnalysis analysis, Map<String, TableCost> costs,
+                                    List<String> warnings) {
+        List<TableCost> sampled = costs.values().stream().filter(cost -> cost.sampledRows() > 0).toList();
+        double sampledRows = sampled.stream().mapToDouble(TableCost::sampledRows).sum();
+        if (sampledRows == 0) {
+            if (costs.values().stream().anyMatch(cost -> cost.rows() > 0)) {
+                warnings.add("No table could be sampled; durations cannot be projected");
+            }
+            return;
+        }
+        double extract = sampled.stream().mapToDouble(cost -> cost.extractNanosPerRow() * cost.sampledRows()).sum() / sampledRows;
+        double transform = sampled.stream().mapToDouble(cost -> cost.transformNanosPerRow() * cost.sampledRows()).sum() / sampledRows;
+        double load = sampled.stream().mapToDouble(cost -> cost.loadNanosPerRow() * cost.sampledRows()).sum() / sampledRows;
+
+        costs.replaceAll((name, cost) -> {
+            if (cost.sampledRows() > 0 || cost.rows() == 0) {
+                return cost;
+            }
+            int catalogWidth = analysis.tables().get(name).columns().stream()
+                .mapToInt(column -> column.averageWidth() != null ? column.averageWidth() : 0)
+                .sum();
+            warnings.add("Table " + name + " was not sampled" + (cost.error() != null ? " (" + cost.error() + ")" : "") +
+                "; using average costs");
+            return cost.withCosts(extract, transform, load, Math.max(1, catalogWidth));
+        });
+    }
+
+    /**
+     * Replay the scheduler with the given number of workers, advancing from one table completion to the next.
+     * Like the scheduler, a foreign-key cycle is broken by releasing a blocked table once nothing else can run.
+     */
+    Projection simulate(ForeignKeyGraph graph, Map<String, TableCost> costs, int workers) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Map<String, Integer> unfinishedParents = new HashMap<>();
+        PriorityQueue<String> ready = new PriorityQueue<>();
+        for (String table : graph.getTables()) {
+            int parents = graph.getParents(table).size();
+            unfinishedParents.put(table, parents);
+            if (parents == 0) {
+                ready.add(table);
+            }
+        }
+
+        Map<String, Double> remainingRows = new TreeMap<>();
+        Map<String, Long> tableNanos = new TreeMap<>();
+        Map<String, Long> startedAt = new HashMap<>();
+        Map<String, Long> bottleneckNanos = new HashMap<>();
+        long now = 0;
+        int peakStreams = 0;
+        long peakMemory = 0;
+
+        while (!unfinishedParents.isEmpty() || !remainingRows.isEmpty()) {
+            if (ready.isEmpty() && remainingRows.isEmpty()) {
+                String released = ForeignKeyGraph.breakCycle(unfinishedParents);
+                unfinishedParents.put(released, 0);
+                ready.add(released);
+            }
+            while (!ready.isEmpty() && remainingRows.size() < workers) {
+                String table = ready.poll();
+                unfinishedParents.remove(table);
+                TableCost cost = costs.get(table);
+                remainingRows.put(table, cost != null ? (double) cost.rows() : 0);
+                startedAt.put(table, now);
+            }
+
+            int streams = remainingRows.keySet().stream().mapToInt(table -> streamsOf(costs.get(table))).sum();
+            long memory = remainingRows.keySet().stream()
+                .mapToLong(table -> streamsOf(costs.get(table)) * streamMemory(costs.get(table)))
+                .sum();
+            peakStreams = Math.max(peakStreams, streams);
+            peakMemory = Math.max(peakMemory, memory);
+
+            // Streams beyond what a shared resource can serve at once share it, stretching that stage
+            double sourceContention = Math.max(1, (double) streams / sourceSlots());
+            double cpuContention = Math.max(1, (double) streams / cores);
+            double sinkContention = Math.max(1, (double) streams / maxInFlightBatches);
+            // A rate cap is shared by all streams, so each one gets its share of it at most
+            double maxRowsPerSecond = throttle.getMaxRowsPerSecond();
+            double ratePerRowNanos = maxRowsPerSecond > 0 ? streams * TimeUnit.SECONDS.toNanos(1) / maxRowsPerSecond : 0;
+
+            Map<String, Double> nanosPerRow = new HashMap<>();
+            String firstToFinish = null;
+            double stepNanos = Double.MAX_VALUE;
+            for (Map.Entry<String, Double> running : remainingRows.entrySet()) {
+                TableCost cost = costs.get(running.getKey());
+                // The stages of a stream overlap, so the slowest one sets its pace
+                double perRow = cost != null
+                    ? Math.max(Math.max(cost.extractNanosPerRow() * sourceContention, ratePerRowNanos),
+                        Math.max(cost.transformNanosPerRow() * cpuContention, cost.loadNanosPerRow() * sinkContention))
+                        / streamsOf(cost)
+                    : 0;
+                nanosPerRow.put(running.getKey(), perRow);
+                if (running.getValue() * perRow < stepNanos) {
+                    stepNanos = running.getValue() * perRow;
+                    firstToFinish = running.getKey();
+                }
+            }
+
+            long step = (long) Math.ceil(stepNanos);
+            for (Map.Entry<String, Double> running : remainingRows.entrySet()) {
+                double perRow = nanosPerRow.get(running.getKey());
+                running.setValue(perRow > 0 ? Math.max(0, running.getValue() - step / perRow) : 0);
+                TableCost cost = costs.get(running.getKey());
+                if (cost != null && cost.rows() > 0) {
+                    String stage = bottleneckOf(cost, sourceContention, cpuContention, sinkContention, ratePerRowNanos);
+                    bottleneckNanos.merge(stage, step, Long::sum);
+                }
+            }
+            now += step;
+
+            // Tables that finish within a row of the first one end in the same step
+            String first = firstToFinish;
+            List<String> finished = remainingRows.entrySet().stream()
+                .filter(running -> running.getKey().equals(first) || running.getValue() < 1)
+                .map(Map.Entry::getKey)
+                .toList();
+            for (String table : finished) {
+                remainingRows.remove(table);
+                tableNanos.put(table, now - startedAt.get(table));
+                for (String child : graph.getChildren(table)) {
+                    Integer parents = unfinishedParents.get(child);
+                    if (parents != null && parents > 0) {
+                        unfinishedParents.put(child, parents - 1);
+                        if (parents - 1 == 0) {
+                            ready.add(child);
+                        }
+                    }
+                }
+            }
+        }
+
+        String bottleneck = bottleneckNanos.entrySet().stream()
+            .filter(entry -> entry.getValue() > 0)
+            .max(Map.Entry.comparingByValue())
+            .map(Map.Entry::getKey)
+            .orElse("none");
+        return new Projection(workers, now, peakStreams, peakMemory, tableNanos, bottleneck);
+    }
+
+    private static String bottleneckOf(TableCost cost, double sourceContention, double cpuContention,
+                                       double sinkContention, double ratePerRowNanos) {
+        double extract = cost.extractNanosPerRow() * sourceContention;
+        double transform = cost.transformNanosPerRow() * cpuContention;
+        double load = cost.loadNanosPerRow() * sinkContention;
+        if (ratePerRowNanos > Math.max(extract, Math.max(transform, load))) {
+            return "throttle";
+        }
+        if (load >= extract && load >= transform) {
+            return "load";
+        }
+        return transform >= extract ? "transform" : "extract";
+    }
+
+    /**
+     * Streams that can read from the source at once: the throttle's limit, within the migration pool
+     */
+    private int sourceSlots() {
+        return Math.max(1, Math.min(throttle.getMaxConcurrentStreams(), sourcePoolSize));
+    }
+
+    private static int streamsOf(TableCost cost) {
+        return cost != null ? Math.max(1, cost.chunks()) : 1;
+    }
+
+    /**
+     * Pages one stream holds at once: one being read, a full queue between each pair of stages and one
+     * being loaded, each page decoded and encoded
+     */
+    private long streamMemory(TableCost cost) {
+        if (cost == null) {
+            return 0;
+        }
+        long pageRows = recommendedBatchSize(cost);
+        return Math.round((2L * queueCapacity + 2) * pageRows * cost.bytesPerDocument() * 2);
+    }
+
+    /**
+     * Page size the adaptive batch sizer settles at for the table: a page loaded in about the target
+     * latency, within the sink byte limit and the configured bounds
+     */
+    private int recommendedBatchSize(TableCost cost) {
+        long byLatency = cost.loadNanosPerRow() > 0
+            ? (long) (TimeUnit.MILLISECONDS.toNanos(batchTargetLatencyMillis) / cost.loadNanosPerRow())
+            : maxBatchSize;
+        long byBytes = cost.bytesPerDocument() > 0 ? (long) (batchMaxBytes / cost.bytesPerDocument()) : maxBatchSize;
+        return (int) Math.max(minBatchSize, Math.min(maxBatchSize, Math.min(byLatency, byBytes)));
+    }
+
+    /**
+     * Row-weighted average of the per-table batch sizes, rounded to a hundred, as a starting size for all tables
+     */
+    private int recommendedBatchSize(Collection<TableCost> costs) {
+        long rows = costs.stream().mapToLong(TableCost::rows).sum();
+        if (rows == 0) {
+            return minBatchSize;
+        }
+        double weighted = costs.stream().mapToDouble(cost -> (double) recommendedBatchSize(cost) * cost.rows()).sum() / rows;
+        return (int) Math.max(minBatchSize, Math.round(weighted / 100) * 100);
+    }
+
+    private Map<String, Object> toMap(TableCost cost, Long projectedNanos) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("rows", cost.rows());
+        view.put("chunks", cost.chunks());
+        view.put("sampledRows", cost.sampledRows());
+        view.put("extractMicrosPerRow", micros(cost.extractNanosPerRow()));
+        view.put("transformMicrosPerRow", micros(cost.transformNanosPerRow()));
+        view.put("loadMicrosPerRow", micros(cost.loadNanosPerRow()));
+        view.put("bytesPerDocument", Math.round(cost.bytesPerDocument()));
+        view.put("recommendedBatchSize", recommendedBatchSize(cost));
+        view.put("projectedSeconds", projectedNanos != null ? seconds(projectedNanos) : 0.0);
+        if (cost.error() != null) {
+            view.put("error", cost.error());
+        }
+        return view;
+    }
+
+    private static double micros(double nanos) {
+        return Math.round(nanos / 10.0) / 100.0;
+    }
+
+    private static double seconds(long nanos) {
+        return Math.round(nanos / 1e7) / 100.0;
+    }
+}
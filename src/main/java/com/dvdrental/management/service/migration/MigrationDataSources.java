@@ -0,0 +1,14 @@
+package com.dvdrental.management.service.migration;
+
+/**
+ * Bean names of the connection pool reserved for the migration engine, separate from the pool
+ * behind the REST API so that a running backup cannot starve API requests of connections
+ */
+public final class MigrationDataSources {
+
+    public static final String DATA_SOURCE = "migrationDataSource";
+    public static final String JDBC_TEMPLATE = "migrationJdbcTemplate";
+
+    private MigrationDataSources() {
+    }
+}
@@ -0,0 +1,111 @@
+package com.dvdrental.management.service.migration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * Micrometer instrumentation of table migrations and the source of the live progress view.
+ *
+ * Every table run gets a {@link PipelineMetrics} that records into the registry
+ * (migration.stage.rows, migration.stage.batch.latency, migration.load.bytes per table and stage),
+ * so the numbers are available through Actuator's /actuator/metrics while the run is going.
+ * Queue depth gauges and sink retry counters are registered here because they outlive a single run:
+ * the gauges always read the latest run of their table.
+ *
+ * Runs are keyed by the collection they load. A table copy loads the collection named after the table;
+ * a document build such as films or customers is started under the name of the collection it builds.
+ */
+@Component
+public class MigrationMetrics {
+
+    private final MeterRegistry registry;
+    private final Map<String, PipelineMetrics> latestRuns = new ConcurrentHashMap<>();
+    private final Map<String, Counter> retryCounters = new ConcurrentHashMap<>();
+
+    public MigrationMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Metrics for a new run of the table, replacing the previous run in the progress view
+     */
+    public PipelineMetrics startTable(String tableName) {
+        PipelineMetrics metrics = new PipelineMetrics(tableName, registry);
+        if (latestRuns.put(tableName, metrics) == null) {
+            registerQueueGauge(tableName, "extract_to_transform", run -> run.extractedQueue().getCurrentDepth());
+            registerQueueGauge(tableName, "transform_to_load", run -> run.encodedQueue().getCurrentDepth());
+        }
+        return metrics;
+    }
+
+    /**
+     * Mark the latest run of the table as completed or failed; a no-op when it never started
+     */
+    public void finishTable(String tableName, boolean succeeded) {
+        PipelineMetrics metrics = latestRuns.get(tableName);
+        if (metrics != null && metrics.getStatus() == PipelineMetrics.Status.RUNNING) {
+            metrics.finish(succeeded);
+        }
+    }
+
+    private void registerQueueGauge(String tableName, String queue, ToIntFunction<PipelineMetrics> depth) {
+        Gauge.builder("migration.queue.depth", () -> depth.applyAsInt(latestRuns.get(tableName)))
+            .description("Batches waiting between two pipeline stages")
+            .tags("table", tableName, "queue", queue)
+            .register(registry);
+    }
+
+    /**
+     * Count a write to the collection that the sink is about to retry, also on the run loading it
+     */
+    public void recordRetry(String collection) {
+        retryCounters.computeIfAbsent(collection, name -> Counter.builder("migration.sink.retries")
+            .description("Sink writes retried after a transient error")
+            .tags("collection", name)
+            .register(registry)).increment();
+        PipelineMetrics metrics = latestRuns.get(collection);
+        if (metrics != null && metrics.getStatus() == PipelineMetrics.Status.RUNNING) {
+            metrics.addRetry();
+        }
+    }
+
+    /**
+     * Per-table throughput, stage latencies and queue depths of the latest run of every table
+     */
+    public Map<String, Object> progress() {
+        Map<String, Object> tables = new LinkedHashMap<>();
+        long running = 0;
+        long rowsLoaded = 0;
+        long bytesLoaded = 0;
+        long rowsPerSecond = 0;
+        long bytesPerSecond = 0;
+        for (PipelineMetrics metrics : latestRuns.values()) {
+            Map<String, Object> view = metrics.toProgressMap();
+            tables.put(metrics.getTableName(), view);
+            rowsLoaded += (Long) view.get("rowsLoaded");
+            bytesLoaded += (Long) view.get("bytesLoaded");
+            if (metrics.getStatus() == PipelineMetrics.Status.RUNNING) {
+                running++;
+                rowsPerSecond += (Long) view.get("rowsPerSecond");
+                bytesPerSecond += (Long) view.get("bytesPerSecond");
+            }
+        }
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("tablesRunning", running);
+        progress.put("tablesTracked", tables.size());
+        progress.put("rowsLoaded", rowsLoaded);
+        progress.put("bytesLoaded", bytesLoaded);
+        progress.put("rowsPerSecond", rowsPerSecond);
+        progress.put("bytesPerSecond", bytesPerSecond);
+        progress.put("tables", tables);
+        return progress;
+    }
+}
@@ -0,0 +1,381 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extract → transform → load pipeline for one worker of a table migration.
+ *
+ * The extract stage is the extractor's own thread: as a {@link RowHandler} the pipeline copies
+ * each row into a {@link ColumnarRowBatch} with the table's compiled {@link RowCodec} and hands
+ * every page to the transform stage through a bounded queue, then goes straight back to fetching.
+ * The transform stage encodes the page's rows into one pooled output buffer, returns the emptied batch
+ * to a small pool for reuse and passes the documents to the load stage through a second bounded queue;
+ * the load stage feeds the {@link DocumentBatcher} and hands the buffer back to the {@link BsonBufferPool}
+ * once the sink has acknowledged the page. Page sizes come from the table's {@link AdaptiveBatchSizer},
+ * which learns from every acknowledgement; each page goes to the sink as a single batch unless it
+ * exceeds the batcher's byte limit. A full queue blocks the stage in front of it, so a slow target throttles
+ * extraction instead of filling the heap.
+ */
+public class MigrationPipeline implements RowHandler {
+
+    private static final long POLL_MILLIS = 100;
+
+    private static final RowBatch END_OF_ROWS = new RowBatch(null, null);
+    private static final EncodedBatch END_OF_DOCUMENTS = new EncodedBatch(Collections.emptyList(), null, null);
+
+    private record RowBatch(ColumnarRowBatch rows, Object[] lastKey) {}
+
+    /**
+     * Documents of one page, all slices of the same buffer
+     */
+    private record EncodedBatch(List<RawBsonDocument> documents, Object[] lastKey, BasicOutputBuffer buffer) {}
+
+    private final String tableName;
+    private final List<String> keyColumnNames;
+    private final RowCodecCache codecCache;
+    private final DocumentBatcher batcher;
+    private final PipelineMetrics metrics;
+    private final CheckpointTracker checkpointTracker;
+    private final BlockingQueue<RowBatch> extracted;
+    private final BlockingQueue<EncodedBatch> encoded;
+    private final BlockingQueue<ColumnarRowBatch> freeBatches;
+    private final BsonBufferPool bufferPool;
+    private final AdaptiveBatchSizer batchSizer;
+
+    private Future<?> transformStage;
+    private Future<?> loadStage;
+    private volatile Throwable failure;
+    private volatile boolean aborted;
+
+    private volatile RowCodec codec;
+    private ColumnarRowBatch rows;
+    private long extractStartedAt;
+    private long extractBlockedNanos;
+    private long pageStartedAt;
+
+    public MigrationPipeline(String tableName, List<String> keyColumnNames, RowCodecCache codecCache,
+                             BsonBufferPool bufferPool, AdaptiveBatchSizer batchSizer, DocumentBatcher batcher,
+                             PipelineMetrics metrics, CheckpointTracker checkpointTracker, int queueCapacity) {
+        this.tableName = tableName;
+        this.keyColumnNames = keyColumnNames;
+        this.codecCache = codecCache;
+        this.bufferPool = bufferPool;
+        this.batchSizer = batchSizer;
+        this.batcher = batcher;
+        this.metrics = metrics;
+        this.checkpointTracker = checkpointTracker;
+        this.extracted = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.encoded = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        // One batch being filled, one being encoded and one per queue slot
+        this.freeBatches = new ArrayBlockingQueue<>(Math.max(1, queueCapacity) + 2);
+    }
+
+    /**
+     * Start the transform and load stages on the given executor
+     */
+    public MigrationPipeline start(ExecutorService stageExecutor) {
+        transformStage = stageExecutor.submit(() -> runStage(this::transformLoop));
+        loadStage = stageExecutor.submit(() -> runStage(this::loadLoop));
+        return this;
+    }
+
+    public DocumentBatcher getBatcher() {
+        return batcher;
+    }
+
+    public CheckpointTracker getCheckpointTracker() {
+        return checkpointTracker;
+    }
+
+    @Override
+    public void onRow(ResultSet rs) throws SQLException {
+        if (codec == null) {
+            prepare(codecCache.forResultSet(tableName, rs.getMetaData(), keyColumnNames));
+        }
+        codec.read(rs, rows);
+    }
+
+    @Override
+    public boolean acceptsDecodedRows() {
+        return true;
+    }
+
+    @Override
+    public void onColumns(List<String> columnNames, List<RowCodec.ColumnKind> kinds) {
+        if (codec == null) {
+            prepare(codecCache.forDecodedColumns(tableName, columnNames, kinds, keyColumnNames));
+        }
+    }
+
+    @Override
+    public ColumnarRowBatch decodedRows() {
+        return rows;
+    }
+
+    private void prepare(RowCodec rowCodec) {
+        codec = rowCodec;
+        while (freeBatches.remainingCapacity() > 0) {
+            freeBatches.add(rowCodec.newBatch(64));
+        }
+        rows = freeBatches.poll();
+        extractStartedAt = System.nanoTime();
+        pageStartedAt = extractStartedAt;
+    }
+
+    @Override
+    public int nextPageSize(int pageSize) {
+        return batchSizer.currentSize();
+    }
+
+    @Override
+    public void onPage(int rowsInPage, Object[] lastKey) {
+        handOff(lastKey);
+    }
+
+    @Override
+    public void onComplete() {
+        handOff(null);
+        put(extracted, END_OF_ROWS, metrics.stage(PipelineMetrics.Stage.EXTRACT), metrics.extractedQueue());
+        if (extractStartedAt > 0) {
+            long elapsed = System.nanoTime() - extractStartedAt;
+            metrics.stage(PipelineMetrics.Stage.EXTRACT).addBusy(Math.max(0, elapsed - extractBlockedNanos));
+        }
+        try {
+            awaitStages();
+        } catch (RuntimeException e) {
+            checkpointTracker.abort();
+            throw e;
+        }
+        checkpointTracker.complete();
+    }
+
+    @Override
+    public void onAbort(Throwable cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        aborted = true;
+        try {
+            awaitStages();
+        } catch (RuntimeException ignored) {
+            // The extraction failure is what gets reported
+        }
+        checkpointTracker.abort();
+    }
+
+    private void handOff(Object[] lastKey) {
+        if (rows == null || rows.size() == 0) {
+            return;
+        }
+        PipelineMetrics.StageStats stats = metrics.stage(PipelineMetrics.Stage.EXTRACT);
+        RowBatch batch = new RowBatch(rows, lastKey == null ? null : lastKey.clone());
+        stats.addBatch(rows.size());
+        stats.recordLatency(System.nanoTime() - pageStartedAt);
+        extractBlockedNanos += put(extracted, batch, stats, metrics.extractedQueue());
+
+        // Waiting for a recycled batch is backpressure from the transform stage, like a full queue
+        long start = System.nanoTime();
+        rows = borrowBatch();
+        long blocked = System.nanoTime() - start;
+        stats.addBlockedOnOutput(blocked);
+        extractBlockedNanos += blocked;
+        pageStartedAt = System.nanoTime();
+    }
+
+    private ColumnarRowBatch borrowBatch() {
+        try {
+            while (true) {
+                ColumnarRowBatch batch = freeBatches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    return batch;
+                }
+                checkNotAborted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migration pipeline interrupted", e);
+        }
+    }
+
+    private void transformLoop() throws InterruptedException {
+        PipelineMetrics.StageStats stats = metrics.stage(PipelineMetrics.Stage.TRANSFORM);
+        while (true) {
+            RowBatch batch = take(extracted, stats);
+            if (batch == null) {
+                return;
+            }
+            if (batch == END_OF_ROWS) {
+                put(encoded, END_OF_DOCUMENTS, stats, metrics.encodedQueue());
+                return;
+            }
+
+            long start = System.nanoTime();
+            ColumnarRowBatch rowBatch = batch.rows();
+            BasicOutputBuffer buffer = bufferPool.acquire();
+            try {
+                List<RawBsonDocument> documents = new ArrayList<>(rowBatch.size());
+                for (int row = 0; row < rowBatch.size(); row++) {
+                    documents.add(codec.encode(rowBatch, row, buffer));
+                }
+                rowBatch.clear();
+                freeBatches.add(rowBatch);
+                long elapsed = System.nanoTime() - start;
+                stats.addBusy(elapsed);
+                stats.recordLatency(elapsed);
+                stats.addBatch(documents.size());
+
+                put(encoded, new EncodedBatch(documents, batch.lastKey(), buffer), stats, metrics.encodedQueue());
+            } catch (RuntimeException e) {
+                // The page never reached the queue, so the load stage will not release its buffer
+                bufferPool.release(buffer);
+                throw e;
+            }
+        }
+    }
+
+    private void loadLoop() throws InterruptedException {
+        PipelineMetrics.StageStats stats = metrics.stage(PipelineMetrics.Stage.LOAD);
+        while (true) {
+            EncodedBatch batch = take(encoded, stats);
+            if (batch == null) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            if (batch == END_OF_DOCUMENTS) {
+                batcher.finish();
+                stats.addBusy(System.nanoTime() - start);
+                return;
+            }
+            int pageRows = batch.documents().size();
+            batcher.setMaxDocuments(pageRows);
+            for (RawBsonDocument document : batch.documents()) {
+                batcher.add(document);
+            }
+            // Pages are flushed whole so that a page's last key can be checkpointed once it is acknowledged
+            CompletableFuture<Void> acknowledged = batcher.flushPage();
+            long pageBytes = batch.buffer().getPosition();
+            // Completes after every write of the page, failed or not, so the driver is done with the bytes
+            acknowledged.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    long latency = System.nanoTime() - start;
+                    stats.recordLatency(latency);
+                    metrics.addBytesLoaded(pageBytes);
+                    batchSizer.onAcknowledged(pageRows, pageBytes, latency);
+                } else {
+                    batchSizer.onFailure();
+                }
+                bufferPool.release(batch.buffer());
+            });
+            checkpointTracker.onPageLoaded(acknowledged, batch.lastKey(), pageRows);
+            stats.addBusy(System.nanoTime() - start);
+            stats.addBatch(pageRows);
+        }
+    }
+
+    private void runStage(StageLoop loop) {
+        try {
+            loop.run();
+        } catch (Throwable t) {
+            if (failure == null) {
+                failure = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            }
+            aborted = true;
+        }
+    }
+
+    /**
+     * Blocking put that gives up when another stage has failed. Returns the nanoseconds spent blocked.
+     */
+    private <T> long put(BlockingQueue<T> queue, T item, PipelineMetrics.StageStats stats,
+                         PipelineMetrics.QueueStats queueStats) {
+        long start = System.nanoTime();
+        try {
+            while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkNotAborted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migration pipeline interrupted", e);
+        }
+        queueStats.sample(queue.size());
+        long blocked = System.nanoTime() - start;
+        stats.addBlockedOnOutput(blocked);
+        return blocked;
+    }
+
+    /**
+     * Blocking take that returns null once the pipeline has been aborted
+     */
+    private <T> T take(BlockingQueue<T> queue, PipelineMetrics.StageStats stats) throws InterruptedException {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                T item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item != null) {
+                    return item;
+                }
+                if (aborted) {
+                    return null;
+                }
+            }
+        } finally {
+            stats.addBlockedOnInput(System.nanoTime() - start);
+        }
+    }
+
+    private void checkNotAborted() {
+        if (aborted) {
+            Throwable cause = failure;
+            throw new IllegalStateException("Migration pipeline aborted: " +
+                (cause != null ? cause.getMessage() : "unknown error"), cause);
+        }
+    }
+
+    private void awaitStages() {
+        try {
+            transformStage.get();
+            loadStage.get();
+        } catch (InterruptedException e) {
+            aborted = true;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Migration pipeline interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Migration pipeline stage failed", e.getCause());
+        } finally {
+            releaseUnloadedBuffers();
+        }
+        checkNotAborted();
+    }
+
+    /**
+     * Return the buffers of encoded pages left in the queue when the load stage stopped early
+     */
+    private void releaseUnloadedBuffers() {
+        for (EncodedBatch batch = encoded.poll(); batch != null; batch = encoded.poll()) {
+            if (batch.buffer() != null) {
+                bufferPool.release(batch.buffer());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StageLoop {
+        void run() throws Exception;
+    }
+}
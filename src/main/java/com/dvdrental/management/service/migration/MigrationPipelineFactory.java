@@ -0,0 +1,120 @@
+package com.dvdrental.management.service.migration;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates {@link MigrationPipeline}s wired to the configured {@link DocumentSink}, batch limits
+ * and queue capacity. Transform and load stages of all pipelines run on one shared stage pool,
+ * and all pipelines share the compiled row codecs of their tables and one pool of encode buffers.
+ */
+@Component
+public class MigrationPipelineFactory {
+
+    private final DocumentSink documentSink;
+    private final RowCodecCache codecCache = new RowCodecCache();
+    private final BsonBufferPool bufferPool;
+    private final ExecutorService stageExecutor =
+        Executors.newCachedThreadPool(TableMigrationScheduler.namedThreadFactory("migration-stage-"));
+
+    @Value("${migration.sink.batch-max-documents:1000}")
+    private int batchMaxDocuments;
+
+    @Value("${migration.sink.batch-max-bytes:8388608}")
+    private long batchMaxBytes;
+
+    @Value("${migration.pipeline.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${migration.checkpoint.save-interval-millis:1000}")
+    private long checkpointSaveIntervalMillis;
+
+    @Value("${migration.batch.adaptive:true}")
+    private boolean adaptiveBatching;
+
+    @Value("${migration.batch.initial-size:1000}")
+    private int initialBatchSize;
+
+    @Value("${migration.batch.min-size:100}")
+    private int minBatchSize;
+
+    @Value("${migration.batch.max-size:20000}")
+    private int maxBatchSize;
+
+    @Value("${migration.batch.increase-step:500}")
+    private int batchIncreaseStep;
+
+    @Value("${migration.batch.target-latency-millis:500}")
+    private long batchTargetLatencyMillis;
+
+    private final CheckpointStore checkpointStore;
+
+    public MigrationPipelineFactory(DocumentSink documentSink, CheckpointStore checkpointStore,
+                                    @Value("${migration.pipeline.max-pooled-buffers:32}") int maxPooledBuffers,
+                                    @Value("${migration.pipeline.buffer-initial-bytes:1048576}") int bufferInitialBytes,
+                                    @Value("${migration.pipeline.buffer-max-retained-bytes:16777216}") int bufferMaxRetainedBytes) {
+        this.documentSink = documentSink;
+        this.checkpointStore = checkpointStore;
+        this.bufferPool = new BsonBufferPool(maxPooledBuffers, bufferInitialBytes, bufferMaxRetainedBytes);
+    }
+
+    public DocumentSink getSink() {
+        return documentSink;
+    }
+
+    /**
+     * Page size to start a table with: the configured initial size, but no larger than the table
+     */
+    public int initialBatchSize(long estimatedRows) {
+        return (int) Math.max(1, Math.min(initialBatchSize, Math.max(estimatedRows, minBatchSize)));
+    }
+
+    /**
+     * Page size controller for one table run, shared by all of its pipelines. Pages never hold
+     * more bytes than one sink batch may, so a page is written with a single request.
+     * With adaptive batching disabled the size stays at initialSize.
+     */
+    public AdaptiveBatchSizer newBatchSizer(int initialSize) {
+        if (!adaptiveBatching) {
+            return new AdaptiveBatchSizer(initialSize, initialSize, initialSize, 1, batchTargetLatencyMillis, Long.MAX_VALUE);
+        }
+        return new AdaptiveBatchSizer(initialSize, minBatchSize, maxBatchSize, batchIncreaseStep,
+            batchTargetLatencyMillis, batchMaxBytes);
+    }
+
+    /**
+     * New batcher writing to the given collection with the configured batch limits,
+     * for transformers that build documents themselves instead of copying rows
+     */
+    public DocumentBatcher newBatcher(String collection, DocumentSink.WriteMode writeMode) {
+        return new DocumentBatcher(documentSink, collection, batchMaxDocuments, batchMaxBytes, writeMode);
+    }
+
+    /**
+     * New running pipeline for one worker loading rows of a table into the collection of the same name.
+     * All pipelines of a table should share one metrics instance and one batch sizer; the checkpoint is the
+     * position the pipeline starts from and is advanced as pages are acknowledged, or null
+     * when the run is not resumable.
+     */
+    public MigrationPipeline newPipeline(String tableName, List<KeysetTableExtractor.KeyColumn> keyColumns,
+                                         PipelineMetrics metrics, AdaptiveBatchSizer batchSizer,
+                                         Checkpoint checkpoint, DocumentSink.WriteMode writeMode) {
+        List<String> keyColumnNames = keyColumns.stream().map(KeysetTableExtractor.KeyColumn::name).toList();
+        DocumentBatcher batcher = newBatcher(tableName, writeMode);
+        CheckpointTracker tracker = checkpoint != null
+            ? new CheckpointTracker(checkpointStore, checkpoint, checkpointSaveIntervalMillis)
+            : CheckpointTracker.untracked(tableName);
+        return new MigrationPipeline(tableName, keyColumnNames, codecCache, bufferPool, batchSizer, batcher,
+            metrics, tracker, queueCapacity).start(stageExecutor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stageExecutor.shutdownNow();
+    }
+}
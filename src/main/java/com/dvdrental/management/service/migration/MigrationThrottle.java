@@ -0,0 +1,246 @@
+package com.dvdrental.management.service.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global governor for the load migrations put on the source database, so that a backup can run
+ * next to API traffic.
+ *
+ * At most maxConcurrentStreams extractions (a whole table or one chunk of a split table, or one
+ * cursor of a document build) read from PostgreSQL at once; further ones wait for a slot before
+ * taking a connection from the migration pool. The limit must leave RESERVED_CONNECTIONS of the pool
+ * free for the run's exported snapshot and for checkpoint writes and range splits, so it is between
+ * 1 and the pool size minus those. Optionally all streams together are held to maxRowsPerSecond:
+ * every page is charged against a token bucket refilled at that rate, and the stream that overdraws
+ * it sleeps before fetching its next page. Both limits can be changed while a migration is running;
+ * a rate of 0 means unlimited.
+ */
+@Component
+public class MigrationThrottle {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationThrottle.class);
+
+    /** Migration connections not handed out as streams: the exported snapshot and checkpoint writes */
+    static final int RESERVED_CONNECTIONS = 2;
+
+    private final Object rateLock = new Object();
+    private final int maxStreamsForPool;
+
+    private int maxConcurrentStreams;
+    private int activeStreams;
+    private int waitingStreams;
+
+    private double maxRowsPerSecond;
+    private double availableRows;
+    private long lastRefillNanos = System.nanoTime();
+
+    private final AtomicLong streamWaitNanos = new AtomicLong();
+    private final AtomicLong rateWaitNanos = new AtomicLong();
+    private final AtomicLong rowsAdmitted = new AtomicLong();
+
+    public MigrationThrottle(@Value("${migration.throttle.max-concurrent-streams:4}") int maxConcurrentStreams,
+                             @Value("${migration.throttle.max-rows-per-second:0}") double maxRowsPerSecond,
+                             @Value("${migration.datasource.hikari.maximum-pool-size:6}") int poolSize) {
+        this.maxStreamsForPool = Math.max(1, poolSize - RESERVED_CONNECTIONS);
+        int streams = Math.max(1, Math.min(maxStreamsForPool, maxConcurrentStreams));
+        if (streams != maxConcurrentStreams) {
+            logger.warn("migration.throttle.max-concurrent-streams={} does not fit a migration pool of {} connections, "
+                + "using {}", maxConcurrentStreams, poolSize, streams);
+        }
+        configure(streams, maxRowsPerSecond);
+    }
+
+    /**
+     * Change the limits; null leaves a limit as it is.
+     * Throws IllegalArgumentException when concurrentStreams is outside 1 to {@link #getMaxStreamsForPool()}.
+     */
+    public void configure(Integer concurrentStreams, Double rowsPerSecond) {
+        if (concurrentStreams != null && (concurrentStreams < 1 || concurrentStreams > maxStreamsForPool)) {
+            throw new IllegalArgumentException("maxConcurrentStreams must be between 1 and " + maxStreamsForPool
+                + ", the migration pool keeps " + RESERVED_CONNECTIONS
+                + " connections for the run's snapshot and checkpoint writes");
+        }
+        if (concurrentStreams != null) {
+            synchronized (this) {
+                maxConcurrentStreams = concurrentStreams;
+                notifyAll();
+            }
+        }
+        if (rowsPerSecond != null) {
+            synchronized (rateLock) {
+                maxRowsPerSecond = Math.max(0, rowsPerSecond);
+                availableRows = Math.min(availableRows, maxRowsPerSecond);
+                lastRefillNanos = System.nanoTime();
+            }
+        }
+        logger.info("Migration throttle: {} concurrent streams, {} rows/s",
+            getMaxConcurrentStreams(), describeLimit(getMaxRowsPerSecond()));
+    }
+
+    public synchronized int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Highest stream limit the migration pool allows
+     */
+    public int getMaxStreamsForPool() {
+        return maxStreamsForPool;
+    }
+
+    public double getMaxRowsPerSecond() {
+        synchronized (rateLock) {
+            return maxRowsPerSecond;
+        }
+    }
+
+    /**
+     * Wait for a stream slot. Every call must be paired with {@link #releaseStream()}.
+     */
+    public void acquireStream() {
+        acquireStreams(1);
+    }
+
+    public void releaseStream() {
+        releaseStreams(1);
+    }
+
+    /**
+     * Wait for several stream slots at once, for work that reads on that many connections together.
+     * Taking them together means two such callers cannot each hold part of the slots and wait for
+     * the rest. More slots than the limit are granted once no other stream is active.
+     * Every call must be paired with {@link #releaseStreams(int)} for the same count.
+     */
+    public void acquireStreams(int count) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            waitingStreams += count;
+            try {
+                while (activeStreams > 0 && activeStreams + count > maxConcurrentStreams) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a migration stream slot", e);
+            } finally {
+                waitingStreams -= count;
+            }
+            activeStreams += count;
+        }
+        streamWaitNanos.addAndGet(System.nanoTime() - start);
+    }
+
+    public synchronized void releaseStreams(int count) {
+        activeStreams -= count;
+        notifyAll();
+    }
+
+    /**
+     * Charge rows read from the source against the rate limit, sleeping while the bucket is overdrawn
+     */
+    public void admitRows(int rows) {
+        rowsAdmitted.addAndGet(rows);
+        long waitNanos;
+        synchronized (rateLock) {
+            if (maxRowsPerSecond <= 0) {
+                return;
+            }
+            long now = System.nanoTime();
+            // At most one second of unused rate carries over, so an idle period cannot be followed by a burst
+            availableRows = Math.min(maxRowsPerSecond,
+                availableRows + (now - lastRefillNanos) * maxRowsPerSecond / TimeUnit.SECONDS.toNanos(1));
+            lastRefillNanos = now;
+            availableRows -= rows;
+            waitNanos = availableRows < 0
+                ? (long) (-availableRows / maxRowsPerSecond * TimeUnit.SECONDS.toNanos(1))
+                : 0;
+        }
+        if (waitNanos > 0) {
+            rateWaitNanos.addAndGet(waitNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while throttled", e);
+            }
+        }
+    }
+
+    /**
+     * Handler that charges every page to the rate limit before the extractor fetches the next one
+     */
+    public RowHandler throttled(RowHandler handler) {
+        return new RowHandler() {
+            @Override
+            public void onRow(ResultSet rs) throws SQLException {
+                handler.onRow(rs);
+            }
+
+            @Override
+            public boolean acceptsDecodedRows() {
+                return handler.acceptsDecodedRows();
+            }
+
+            @Override
+            public void onColumns(List<String> columnNames, List<RowCodec.ColumnKind> kinds) {
+                handler.onColumns(columnNames, kinds);
+            }
+
+            @Override
+            public ColumnarRowBatch decodedRows() {
+                return handler.decodedRows();
+            }
+
+            @Override
+            public int nextPageSize(int pageSize) {
+                return handler.nextPageSize(pageSize);
+            }
+
+            @Override
+            public void onPage(int rowsInPage, Object[] lastKey) {
+                handler.onPage(rowsInPage, lastKey);
+                admitRows(rowsInPage);
+            }
+
+            @Override
+            public void onComplete() {
+                handler.onComplete();
+            }
+
+            @Override
+            public void onAbort(Throwable cause) {
+                handler.onAbort(cause);
+            }
+        };
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> view = new LinkedHashMap<>();
+        synchronized (this) {
+            view.put("maxConcurrentStreams", maxConcurrentStreams);
+            view.put("maxStreamsForPool", maxStreamsForPool);
+            view.put("activeStreams", activeStreams);
+            view.put("waitingStreams", waitingStreams);
+        }
+        view.put("maxRowsPerSecond", getMaxRowsPerSecond());
+        view.put("rowsAdmitted", rowsAdmitted.get());
+        view.put("streamWaitMillis", TimeUnit.NANOSECONDS.toMillis(streamWaitNanos.get()));
+        view.put("rateWaitMillis", TimeUnit.NANOSECONDS.toMillis(rateWaitNanos.get()));
+        return view;
+    }
+
+    private static String describeLimit(Number limit) {
+        return limit.doubleValue() > 0 ? limit.toString() : "unlimited";
+    }
+}
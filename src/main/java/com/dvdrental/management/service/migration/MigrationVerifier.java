@@ -0,0 +1,315 @@
+package com.dvdrental.management.service.migration;
+
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies that migrated collections match their source tables without diffing row by row.
+ *
+ * Each table is split into primary-key ranges of about migration.verify.chunk-rows rows, and every
+ * range gets an order-independent checksum on both sides (see {@link RowHasher}): PostgreSQL
+ * aggregates md5 row hashes in a single query, the target is streamed back through the sink.
+ * Chunks of all tables are compared in parallel. Only a chunk whose checksums differ is split
+ * further, down to ranges of migration.verify.drill-down-rows rows, where the individual keys that are
+ * missing, unexpected or different are listed. Tables without a single integer key are compared
+ * as one chunk and reported without drill-down.
+ */
+@Component
+public class MigrationVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(MigrationVerifier.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CatalogAnalyzer catalogAnalyzer;
+    private final KeysetTableExtractor tableExtractor;
+    private final TableRangeSplitter rangeSplitter;
+    private final DocumentSink documentSink;
+    private final ExecutorService verifyExecutor;
+
+    @Value("${migration.verify.chunk-rows:50000}")
+    private long chunkRows;
+
+    @Value("${migration.verify.drill-down-rows:1000}")
+    private long drillDownRows;
+
+    @Value("${migration.verify.max-reported-keys:100}")
+    private int maxReportedKeys;
+
+    public MigrationVerifier(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate,
+                             CatalogAnalyzer catalogAnalyzer, KeysetTableExtractor tableExtractor,
+                             TableRangeSplitter rangeSplitter, DocumentSink documentSink,
+                             @Value("${migration.verify.threads:4}") int threads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.catalogAnalyzer = catalogAnalyzer;
+        this.tableExtractor = tableExtractor;
+        this.rangeSplitter = rangeSplitter;
+        this.documentSink = documentSink;
+        this.verifyExecutor = Executors.newFixedThreadPool(Math.max(1, threads),
+            TableMigrationScheduler.namedThreadFactory("migration-verify-"));
+    }
+
+    /**
+     * What is needed to hash one table on both sides
+     */
+    private record TableContext(String tableName, List<KeysetTableExtractor.KeyColumn> keyColumns,
+                                List<CatalogAnalyzer.ColumnInfo> columns, String rowHashSql) {
+
+        boolean isRanged() {
+            return keyColumns != null;
+        }
+
+        String keyColumn() {
+            return keyColumns.get(0).name();
+        }
+    }
+
+    private record ChunkComparison(KeyRange range, long sourceRows, long targetRows, boolean matches,
+                                   Map<String, Object> drillDown) {
+
+        Map<String, Object> toMap() {
+            Map<String, Object> view = new LinkedHashMap<>();
+            if (range != null) {
+                view.put("lowerKey", range.lowerBound());
+                view.put("upperKey", range.upperBound());
+            }
+            view.put("sourceRows", sourceRows);
+            view.put("targetRows", targetRows);
+            if (drillDown != null) {
+                view.put("rows", drillDown);
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Verify the given tables, or every table of the source when the list is empty
+     */
+    public Map<String, Object> verify(List<String> tableNames) {
+        long start = System.nanoTime();
+        CatalogAnalyzer.SourceAnalysis analysis = catalogAnalyzer.analyze();
+        List<String> tables = tableNames == null || tableNames.isEmpty()
+            ? analysis.tables().values().stream()
+                .filter(table -> table.kind().equals("table"))
+                .map(CatalogAnalyzer.TableInfo::name)
+                .toList()
+            : tableNames;
+
+        // Every chunk of every table is queued up front, so the pool stays busy across tables
+        Map<String, List<CompletableFuture<ChunkComparison>>> comparisons = new TreeMap<>();
+        Map<String, String> setupErrors = new TreeMap<>();
+        for (String tableName : tables) {
+            CatalogAnalyzer.TableInfo table = analysis.tables().get(tableName);
+            if (table == null) {
+                setupErrors.put(tableName, "Table not found in source");
+                continue;
+            }
+            try {
+                TableContext context = contextFor(table);
+                List<CompletableFuture<ChunkComparison>> futures = new ArrayList<>();
+                for (KeyRange range : chunksFor(table, context)) {
+                    futures.add(CompletableFuture.supplyAsync(() -> compareChunk(context, range), verifyExecutor));
+                }
+                comparisons.put(tableName, futures);
+            } catch (RuntimeException e) {
+                setupErrors.put(tableName, e.getMessage());
+            }
+        }
+
+        Map<String, Object> tableResults = new TreeMap<>();
+        List<String> mismatchedTables = new ArrayList<>();
+        setupErrors.forEach((tableName, error) -> tableResults.put(tableName, Map.of("status", "error", "error", error)));
+        comparisons.forEach((tableName, futures) -> {
+            Map<String, Object> tableResult = new LinkedHashMap<>();
+            try {
+                long sourceRows = 0;
+                long targetRows = 0;
+                List<Map<String, Object>> mismatches = new ArrayList<>();
+                for (CompletableFuture<ChunkComparison> future : futures) {
+                    ChunkComparison comparison = future.join();
+                    sourceRows += comparison.sourceRows();
+                    targetRows += comparison.targetRows();
+                    if (!comparison.matches()) {
+                        mismatches.add(comparison.toMap());
+                    }
+                }
+                tableResult.put("status", mismatches.isEmpty() ? "match" : "mismatch");
+                tableResult.put("sourceRows", sourceRows);
+                tableResult.put("targetRows", targetRows);
+                tableResult.put("chunks", futures.size());
+                tableResult.put("mismatchedChunks", mismatches);
+                if (!mismatches.isEmpty()) {
+                    mismatchedTables.add(tableName);
+                }
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                tableResult.put("status", "error");
+                tableResult.put("error", cause.getMessage());
+                setupErrors.put(tableName, cause.getMessage());
+            }
+            tableResults.put(tableName, tableResult);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", !setupErrors.isEmpty() ? "error" : mismatchedTables.isEmpty() ? "match" : "mismatch");
+        result.put("tablesVerified", tables.size());
+        result.put("mismatchedTables", mismatchedTables);
+        result.put("failedTables", new ArrayList<>(setupErrors.keySet()));
+        result.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        result.put("tables", tableResults);
+        logger.info("Verified {} tables in {} ms: {} mismatched, {} failed", tables.size(),
+            result.get("durationMillis"), mismatchedTables.size(), setupErrors.size());
+        return result;
+    }
+
+    private TableContext contextFor(CatalogAnalyzer.TableInfo table) {
+        List<KeysetTableExtractor.KeyColumn> keyColumns = tableExtractor.resolvePrimaryKey(table.name());
+        return new TableContext(table.name(), rangeSplitter.isSplittable(keyColumns) ? keyColumns : null,
+            table.columns(), RowHasher.sqlRowHash(table.columns()));
+    }
+
+    /**
+     * Key ranges of about chunkRows rows each; a single unbounded chunk (null) for unsplittable or empty tables
+     */
+    private List<KeyRange> chunksFor(CatalogAnalyzer.TableInfo table, TableContext context) {
+        if (context.isRanged()) {
+            int chunks = (int) Math.max(2, Math.min(Integer.MAX_VALUE, (table.rowCount() + chunkRows - 1) / chunkRows));
+            List<KeyRange> ranges = rangeSplitter.split(table.name(), context.keyColumns(), chunks);
+            if (!ranges.isEmpty()) {
+                return ranges;
+            }
+        }
+        List<KeyRange> whole = new ArrayList<>();
+        whole.add(null);
+        return whole;
+    }
+
+    private ChunkComparison compareChunk(TableContext context, KeyRange range) {
+        long[] sourceRows = new long[1];
+        BigInteger sourceSum = sourceChecksum(context, range, sourceRows);
+        RowHasher.Checksum target = targetChecksum(context, range);
+
+        boolean matches = sourceRows[0] == target.getRows() && sourceSum.equals(target.getSum());
+        Map<String, Object> drillDown = null;
+        if (!matches && range != null) {
+            drillDown = drillDown(context, range, sourceRows[0]);
+        }
+        return new ChunkComparison(range, sourceRows[0], target.getRows(), matches, drillDown);
+    }
+
+    private BigInteger sourceChecksum(TableContext context, KeyRange range, long[] rows) {
+        String sql = "SELECT count(*), coalesce(sum(" + context.rowHashSql() + "), 0)::text FROM " +
+            KeysetTableExtractor.quoteIdentifier(context.tableName()) + rangeCondition(context, range);
+        Object[] parameters = range != null ? new Object[] { range.lowerBound(), range.upperBound() } : new Object[0];
+        return jdbcTemplate.query(sql, rs -> {
+            rs.next();
+            rows[0] = rs.getLong(1);
+            return new BigInteger(rs.getString(2));
+        }, parameters);
+    }
+
+    private RowHasher.Checksum targetChecksum(TableContext context, KeyRange range) {
+        RowHasher hasher = new RowHasher(context.columns());
+        RowHasher.Checksum checksum = new RowHasher.Checksum();
+        documentSink.scan(context.tableName(), range, document -> checksum.add(hasher.hash(document)));
+        return checksum;
+    }
+
+    /**
+     * Narrow a mismatching range down by halving it, comparing checksums of the halves, until the
+     * mismatching parts are small enough to compare key by key
+     */
+    private Map<String, Object> drillDown(TableContext context, KeyRange range, long sourceRows) {
+        Map<String, Object> differences = new LinkedHashMap<>();
+        differences.put("missingInTarget", new TreeSet<Long>());
+        differences.put("unexpectedInTarget", new TreeSet<Long>());
+        differences.put("different", new TreeSet<Long>());
+        narrow(context, range, sourceRows, differences);
+        return differences;
+    }
+
+    private void narrow(TableContext context, KeyRange range, long sourceRows, Map<String, Object> differences) {
+        if (sourceRows <= drillDownRows || range.width() <= drillDownRows) {
+            compareKeys(context, range, differences);
+            return;
+        }
+        for (KeyRange half : TableRangeSplitter.splitKeySpace(range.lowerBound(), range.upperBound(), 2)) {
+            long[] halfRows = new long[1];
+            BigInteger sourceSum = sourceChecksum(context, half, halfRows);
+            RowHasher.Checksum target = targetChecksum(context, half);
+            if (halfRows[0] != target.getRows() || !sourceSum.equals(target.getSum())) {
+                narrow(context, half, halfRows[0], differences);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void compareKeys(TableContext context, KeyRange range, Map<String, Object> differences) {
+        Map<Long, Long> sourceHashes = new HashMap<>();
+        jdbcTemplate.query("SELECT " + KeysetTableExtractor.quoteIdentifier(context.keyColumn()) + ", " +
+                context.rowHashSql() + " FROM " + KeysetTableExtractor.quoteIdentifier(context.tableName()) +
+                rangeCondition(context, range),
+            rs -> {
+                sourceHashes.put(rs.getLong(1), rs.getLong(2));
+            }, range.lowerBound(), range.upperBound());
+
+        Map<Long, Long> targetHashes = new HashMap<>();
+        RowHasher hasher = new RowHasher(context.columns());
+        documentSink.scan(context.tableName(), range, document -> {
+            BsonValue id = document.get("_id");
+            if (id != null && id.isNumber()) {
+                targetHashes.put(id.asNumber().longValue(), hasher.hash(document));
+            }
+        });
+
+        TreeSet<Long> missing = (TreeSet<Long>) differences.get("missingInTarget");
+        TreeSet<Long> unexpected = (TreeSet<Long>) differences.get("unexpectedInTarget");
+        TreeSet<Long> different = (TreeSet<Long>) differences.get("different");
+        sourceHashes.forEach((key, hash) -> {
+            Long targetHash = targetHashes.get(key);
+            if (targetHash == null) {
+                addCapped(missing, key);
+            } else if (!Objects.equals(hash, targetHash)) {
+                addCapped(different, key);
+            }
+        });
+        targetHashes.keySet().stream()
+            .filter(key -> !sourceHashes.containsKey(key))
+            .forEach(key -> addCapped(unexpected, key));
+    }
+
+    private void addCapped(TreeSet<Long> keys, long key) {
+        if (keys.size() < maxReportedKeys) {
+            keys.add(key);
+        }
+    }
+
+    private static String rangeCondition(TableContext context, KeyRange range) {
+        return range == null ? ""
+            : " WHERE " + KeysetTableExtractor.quoteIdentifier(context.keyColumn()) + " BETWEEN ? AND ?";
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        verifyExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,242 @@
+package com.dvdrental.management.service.migration;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Writes document batches to MongoDB with unordered insertMany, or unordered bulkWrite of
+ * replace-with-upsert operations keyed by _id for incremental syncs.
+ * At most maxInFlightBatches batches are outstanding at once; further calls to
+ * {@link #writeBatch} block until one is acknowledged.
+ * Duplicate-key errors are ignored, since documents are keyed by the source primary key
+ * and a duplicate means the row was already copied by an earlier run. For the same reason a
+ * batch can be written again after a transient error (network, timeout, primary step-down);
+ * such retries are counted in {@link MigrationMetrics}.
+ */
+public class MongoDocumentSink implements DocumentSink, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoDocumentSink.class);
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private static final int SCAN_BATCH_SIZE = 5000;
+
+    private final MongoDatabase database;
+    private final Semaphore inFlightBatches;
+    private final ExecutorService writers;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+    private final MigrationMetrics metrics;
+
+    public MongoDocumentSink(MongoClient mongoClient, String databaseName, int maxInFlightBatches,
+                             int maxRetries, long retryBackoffMillis, MigrationMetrics metrics) {
+        this.database = mongoClient.getDatabase(databaseName);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoffMillis = Math.max(0, retryBackoffMillis);
+        this.metrics = metrics;
+        int permits = Math.max(1, maxInFlightBatches);
+        this.inFlightBatches = new Semaphore(permits);
+        this.writers = Executors.newFixedThreadPool(permits, TableMigrationScheduler.namedThreadFactory("migration-mongo-"));
+    }
+
+    @Override
+    public String getName() {
+        return "mongodb";
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBatch(String collection, List<RawBsonDocument> documents, WriteMode mode) {
+        if (documents.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        inFlightBatches.acquireUninterruptibly();
+        try {
+            Runnable write = mode == WriteMode.UPSERT
+                ? () -> withRetries(collection, () -> upsert(collection, documents))
+                : () -> withRetries(collection, () -> insert(collection, documents));
+            return CompletableFuture.runAsync(write, writers)
+                .whenComplete((ignored, failure) -> inFlightBatches.release());
+        } catch (RejectedExecutionException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a write, repeating it with linear backoff while it fails with a transient error
+     */
+    private void withRetries(String collection, Runnable write) {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                write.run();
+                return;
+            } catch (MongoException e) {
+                if (attempt >= maxRetries || !isTransient(e)) {
+                    throw e;
+                }
+                metrics.recordRetry(collection);
+                logger.warn("Retrying write to {} after transient error ({} of {}): {}",
+                    collection, attempt + 1, maxRetries, e.getMessage());
+                try {
+                    Thread.sleep(retryBackoffMillis * (attempt + 1));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(MongoException e) {
+        return e instanceof MongoSocketException
+            || e instanceof MongoTimeoutException
+            || e instanceof MongoNotPrimaryException
+            || e instanceof MongoNodeIsRecoveringException
+            || e.hasErrorLabel("RetryableWriteError");
+    }
+
+    private void insert(String collection, List<RawBsonDocument> documents) {
+        try {
+            database.getCollection(collection, RawBsonDocument.class)
+                .insertMany(documents, new InsertManyOptions().ordered(false));
+        } catch (MongoBulkWriteException e) {
+            boolean onlyDuplicates = e.getWriteConcernError() == null && e.getWriteErrors().stream()
+                .allMatch(error -> error.getCode() == DUPLICATE_KEY_ERROR);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            logger.debug("Skipped {} documents already present in {}", e.getWriteErrors().size(), collection);
+        }
+    }
+
+    private void upsert(String collection, List<RawBsonDocument> documents) {
+        MongoCollection<RawBsonDocument> target = database.getCollection(collection, RawBsonDocument.class);
+        List<WriteModel<RawBsonDocument>> replacements = new ArrayList<>(documents.size());
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        for (RawBsonDocument document : documents) {
+            replacements.add(new ReplaceOneModel<>(Filters.eq("_id", document.get("_id")), document, upsert));
+        }
+        target.bulkWrite(replacements, new BulkWriteOptions().ordered(false));
+    }
+
+    @Override
+    public CompletableFuture<Void> applyChanges(String collection, List<DocumentChange> changes) {
+        if (changes.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        inFlightBatches.acquireUninterruptibly();
+        try {
+            return CompletableFuture.runAsync(() -> withRetries(collection, () -> applyOrdered(collection, changes)), writers)
+                .whenComplete((ignored, failure) -> inFlightBatches.release());
+        } catch (RejectedExecutionException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+    }
+
+    private void applyOrdered(String collection, List<DocumentChange> changes) {
+        List<WriteModel<RawBsonDocument>> operations = new ArrayList<>(changes.size());
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+        for (DocumentChange change : changes) {
+            if (change.type() == DocumentChange.Type.DELETE) {
+                operations.add(new DeleteOneModel<>(Filters.eq("_id", change.id())));
+            } else {
+                operations.add(new ReplaceOneModel<>(Filters.eq("_id", change.id()), change.document(), upsert));
+            }
+        }
+        // Ordered, so a delete followed by a re-insert of the same key is applied in sequence
+        database.getCollection(collection, RawBsonDocument.class)
+            .bulkWrite(operations, new BulkWriteOptions().ordered(true));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteMatching(String collection, List<Bson> filters) {
+        if (filters.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        inFlightBatches.acquireUninterruptibly();
+        try {
+            return CompletableFuture.runAsync(() -> withRetries(collection, () -> deleteMany(collection, filters)), writers)
+                .whenComplete((ignored, failure) -> inFlightBatches.release());
+        } catch (RejectedExecutionException e) {
+            inFlightBatches.release();
+            throw e;
+        }
+    }
+
+    private void deleteMany(String collection, List<Bson> filters) {
+        List<WriteModel<RawBsonDocument>> deletes = new ArrayList<>(filters.size());
+        for (Bson filter : filters) {
+            deletes.add(new DeleteManyModel<>(filter));
+        }
+        database.getCollection(collection, RawBsonDocument.class)
+            .bulkWrite(deletes, new BulkWriteOptions().ordered(false));
+    }
+
+    @Override
+    public void scan(String collection, KeyRange range, Consumer<RawBsonDocument> consumer) {
+        Bson filter = range == null
+            ? new BsonDocument()
+            : Filters.and(Filters.gte("_id", range.lowerBound()), Filters.lte("_id", range.upperBound()));
+        database.getCollection(collection, RawBsonDocument.class)
+            .find(filter)
+            .batchSize(SCAN_BATCH_SIZE)
+            .forEach(consumer);
+    }
+
+    @Override
+    public void dropCollection(String collection) {
+        database.getCollection(collection).drop();
+    }
+
+    @Override
+    public Map<String, Object> describe() {
+        Map<String, Object> collections = new LinkedHashMap<>();
+        for (String name : database.listCollectionNames()) {
+            collections.put(name, Map.of("documentCount", database.getCollection(name).estimatedDocumentCount()));
+        }
+
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("sink", getName());
+        description.put("database", database.getName());
+        description.put("collections", collections);
+        description.put("totalCollections", collections.size());
+        return description;
+    }
+
+    @Override
+    public void close() {
+        writers.shutdown();
+    }
+}
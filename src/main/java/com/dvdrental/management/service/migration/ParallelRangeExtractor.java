@@ -0,0 +1,147 @@
+package com.dvdrental.management.service.migration;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Extracts the key ranges of one table concurrently, one worker and one pooled
+ * connection per chunk. Chunk workers run on their own pool so that table-level
+ * workers waiting on their chunks can never starve them.
+ */
+@Component
+public class ParallelRangeExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ParallelRangeExtractor.class);
+
+    private final KeysetTableExtractor tableExtractor;
+    private final SnapshotCoordinator snapshots;
+    private final ExecutorService chunkPool;
+    private final int workerThreads;
+
+    public ParallelRangeExtractor(KeysetTableExtractor tableExtractor, SnapshotCoordinator snapshots,
+                                  @Value("${migration.split.worker-threads:0}") int workerThreads) {
+        this.tableExtractor = tableExtractor;
+        this.snapshots = snapshots;
+        this.workerThreads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        this.chunkPool = Executors.newFixedThreadPool(this.workerThreads, TableMigrationScheduler.namedThreadFactory("migration-chunk-"));
+    }
+
+    /**
+     * Number of chunks extracted concurrently, across all tables
+     */
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    /**
+     * Extract every range of the table in parallel. The handler factory is called once per
+     * chunk, so each handler is only ever used from a single thread. A chunk with an entry in
+     * resumeKeys starts after that key instead of at the start of its range.
+     * Blocks until all chunks finish; if any chunk fails, the others still run to completion
+     * and an exception naming the failed chunks is thrown afterwards. Chunks read on the
+     * snapshot bound to the calling thread, if any.
+     */
+    public List<ChunkProgress> extract(String tableName, List<KeysetTableExtractor.KeyColumn> keyColumns,
+                                       List<KeyRange> ranges, Map<Integer, Object[]> resumeKeys, int pageSize,
+                                       Function<ChunkProgress, RowHandler> handlerFactory) throws InterruptedException {
+        List<ChunkProgress> progress = new ArrayList<>(ranges.size());
+        List<Callable<Long>> workers = new ArrayList<>(ranges.size());
+        SnapshotCoordinator.ExportedSnapshot snapshot = snapshots.current();
+
+        for (KeyRange range : ranges) {
+            ChunkProgress chunk = new ChunkProgress(tableName, range);
+            progress.add(chunk);
+            Object[] resumeKey = resumeKeys.get(range.chunkId());
+            workers.add(() -> snapshots.bind(snapshot,
+                () -> extractChunk(tableName, keyColumns, chunk, pageSize, resumeKey, handlerFactory.apply(chunk))));
+        }
+
+        List<String> failedChunks = new ArrayList<>();
+        for (Future<Long> future : chunkPool.invokeAll(workers)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                failedChunks.add(e.getCause().getMessage());
+            }
+        }
+        if (!failedChunks.isEmpty()) {
+            throw new IllegalStateException("Chunk extraction failed for " + tableName + ": " + failedChunks);
+        }
+        return progress;
+    }
+
+    private long extractChunk(String tableName, List<KeysetTableExtractor.KeyColumn> keyColumns, ChunkProgress chunk,
+                              int pageSize, Object[] resumeKey, RowHandler handler) {
+        chunk.markRunning();
+        try {
+            long rows = tableExtractor.extractRange(tableName, keyColumns, chunk.getRange(), pageSize, resumeKey, new RowHandler() {
+                @Override
+                public void onRow(ResultSet rs) throws SQLException {
+                    handler.onRow(rs);
+                }
+
+                @Override
+                public boolean acceptsDecodedRows() {
+                    return handler.acceptsDecodedRows();
+                }
+
+                @Override
+                public void onColumns(List<String> columnNames, List<RowCodec.ColumnKind> kinds) {
+                    handler.onColumns(columnNames, kinds);
+                }
+
+                @Override
+                public ColumnarRowBatch decodedRows() {
+                    return handler.decodedRows();
+                }
+
+                @Override
+                public int nextPageSize(int pageSize) {
+                    return handler.nextPageSize(pageSize);
+                }
+
+                @Override
+                public void onPage(int rowsInPage, Object[] lastKey) {
+                    chunk.recordPage(rowsInPage, lastKey);
+                    handler.onPage(rowsInPage, lastKey);
+                }
+
+                @Override
+                public void onComplete() {
+                    handler.onComplete();
+                }
+
+                @Override
+                public void onAbort(Throwable cause) {
+                    handler.onAbort(cause);
+                }
+            });
+            chunk.markCompleted();
+            logger.debug("Chunk {} of {} extracted {} rows", chunk.getRange().chunkId(), tableName, rows);
+            return rows;
+        } catch (RuntimeException e) {
+            chunk.markFailed(e);
+            throw new IllegalStateException("chunk " + chunk.getRange().chunkId() + ": " + e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        chunkPool.shutdownNow();
+    }
+}
@@ -0,0 +1,350 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decodes one field of PostgreSQL's binary COPY format (the type's send representation).
+ * The buffer is positioned at the start of the field and holds exactly length bytes of it.
+ *
+ * Fixed-width types are written straight into the primitive columns of a {@link ColumnarRowBatch}
+ * with {@link #decodeInto}; the other types decode to the same BSON-ready value
+ * {@link RowDocumentMapper} produces from a ResultSet.
+ */
+abstract class PgBinaryFieldDecoder {
+
+    /** Microseconds between 1970-01-01 and PostgreSQL's epoch 2000-01-01 */
+    static final long POSTGRES_EPOCH_MICROS = 946_684_800_000_000L;
+
+    /** Days between 1970-01-01 and 2000-01-01 */
+    static final int POSTGRES_EPOCH_DAYS = 10_957;
+
+    private final RowCodec.ColumnKind kind;
+
+    PgBinaryFieldDecoder(RowCodec.ColumnKind kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * How decoded values are stored in a batch and written to BSON
+     */
+    RowCodec.ColumnKind kind() {
+        return kind;
+    }
+
+    /**
+     * Decode to a value object, as needed for array elements
+     */
+    abstract Object decode(ByteBuffer buffer, int length);
+
+    /**
+     * Decode into a batch cell; fixed-width decoders override this to avoid boxing
+     */
+    void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+        batch.setObject(column, row, decode(buffer, length));
+    }
+
+    static final PgBinaryFieldDecoder INT2 = new PgBinaryFieldDecoder(RowCodec.ColumnKind.INT32) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            return (int) buffer.getShort();
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            batch.setLong(column, row, buffer.getShort());
+        }
+    };
+
+    static final PgBinaryFieldDecoder INT4 = new PgBinaryFieldDecoder(RowCodec.ColumnKind.INT32) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            return buffer.getInt();
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            batch.setLong(column, row, buffer.getInt());
+        }
+    };
+
+    static final PgBinaryFieldDecoder INT8 = new PgBinaryFieldDecoder(RowCodec.ColumnKind.INT64) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            return buffer.getLong();
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            batch.setLong(column, row, buffer.getLong());
+        }
+    };
+
+    static final PgBinaryFieldDecoder FLOAT4 = new PgBinaryFieldDecoder(RowCodec.ColumnKind.DOUBLE) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            return (double) buffer.getFloat();
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            batch.setDouble(column, row, buffer.getFloat());
+        }
+    };
+
+    static final PgBinaryFieldDecoder FLOAT8 = new PgBinaryFieldDecoder(RowCodec.ColumnKind.DOUBLE) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            return buffer.getDouble();
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            batch.setDouble(column, row, buffer.getDouble());
+        }
+    };
+
+    static final PgBinaryFieldDecoder BOOL = new PgBinaryFieldDecoder(RowCodec.ColumnKind.BOOLEAN) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            return buffer.get() != 0;
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            batch.setLong(column, row, buffer.get() != 0 ? 1 : 0);
+        }
+    };
+
+    /** Timestamps are microseconds since 2000-01-01; without time zone they are read as UTC, like the JDBC path */
+    static final PgBinaryFieldDecoder TIMESTAMP = new PgBinaryFieldDecoder(RowCodec.ColumnKind.DATE_TIME) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            long micros = buffer.getLong();
+            return isInfinite(micros) ? null : new Date(toEpochMillis(micros));
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            long micros = buffer.getLong();
+            if (isInfinite(micros)) {
+                // 'infinity' has no BSON date equivalent
+                batch.setNull(column, row);
+            } else {
+                batch.setLong(column, row, toEpochMillis(micros));
+            }
+        }
+
+        private boolean isInfinite(long micros) {
+            return micros == Long.MAX_VALUE || micros == Long.MIN_VALUE;
+        }
+
+        private long toEpochMillis(long micros) {
+            return Math.floorDiv(micros + POSTGRES_EPOCH_MICROS, 1000L);
+        }
+    };
+
+    static final PgBinaryFieldDecoder DATE = new PgBinaryFieldDecoder(RowCodec.ColumnKind.DATE_TIME) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            int days = buffer.getInt();
+            return isInfinite(days) ? null : new Date(toEpochMillis(days));
+        }
+
+        @Override
+        void decodeInto(ByteBuffer buffer, int length, ColumnarRowBatch batch, int column, int row) {
+            int days = buffer.getInt();
+            if (isInfinite(days)) {
+                batch.setNull(column, row);
+            } else {
+                batch.setLong(column, row, toEpochMillis(days));
+            }
+        }
+
+        private boolean isInfinite(int days) {
+            return days == Integer.MAX_VALUE || days == Integer.MIN_VALUE;
+        }
+
+        private long toEpochMillis(int days) {
+            return (days + (long) POSTGRES_EPOCH_DAYS) * 86_400_000L;
+        }
+    };
+
+    /** text, varchar, bpchar, name and enum labels such as mpaa_rating are all sent as UTF-8 bytes */
+    static final PgBinaryFieldDecoder TEXT = new PgBinaryFieldDecoder(RowCodec.ColumnKind.STRING) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+    };
+
+    static final PgBinaryFieldDecoder BYTEA = new PgBinaryFieldDecoder(RowCodec.ColumnKind.BINARY) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+    };
+
+    /**
+     * numeric: ndigits, weight, sign and display scale, then base-10000 digits, most significant first
+     */
+    static final PgBinaryFieldDecoder NUMERIC = new PgBinaryFieldDecoder(RowCodec.ColumnKind.DECIMAL) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            int digitCount = buffer.getShort() & 0xFFFF;
+            int weight = buffer.getShort();
+            int sign = buffer.getShort() & 0xFFFF;
+            int displayScale = buffer.getShort() & 0xFFFF;
+
+            switch (sign) {
+                case 0xC000:
+                    return Decimal128.NaN;
+                case 0xD000:
+                    return Decimal128.POSITIVE_INFINITY;
+                case 0xF000:
+                    return Decimal128.NEGATIVE_INFINITY;
+                default:
+                    break;
+            }
+
+            BigDecimal value;
+            if (digitCount == 0) {
+                value = BigDecimal.ZERO;
+            } else if (digitCount <= 4) {
+                // Up to 16 decimal digits fit a long, which covers every amount in dvdrental
+                long unscaled = 0;
+                for (int i = 0; i < digitCount; i++) {
+                    unscaled = unscaled * 10_000 + buffer.getShort();
+                }
+                value = BigDecimal.valueOf(unscaled, -4 * (weight - digitCount + 1));
+            } else {
+                BigInteger unscaled = BigInteger.ZERO;
+                BigInteger base = BigInteger.valueOf(10_000);
+                for (int i = 0; i < digitCount; i++) {
+                    unscaled = unscaled.multiply(base).add(BigInteger.valueOf(buffer.getShort()));
+                }
+                value = new BigDecimal(unscaled, -4 * (weight - digitCount + 1));
+            }
+            // Digits beyond the display scale are always zero, so this never rounds
+            value = value.setScale(displayScale, RoundingMode.UNNECESSARY);
+            return new Decimal128(sign == 0x4000 ? value.negate() : value);
+        }
+    };
+
+    /**
+     * tsvector: lexeme count, then per lexeme a NUL-terminated string and its positions, each
+     * position carrying its weight in the top two bits. Rendered in PostgreSQL's text form
+     * ('lexeme':1A,5) so documents match those written from a ResultSet.
+     */
+    static final PgBinaryFieldDecoder TSVECTOR = new PgBinaryFieldDecoder(RowCodec.ColumnKind.STRING) {
+        @Override
+        Object decode(ByteBuffer buffer, int length) {
+            int lexemes = buffer.getInt();
+            StringBuilder text = new StringBuilder(length + lexemes * 4);
+            for (int i = 0; i < lexemes; i++) {
+                if (i > 0) {
+                    text.append(' ');
+                }
+                int start = buffer.position();
+                while (buffer.get() != 0) {
+                    // scan to the terminator
+                }
+                String lexeme = new String(buffer.array(), buffer.arrayOffset() + start, buffer.position() - start - 1,
+                    StandardCharsets.UTF_8);
+                text.append('\'').append(lexeme.replace("\\", "\\\\").replace("'", "''")).append('\'');
+
+                int positions = buffer.getShort() & 0xFFFF;
+                for (int p = 0; p < positions; p++) {
+                    int entry = buffer.getShort() & 0xFFFF;
+                    text.append(p == 0 ? ':' : ',').append(entry & 0x3FFF);
+                    int weight = entry >>> 14;
+                    if (weight > 0) {
+                        text.append((char) ('D' - weight));
+                    }
+                }
+            }
+            return text.toString();
+        }
+    };
+
+    /**
+     * One-dimensional (or flattened multi-dimensional) array of elements decoded by the given decoder
+     */
+    static PgBinaryFieldDecoder arrayOf(PgBinaryFieldDecoder elementDecoder) {
+        return new PgBinaryFieldDecoder(RowCodec.ColumnKind.ARRAY) {
+            @Override
+            Object decode(ByteBuffer buffer, int length) {
+                int dimensions = buffer.getInt();
+                buffer.getInt(); // has-nulls flag
+                buffer.getInt(); // element type oid
+                if (dimensions == 0) {
+                    return new ArrayList<>();
+                }
+                int elements = 1;
+                for (int d = 0; d < dimensions; d++) {
+                    elements *= buffer.getInt();
+                    buffer.getInt(); // lower bound
+                }
+                List<Object> values = new ArrayList<>(elements);
+                for (int i = 0; i < elements; i++) {
+                    int elementLength = buffer.getInt();
+                    values.add(elementLength < 0 ? null : elementDecoder.decode(buffer, elementLength));
+                }
+                return values;
+            }
+        };
+    }
+
+    /**
+     * Decoder for a type name as reported by pg_type.typname (domains resolved to their base type,
+     * enums as "enum"), or null when the column should be selected as ::text instead
+     */
+    static PgBinaryFieldDecoder forType(String typeName) {
+        switch (typeName) {
+            case "int2":
+                return INT2;
+            case "int4":
+                return INT4;
+            case "int8":
+                return INT8;
+            case "float4":
+                return FLOAT4;
+            case "float8":
+                return FLOAT8;
+            case "bool":
+                return BOOL;
+            case "numeric":
+                return NUMERIC;
+            case "timestamp":
+            case "timestamptz":
+                return TIMESTAMP;
+            case "date":
+                return DATE;
+            case "text":
+            case "varchar":
+            case "bpchar":
+            case "name":
+            case "enum":
+                return TEXT;
+            case "bytea":
+                return BYTEA;
+            case "tsvector":
+                return TSVECTOR;
+            default:
+                return null;
+        }
+    }
+}
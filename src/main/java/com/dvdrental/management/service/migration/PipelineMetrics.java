@@ -0,0 +1,246 @@
+package com.dvdrental.management.service.migration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage timings and queue depths of the extract → transform → load pipelines of one table.
+ * Shared by all chunk pipelines of the table, so every counter is thread-safe.
+ * Created by {@link MigrationMetrics}, which also publishes rows, bytes and batch latencies to Micrometer.
+ *
+ * A stage that is mostly busy while its neighbours mostly wait on their queues is the bottleneck:
+ * a slow load shows as a full encoded queue and a transform stage blocked on output,
+ * a slow database shows as empty queues and downstream stages blocked on input.
+ */
+public class PipelineMetrics {
+
+    public enum Stage { EXTRACT, TRANSFORM, LOAD }
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    private final String tableName;
+    private final Map<Stage, StageStats> stages = new LinkedHashMap<>();
+    private final QueueStats extractedQueue = new QueueStats();
+    private final QueueStats encodedQueue = new QueueStats();
+    private final LongAdder bytesLoaded = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final Counter bytesCounter;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    private volatile Status status = Status.RUNNING;
+
+    PipelineMetrics(String tableName, MeterRegistry registry) {
+        this.tableName = tableName;
+        for (Stage stage : Stage.values()) {
+            String stageName = stage.name().toLowerCase();
+            Counter rows = Counter.builder("migration.stage.rows")
+                .description("Rows that passed a pipeline stage")
+                .tags("table", tableName, "stage", stageName)
+                .register(registry);
+            Timer latency = Timer.builder("migration.stage.batch.latency")
+                .description("Time to extract, encode or get a page acknowledged by the sink")
+                .tags("table", tableName, "stage", stageName)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+            stages.put(stage, new StageStats(rows, latency));
+        }
+        this.bytesCounter = Counter.builder("migration.load.bytes")
+            .description("BSON bytes acknowledged by the sink")
+            .baseUnit("bytes")
+            .tags("table", tableName)
+            .register(registry);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void addBytesLoaded(long bytes) {
+        bytesLoaded.add(bytes);
+        bytesCounter.increment(bytes);
+    }
+
+    void addRetry() {
+        retries.increment();
+    }
+
+    void finish(boolean succeeded) {
+        finishNanos = System.nanoTime();
+        status = succeeded ? Status.COMPLETED : Status.FAILED;
+    }
+
+    private long elapsedNanos() {
+        return (status == Status.RUNNING ? System.nanoTime() : finishNanos) - startNanos;
+    }
+
+    public StageStats stage(Stage stage) {
+        return stages.get(stage);
+    }
+
+    public QueueStats extractedQueue() {
+        return extractedQueue;
+    }
+
+    public QueueStats encodedQueue() {
+        return encodedQueue;
+    }
+
+    /**
+     * Stage with the highest busy time, i.e. the one the others are waiting for
+     */
+    public Stage bottleneck() {
+        Stage slowest = Stage.EXTRACT;
+        for (Map.Entry<Stage, StageStats> entry : stages.entrySet()) {
+            if (entry.getValue().busyNanos.sum() > stages.get(slowest).busyNanos.sum()) {
+                slowest = entry.getKey();
+            }
+        }
+        return slowest;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> view = new LinkedHashMap<>();
+        Map<String, Object> stageViews = new LinkedHashMap<>();
+        stages.forEach((stage, stats) -> stageViews.put(stage.name().toLowerCase(), stats.toMap()));
+        view.put("stages", stageViews);
+        view.put("queues", Map.of(
+            "extractToTransform", extractedQueue.toMap(),
+            "transformToLoad", encodedQueue.toMap()
+        ));
+        view.put("bottleneck", bottleneck().name().toLowerCase());
+        return view;
+    }
+
+    /**
+     * Live view for the progress endpoint: throughput so far on top of the stage and queue view
+     */
+    public Map<String, Object> toProgressMap() {
+        double seconds = Math.max(1e-3, elapsedNanos() / 1e9);
+        long rowsLoaded = stages.get(Stage.LOAD).getRows();
+        long bytes = bytesLoaded.sum();
+
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("status", status.name().toLowerCase());
+        view.put("startedAt", startedAt.toString());
+        view.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos()));
+        view.put("rowsExtracted", stages.get(Stage.EXTRACT).getRows());
+        view.put("rowsLoaded", rowsLoaded);
+        view.put("bytesLoaded", bytes);
+        view.put("rowsPerSecond", Math.round(rowsLoaded / seconds));
+        view.put("bytesPerSecond", Math.round(bytes / seconds));
+        view.put("retries", retries.sum());
+        view.putAll(toMap());
+        return view;
+    }
+
+    /**
+     * Time a stage spent working versus waiting on its input and output queues
+     */
+    public static class StageStats {
+        private final Counter rowsCounter;
+        private final Timer latency;
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder blockedOnInputNanos = new LongAdder();
+        private final LongAdder blockedOnOutputNanos = new LongAdder();
+        private final LongAdder batches = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+
+        StageStats(Counter rowsCounter, Timer latency) {
+            this.rowsCounter = rowsCounter;
+            this.latency = latency;
+        }
+
+        public void addBusy(long nanos) {
+            busyNanos.add(nanos);
+        }
+
+        public void addBlockedOnInput(long nanos) {
+            blockedOnInputNanos.add(nanos);
+        }
+
+        public void addBlockedOnOutput(long nanos) {
+            blockedOnOutputNanos.add(nanos);
+        }
+
+        public void addBatch(int batchRows) {
+            batches.increment();
+            rows.add(batchRows);
+            rowsCounter.increment(batchRows);
+        }
+
+        /**
+         * Latency of one batch through the stage, recorded into the percentile histogram
+         */
+        public void recordLatency(long nanos) {
+            latency.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getBatches() {
+            return batches.sum();
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("batches", batches.sum());
+            view.put("rows", rows.sum());
+            view.put("busyMillis", TimeUnit.NANOSECONDS.toMillis(busyNanos.sum()));
+            view.put("blockedOnInputMillis", TimeUnit.NANOSECONDS.toMillis(blockedOnInputNanos.sum()));
+            view.put("blockedOnOutputMillis", TimeUnit.NANOSECONDS.toMillis(blockedOnOutputNanos.sum()));
+            // Percentiles decay over Micrometer's sliding window, so they reflect recent batches
+            for (ValueAtPercentile percentile : latency.takeSnapshot().percentileValues()) {
+                String key = percentile.percentile() == 0.5 ? "batchLatencyP50Millis" : "batchLatencyP99Millis";
+                view.put(key, Math.round(percentile.value(TimeUnit.MILLISECONDS)));
+            }
+            return view;
+        }
+    }
+
+    /**
+     * Depth of a bounded queue, sampled every time a batch is put on it
+     */
+    public static class QueueStats {
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder depthSum = new LongAdder();
+        private final AtomicInteger maxDepth = new AtomicInteger();
+        private final AtomicInteger currentDepth = new AtomicInteger();
+
+        public void sample(int depth) {
+            samples.increment();
+            depthSum.add(depth);
+            currentDepth.set(depth);
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+
+        public int getCurrentDepth() {
+            return currentDepth.get();
+        }
+
+        Map<String, Object> toMap() {
+            long count = samples.sum();
+            return Map.of(
+                "currentDepth", currentDepth.get(),
+                "maxDepth", maxDepth.get(),
+                "averageDepth", count == 0 ? 0.0 : (double) depthSum.sum() / count
+            );
+        }
+    }
+}
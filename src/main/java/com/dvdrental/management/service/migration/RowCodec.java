@@ -0,0 +1,391 @@
+package com.dvdrental.management.service.migration;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Row reader/writer compiled once per table from its column types.
+ *
+ * {@link #read} copies the current ResultSet row into a {@link ColumnarRowBatch} through the primitive
+ * accessor that matches each column (getInt, getLong, ...), and {@link #encode} writes a batch row
+ * straight to BSON with a BsonBinaryWriter, appending to the page's pooled output buffer. No map,
+ * Document or boxed value is created in between; decimals and arrays are converted to Decimal128 and
+ * BSON arrays as they are written. The primary key becomes _id (a sub-document for composite keys);
+ * timestamps without time zone are stored as UTC dates, exactly as {@link RowDocumentMapper} does.
+ * A codec is immutable and shared by all workers of a table; batches and buffers are per thread.
+ */
+public final class RowCodec {
+
+    private static final CodecRegistry CODEC_REGISTRY = MongoClientSettings.getDefaultCodecRegistry();
+    private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+    /**
+     * How a column is read, stored in a batch and written to BSON
+     */
+    public enum ColumnKind {
+        INT32(Storage.LONG), INT64(Storage.LONG), BOOLEAN(Storage.LONG), DATE_TIME(Storage.LONG),
+        DOUBLE(Storage.DOUBLE),
+        DECIMAL(Storage.OBJECT), STRING(Storage.OBJECT), BINARY(Storage.OBJECT), ARRAY(Storage.OBJECT),
+        OBJECT(Storage.OBJECT);
+
+        enum Storage { LONG, DOUBLE, OBJECT }
+
+        private final Storage storage;
+
+        ColumnKind(Storage storage) {
+            this.storage = storage;
+        }
+
+        Storage storage() {
+            return storage;
+        }
+    }
+
+    private final String[] columnNames;
+    private final ColumnKind[] kinds;
+    private final int[] sqlTypes;
+    private final int[] keyIndexes;
+
+    private RowCodec(String[] columnNames, ColumnKind[] kinds, int[] sqlTypes, List<String> keyColumnNames) {
+        this.columnNames = columnNames;
+        this.kinds = kinds;
+        this.sqlTypes = sqlTypes;
+        this.keyIndexes = new int[keyColumnNames.size()];
+        List<String> names = Arrays.asList(columnNames);
+        for (int k = 0; k < keyIndexes.length; k++) {
+            keyIndexes[k] = names.indexOf(keyColumnNames.get(k));
+            if (keyIndexes[k] < 0) {
+                throw new IllegalArgumentException("Key column not in result set: " + keyColumnNames.get(k));
+            }
+        }
+    }
+
+    /**
+     * Compile a codec for the columns of a result set
+     */
+    public static RowCodec compile(ResultSetMetaData metaData, List<String> keyColumnNames) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] names = new String[columnCount];
+        ColumnKind[] kinds = new ColumnKind[columnCount];
+        int[] sqlTypes = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = metaData.getColumnLabel(i + 1);
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+            kinds[i] = kindOf(sqlTypes[i]);
+        }
+        return new RowCodec(names, kinds, sqlTypes, keyColumnNames);
+    }
+
+    /**
+     * Codec for rows decoded elsewhere (binary COPY) straight into batches laid out by the given kinds
+     */
+    public static RowCodec forDecodedColumns(List<String> columnNames, List<ColumnKind> kinds,
+                                             List<String> keyColumnNames) {
+        return new RowCodec(columnNames.toArray(new String[0]), kinds.toArray(new ColumnKind[0]),
+            new int[kinds.size()], keyColumnNames);
+    }
+
+    private static ColumnKind kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.SMALLINT:
+            case Types.TINYINT:
+            case Types.INTEGER:
+                return ColumnKind.INT32;
+            case Types.BIGINT:
+                return ColumnKind.INT64;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return ColumnKind.DOUBLE;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return ColumnKind.BOOLEAN;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return ColumnKind.DECIMAL;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+            case Types.DATE:
+                return ColumnKind.DATE_TIME;
+            case Types.ARRAY:
+                return ColumnKind.ARRAY;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return ColumnKind.BINARY;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.OTHER:
+                // Enums such as mpaa_rating and tsvector arrive as OTHER and are kept as text
+                return ColumnKind.STRING;
+            default:
+                return ColumnKind.OBJECT;
+        }
+    }
+
+    public List<String> getColumnNames() {
+        return List.of(columnNames);
+    }
+
+    /**
+     * Whether this codec was compiled for the same columns, used to detect schema changes
+     */
+    boolean hasColumns(List<String> names) {
+        return Arrays.asList(columnNames).equals(names);
+    }
+
+    /**
+     * Whether this codec was built for the same columns with the same kinds
+     */
+    boolean hasColumns(List<String> names, List<ColumnKind> columnKinds) {
+        return hasColumns(names) && Arrays.asList(kinds).equals(columnKinds);
+    }
+
+    int[] getKeyIndexes() {
+        return keyIndexes;
+    }
+
+    ColumnarRowBatch newBatch(int initialCapacity) {
+        return new ColumnarRowBatch(kinds, initialCapacity);
+    }
+
+    /**
+     * Append the row the ResultSet is positioned on to the batch
+     */
+    void read(ResultSet rs, ColumnarRowBatch batch) throws SQLException {
+        int row = batch.addRow();
+        for (int c = 0; c < kinds.length; c++) {
+            int column = c + 1;
+            switch (kinds[c]) {
+                case INT32: {
+                    int value = rs.getInt(column);
+                    if (rs.wasNull()) {
+                        batch.setNull(c, row);
+                    } else {
+                        batch.setLong(c, row, value);
+                    }
+                    break;
+                }
+                case INT64: {
+                    long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        batch.setNull(c, row);
+                    } else {
+                        batch.setLong(c, row, value);
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean value = rs.getBoolean(column);
+                    if (rs.wasNull()) {
+                        batch.setNull(c, row);
+                    } else {
+                        batch.setLong(c, row, value ? 1 : 0);
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        batch.setNull(c, row);
+                    } else {
+                        batch.setDouble(c, row, value);
+                    }
+                    break;
+                }
+                case DATE_TIME:
+                    readDateTime(rs, c, batch, row);
+                    break;
+                case DECIMAL:
+                    // Converted to Decimal128 by the transform stage, off the extracting thread
+                    batch.setObject(c, row, rs.getBigDecimal(column));
+                    break;
+                case STRING:
+                    batch.setObject(c, row, rs.getString(column));
+                    break;
+                case BINARY:
+                    batch.setObject(c, row, rs.getBytes(column));
+                    break;
+                case ARRAY: {
+                    Array value = rs.getArray(column);
+                    batch.setObject(c, row, value == null ? null : value.getArray());
+                    break;
+                }
+                default:
+                    batch.setObject(c, row, rs.getObject(column));
+                    break;
+            }
+        }
+    }
+
+    private void readDateTime(ResultSet rs, int c, ColumnarRowBatch batch, int row) throws SQLException {
+        int column = c + 1;
+        switch (sqlTypes[c]) {
+            case Types.TIMESTAMP_WITH_TIMEZONE: {
+                OffsetDateTime value = rs.getObject(column, OffsetDateTime.class);
+                if (value == null) {
+                    batch.setNull(c, row);
+                } else {
+                    batch.setLong(c, row, value.toEpochSecond() * 1000 + value.getNano() / 1_000_000);
+                }
+                break;
+            }
+            case Types.DATE: {
+                LocalDate value = rs.getObject(column, LocalDate.class);
+                if (value == null) {
+                    batch.setNull(c, row);
+                } else {
+                    batch.setLong(c, row, value.toEpochDay() * 86_400_000L);
+                }
+                break;
+            }
+            default: {
+                LocalDateTime value = rs.getObject(column, LocalDateTime.class);
+                if (value == null) {
+                    batch.setNull(c, row);
+                } else {
+                    batch.setLong(c, row, value.toEpochSecond(ZoneOffset.UTC) * 1000 + value.getNano() / 1_000_000);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Encode one batch row at the end of the buffer. The returned document is a slice of the buffer's
+     * bytes rather than a copy, so the buffer must not be reset while the document is in use.
+     * When the buffer grows, documents already sliced keep the previous array, which is never written again.
+     */
+    RawBsonDocument encode(ColumnarRowBatch batch, int row, BasicOutputBuffer buffer) {
+        int start = buffer.getPosition();
+        BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+        writer.writeStartDocument();
+
+        if (keyIndexes.length == 1) {
+            writer.writeName("_id");
+            writeValue(writer, batch, keyIndexes[0], row);
+        } else if (keyIndexes.length > 1) {
+            writer.writeName("_id");
+            writer.writeStartDocument();
+            for (int keyIndex : keyIndexes) {
+                writer.writeName(columnNames[keyIndex]);
+                writeValue(writer, batch, keyIndex, row);
+            }
+            writer.writeEndDocument();
+        }
+
+        for (int c = 0; c < columnNames.length; c++) {
+            writer.writeName(columnNames[c]);
+            writeValue(writer, batch, c, row);
+        }
+        writer.writeEndDocument();
+        writer.close();
+        return new RawBsonDocument(buffer.getInternalBuffer(), start, buffer.getPosition() - start);
+    }
+
+    private void writeValue(BsonWriter writer, ColumnarRowBatch batch, int c, int row) {
+        if (batch.isNull(c, row)) {
+            writer.writeNull();
+            return;
+        }
+        switch (kinds[c]) {
+            case INT32:
+                writer.writeInt32((int) batch.getLong(c, row));
+                break;
+            case INT64:
+                writer.writeInt64(batch.getLong(c, row));
+                break;
+            case BOOLEAN:
+                writer.writeBoolean(batch.getLong(c, row) != 0);
+                break;
+            case DATE_TIME:
+                writer.writeDateTime(batch.getLong(c, row));
+                break;
+            case DOUBLE:
+                writer.writeDouble(batch.getDouble(c, row));
+                break;
+            case STRING:
+                writer.writeString((String) batch.getObject(c, row));
+                break;
+            case BINARY:
+                writer.writeBinaryData(new BsonBinary((byte[]) batch.getObject(c, row)));
+                break;
+            default:
+                writeObject(writer, batch.getObject(c, row));
+                break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeObject(BsonWriter writer, Object value) {
+        if (value == null) {
+            writer.writeNull();
+        } else if (value instanceof String text) {
+            writer.writeString(text);
+        } else if (value instanceof Integer number) {
+            writer.writeInt32(number);
+        } else if (value instanceof Long number) {
+            writer.writeInt64(number);
+        } else if (value instanceof Double number) {
+            writer.writeDouble(number);
+        } else if (value instanceof Boolean flag) {
+            writer.writeBoolean(flag);
+        } else if (value instanceof BigDecimal decimal) {
+            writer.writeDecimal128(new Decimal128(decimal));
+        } else if (value instanceof Decimal128 decimal) {
+            writer.writeDecimal128(decimal);
+        } else if (value instanceof Date date) {
+            writer.writeDateTime(date.getTime());
+        } else if (value instanceof LocalDateTime dateTime) {
+            writer.writeDateTime(dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000);
+        } else if (value instanceof LocalDate date) {
+            writer.writeDateTime(date.toEpochDay() * 86_400_000L);
+        } else if (value instanceof OffsetDateTime dateTime) {
+            writer.writeDateTime(dateTime.toEpochSecond() * 1000 + dateTime.getNano() / 1_000_000);
+        } else if (value instanceof byte[] bytes) {
+            writer.writeBinaryData(new BsonBinary(bytes));
+        } else if (value instanceof Binary binary) {
+            writer.writeBinaryData(new BsonBinary(binary.getType(), binary.getData()));
+        } else if (value instanceof Object[] elements) {
+            // JDBC arrays (text[], numeric[], ...) are written element by element without a List copy
+            writer.writeStartArray();
+            for (Object element : elements) {
+                writeObject(writer, element);
+            }
+            writer.writeEndArray();
+        } else if (value instanceof List<?> list) {
+            writer.writeStartArray();
+            for (Object element : list) {
+                writeObject(writer, element);
+            }
+            writer.writeEndArray();
+        } else {
+            Codec<Object> codec = (Codec<Object>) CODEC_REGISTRY.get(value.getClass());
+            codec.encode(writer, value, ENCODER_CONTEXT);
+        }
+    }
+}
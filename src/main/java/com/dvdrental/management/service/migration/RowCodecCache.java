@@ -0,0 +1,43 @@
+package com.dvdrental.management.service.migration;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled {@link RowCodec}s per table, shared by all pipelines so that each table's schema is
+ * compiled once per run rather than once per worker. A codec is recompiled when the columns
+ * of the table no longer match, e.g. after a schema change between runs.
+ */
+final class RowCodecCache {
+
+    private final Map<String, RowCodec> resultSetCodecs = new ConcurrentHashMap<>();
+    private final Map<String, RowCodec> decodedCodecs = new ConcurrentHashMap<>();
+
+    RowCodec forResultSet(String tableName, ResultSetMetaData metaData, List<String> keyColumnNames)
+            throws SQLException {
+        List<String> columnNames = new ArrayList<>(metaData.getColumnCount());
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            columnNames.add(metaData.getColumnLabel(i));
+        }
+        RowCodec codec = resultSetCodecs.get(tableName);
+        if (codec == null || !codec.hasColumns(columnNames)) {
+            codec = RowCodec.compile(metaData, keyColumnNames);
+            resultSetCodecs.put(tableName, codec);
+        }
+        return codec;
+    }
+
+    RowCodec forDecodedColumns(String tableName, List<String> columnNames, List<RowCodec.ColumnKind> kinds,
+                               List<String> keyColumnNames) {
+        RowCodec codec = decodedCodecs.get(tableName);
+        if (codec == null || !codec.hasColumns(columnNames, kinds)) {
+            codec = RowCodec.forDecodedColumns(columnNames, kinds, keyColumnNames);
+            decodedCodecs.put(tableName, codec);
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,197 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Converts ResultSet rows into encoded BSON documents in two steps: {@link #read} copies the
+ * column values of the current row into BSON-ready Java values, {@link #encode} turns those
+ * values into a document. Used where rows are combined into other documents (the merge-join
+ * transformers); the bulk copy path uses the allocation-free {@link RowCodec} instead.
+ * Column types are resolved once from the result set metadata; the primary key becomes _id
+ * (a sub-document for composite keys) so re-running a copy never creates duplicates.
+ * Timestamps without time zone are stored as UTC dates.
+ */
+public class RowDocumentMapper {
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private enum ColumnKind { INTEGER, LONG, DECIMAL, TIMESTAMP, TIMESTAMP_TZ, DATE, ARRAY, BINARY, TEXT, OTHER }
+
+    private final String[] columnNames;
+    private final ColumnKind[] columnKinds;
+    private final int[] keyIndexes;
+
+    public RowDocumentMapper(ResultSetMetaData metaData, List<String> keyColumnNames) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        columnNames = new String[columnCount];
+        columnKinds = new ColumnKind[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            columnNames[i] = metaData.getColumnLabel(i + 1);
+            columnKinds[i] = kindOf(metaData.getColumnType(i + 1));
+        }
+
+        keyIndexes = keyIndexes(keyColumnNames);
+    }
+
+    private int[] keyIndexes(List<String> keyColumnNames) {
+        int[] indexes = new int[keyColumnNames.size()];
+        for (int k = 0; k < indexes.length; k++) {
+            indexes[k] = indexOf(keyColumnNames.get(k));
+        }
+        return indexes;
+    }
+
+    private static ColumnKind kindOf(int sqlType) {
+        switch (sqlType) {
+            case Types.SMALLINT:
+            case Types.TINYINT:
+            case Types.INTEGER:
+                return ColumnKind.INTEGER;
+            case Types.BIGINT:
+                return ColumnKind.LONG;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return ColumnKind.DECIMAL;
+            case Types.TIMESTAMP:
+                return ColumnKind.TIMESTAMP;
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return ColumnKind.TIMESTAMP_TZ;
+            case Types.DATE:
+                return ColumnKind.DATE;
+            case Types.ARRAY:
+                return ColumnKind.ARRAY;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return ColumnKind.BINARY;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.OTHER:
+                // Enums such as mpaa_rating and tsvector arrive as OTHER and are kept as text
+                return ColumnKind.TEXT;
+            default:
+                return ColumnKind.OTHER;
+        }
+    }
+
+    /**
+     * Position of a column in the values returned by {@link #read}
+     */
+    int indexOf(String columnName) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(columnName)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Column not in result set: " + columnName);
+    }
+
+    /**
+     * Encode the row the ResultSet is positioned on
+     */
+    public RawBsonDocument map(ResultSet rs) throws SQLException {
+        return encode(read(rs));
+    }
+
+    /**
+     * Copy the column values of the row the ResultSet is positioned on
+     */
+    public Object[] read(ResultSet rs) throws SQLException {
+        Object[] values = new Object[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            values[i] = readValue(rs, i);
+        }
+        return values;
+    }
+
+    /**
+     * Encode values previously returned by {@link #read}
+     */
+    public RawBsonDocument encode(Object[] values) {
+        Document document = new Document();
+
+        if (keyIndexes.length == 1) {
+            document.put("_id", values[keyIndexes[0]]);
+        } else if (keyIndexes.length > 1) {
+            Document id = new Document();
+            for (int keyIndex : keyIndexes) {
+                id.put(columnNames[keyIndex], values[keyIndex]);
+            }
+            document.put("_id", id);
+        }
+
+        for (int i = 0; i < columnNames.length; i++) {
+            document.put(columnNames[i], values[i]);
+        }
+        return new RawBsonDocument(document, DOCUMENT_CODEC);
+    }
+
+    private Object readValue(ResultSet rs, int index) throws SQLException {
+        int column = index + 1;
+        switch (columnKinds[index]) {
+            case INTEGER: {
+                int value = rs.getInt(column);
+                return rs.wasNull() ? null : value;
+            }
+            case LONG: {
+                long value = rs.getLong(column);
+                return rs.wasNull() ? null : value;
+            }
+            case DECIMAL: {
+                BigDecimal value = rs.getBigDecimal(column);
+                return value == null ? null : new Decimal128(value);
+            }
+            case TIMESTAMP: {
+                LocalDateTime value = rs.getObject(column, LocalDateTime.class);
+                return value == null ? null : Date.from(value.toInstant(ZoneOffset.UTC));
+            }
+            case TIMESTAMP_TZ: {
+                OffsetDateTime value = rs.getObject(column, OffsetDateTime.class);
+                return value == null ? null : Date.from(value.toInstant());
+            }
+            case DATE: {
+                LocalDate value = rs.getObject(column, LocalDate.class);
+                return value == null ? null : Date.from(value.atStartOfDay().toInstant(ZoneOffset.UTC));
+            }
+            case ARRAY: {
+                Array value = rs.getArray(column);
+                return value == null ? null : toList((Object[]) value.getArray());
+            }
+            case BINARY: {
+                byte[] value = rs.getBytes(column);
+                return value == null ? null : new Binary(value);
+            }
+            case TEXT:
+                return rs.getString(column);
+            default:
+                return rs.getObject(column);
+        }
+    }
+
+    private static List<Object> toList(Object[] elements) {
+        List<Object> list = new ArrayList<>(elements.length);
+        for (Object element : elements) {
+            list.add(element instanceof BigDecimal decimal ? new Decimal128(decimal) : element);
+        }
+        return list;
+    }
+}
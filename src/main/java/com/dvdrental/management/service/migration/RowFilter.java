@@ -0,0 +1,14 @@
+package com.dvdrental.management.service.migration;
+
+import java.util.List;
+
+/**
+ * Extra SQL condition applied to every page of an extraction, with its bind parameters.
+ * The condition is ANDed with the keyset predicate, e.g. {@code "last_update" > ?} for incremental syncs.
+ */
+public record RowFilter(String condition, List<Object> parameters) {
+
+    public static RowFilter of(String condition, Object... parameters) {
+        return new RowFilter(condition, List.of(parameters));
+    }
+}
@@ -0,0 +1,70 @@
+package com.dvdrental.management.service.migration;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Receives rows from a table extractor one at a time, straight off the open ResultSet.
+ * Implementations must read what they need from the current row before returning;
+ * the cursor is advanced as soon as {@link #onRow(ResultSet)} completes.
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+    /**
+     * Called once per row while the ResultSet is positioned on it
+     */
+    void onRow(ResultSet rs) throws SQLException;
+
+    /**
+     * Whether the handler can take rows that the extractor decoded itself (binary COPY) through
+     * {@link #onColumns} and {@link #decodedRows} instead of {@link #onRow}
+     */
+    default boolean acceptsDecodedRows() {
+        return false;
+    }
+
+    /**
+     * Called once before the first decoded row with the column names and how each column is stored
+     */
+    default void onColumns(List<String> columnNames, List<RowCodec.ColumnKind> kinds) {
+        throw new UnsupportedOperationException("Handler does not accept decoded rows");
+    }
+
+    /**
+     * Batch the extractor appends the next decoded row to, laid out by the kinds passed to {@link #onColumns}.
+     * The batch changes after each {@link #onPage}, so it is fetched again for every row.
+     */
+    default ColumnarRowBatch decodedRows() {
+        throw new UnsupportedOperationException("Handler does not accept decoded rows");
+    }
+
+    /**
+     * Rows wanted in the next page. Extractors ask before every page, so a handler can resize
+     * pages while the table is being read; by default the page size the extraction was started with.
+     */
+    default int nextPageSize(int pageSize) {
+        return pageSize;
+    }
+
+    /**
+     * Called after each page has been fully streamed.
+     * lastKey holds the primary key values of the last row in the page, or null
+     * when the table is read through a plain cursor without a usable key.
+     */
+    default void onPage(int rowsInPage, Object[] lastKey) {
+    }
+
+    /**
+     * Called once after the last page, on the same thread that received the rows
+     */
+    default void onComplete() {
+    }
+
+    /**
+     * Called instead of {@link #onComplete()} when extraction fails part way through
+     */
+    default void onAbort(Throwable cause) {
+    }
+}
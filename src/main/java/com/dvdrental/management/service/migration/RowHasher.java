@@ -0,0 +1,182 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.BsonArray;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Row hashes that PostgreSQL and the migrated documents agree on, for verifying a copy.
+ *
+ * Both sides render a row as the same canonical text: columns in table order separated by
+ * U+001E, NULL as \N, timestamps and dates as epoch milliseconds (the precision BSON keeps),
+ * floating point rounded to 6 decimals, bytea as hex, arrays joined with U+001F and everything
+ * else in PostgreSQL's text form. The row hash is the first 64 bits of the text's md5; a set of
+ * rows hashes to the count and the exact sum of its row hashes, which does not depend on order.
+ */
+final class RowHasher {
+
+    private static final String NULL_TEXT = "\\N";
+    private static final char COLUMN_SEPARATOR = '\u001e';
+    private static final char ELEMENT_SEPARATOR = '\u001f';
+    private static final int FLOAT_SCALE = 6;
+
+    private final List<CatalogAnalyzer.ColumnInfo> columns;
+    private final MessageDigest md5;
+    private final StringBuilder text = new StringBuilder(256);
+
+    /**
+     * A hasher keeps a digest and a text buffer, so each thread needs its own
+     */
+    RowHasher(List<CatalogAnalyzer.ColumnInfo> columns) {
+        this.columns = columns;
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 not available", e);
+        }
+    }
+
+    /**
+     * SQL expression computing the row hash of the current row, as a bigint
+     */
+    static String sqlRowHash(List<CatalogAnalyzer.ColumnInfo> columns) {
+        String rowText = columns.stream()
+            .map(column -> "coalesce(" + sqlColumnText(column) + ", '" + NULL_TEXT + "')")
+            .collect(Collectors.joining(" || chr(30) || "));
+        return "('x' || left(md5(" + rowText + "), 16))::bit(64)::bigint";
+    }
+
+    private static String sqlColumnText(CatalogAnalyzer.ColumnInfo column) {
+        String name = KeysetTableExtractor.quoteIdentifier(column.name());
+        String type = column.dataType();
+        if (type.endsWith("[]")) {
+            return "array_to_string(" + name + ", chr(31), '" + NULL_TEXT + "')";
+        }
+        if (type.equals("date")) {
+            return "round(extract(epoch from " + name + "::timestamp) * 1000)::bigint::text";
+        }
+        if (type.startsWith("timestamp")) {
+            return "round(extract(epoch from date_trunc('milliseconds', " + name + ")) * 1000)::bigint::text";
+        }
+        if (type.equals("bytea")) {
+            return "encode(" + name + ", 'hex')";
+        }
+        if (isFloat(type)) {
+            return "round(" + name + "::numeric, " + FLOAT_SCALE + ")::text";
+        }
+        // Also right-trims character(n), as the ::text cast does
+        return name + "::text";
+    }
+
+    /**
+     * Row hash of a migrated document, reading the table's columns by name
+     */
+    long hash(RawBsonDocument document) {
+        text.setLength(0);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                text.append(COLUMN_SEPARATOR);
+            }
+            CatalogAnalyzer.ColumnInfo column = columns.get(i);
+            appendValue(document.get(column.name()), column.dataType());
+        }
+        byte[] digest = md5.digest(text.toString().getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private void appendValue(BsonValue value, String type) {
+        if (value == null || value.isNull()) {
+            text.append(NULL_TEXT);
+            return;
+        }
+        switch (value.getBsonType()) {
+            case INT32:
+                text.append(value.asInt32().getValue());
+                break;
+            case INT64:
+                text.append(value.asInt64().getValue());
+                break;
+            case DOUBLE:
+                text.append(BigDecimal.valueOf(value.asDouble().getValue())
+                    .setScale(FLOAT_SCALE, RoundingMode.HALF_UP).toPlainString());
+                break;
+            case DECIMAL128: {
+                BigDecimal decimal = value.asDecimal128().getValue().bigDecimalValue();
+                text.append(isFloat(type)
+                    ? decimal.setScale(FLOAT_SCALE, RoundingMode.HALF_UP).toPlainString()
+                    : decimal.toPlainString());
+                break;
+            }
+            case BOOLEAN:
+                text.append(value.asBoolean().getValue());
+                break;
+            case DATE_TIME:
+                text.append(value.asDateTime().getValue());
+                break;
+            case BINARY:
+                text.append(HexFormat.of().formatHex(value.asBinary().getData()));
+                break;
+            case STRING: {
+                String string = value.asString().getValue();
+                text.append(type.startsWith("character(") ? string.stripTrailing() : string);
+                break;
+            }
+            case ARRAY: {
+                BsonArray array = value.asArray();
+                String elementType = type.endsWith("[]") ? type.substring(0, type.length() - 2) : type;
+                for (int i = 0; i < array.size(); i++) {
+                    if (i > 0) {
+                        text.append(ELEMENT_SEPARATOR);
+                    }
+                    // Array elements keep their padding, like array_to_string
+                    BsonValue element = array.get(i);
+                    appendValue(element, element.isString() ? "text" : elementType);
+                }
+                break;
+            }
+            default:
+                text.append(value);
+                break;
+        }
+    }
+
+    private static boolean isFloat(String type) {
+        return type.equals("double precision") || type.equals("real");
+    }
+
+    /**
+     * Order-independent checksum of a set of rows: the count and the exact 128-bit sum of the row hashes
+     */
+    static final class Checksum {
+        private long rows;
+        private long high;
+        private long low;
+
+        void add(long rowHash) {
+            long sum = low + rowHash;
+            // Sign-extend the row hash into the high word and carry out of the unsigned low word
+            high += (rowHash < 0 ? -1 : 0) + (Long.compareUnsigned(sum, low) < 0 ? 1 : 0);
+            low = sum;
+            rows++;
+        }
+
+        long getRows() {
+            return rows;
+        }
+
+        BigInteger getSum() {
+            return BigInteger.valueOf(high).shiftLeft(64).add(new BigInteger(Long.toUnsignedString(low)));
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.dvdrental.management.service.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Makes every worker of a migration run read the source as of one instant.
+ *
+ * {@link #export()} opens a REPEATABLE READ transaction on a dedicated connection and exports its
+ * snapshot with pg_export_snapshot(); the transaction stays open until the snapshot is closed,
+ * which also keeps the rows it sees from being vacuumed away, so it should not outlive the run.
+ * A worker thread runs with the snapshot bound ({@link #bind}), and every extraction it makes is
+ * wrapped by {@link #inCurrentSnapshot} in its own REPEATABLE READ transaction that starts with
+ * SET TRANSACTION SNAPSHOT. All tables and all chunks of a run therefore see the same committed
+ * state, so foreign keys in the copy are consistent, while still being read in parallel.
+ * Connections opened outside the JdbcTemplate, such as the cursors of a document build, join a
+ * snapshot with {@link #useSnapshot}. Threads without a bound snapshot read outside of it as before.
+ */
+@Component
+public class SnapshotCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotCoordinator.class);
+
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-Fa-f-]+");
+
+    private static final ThreadLocal<ExportedSnapshot> BOUND_SNAPSHOT = new ThreadLocal<>();
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+
+    @Value("${migration.snapshot.enabled:true}")
+    private boolean enabled;
+
+    public SnapshotCoordinator(@Qualifier(MigrationDataSources.DATA_SOURCE) DataSource dataSource,
+                               @Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Snapshot exported by an open transaction; closing it ends the transaction
+     */
+    public static final class ExportedSnapshot implements AutoCloseable {
+        private final String id;
+        private final Connection connection;
+
+        private ExportedSnapshot(String id, Connection connection) {
+            this.id = id;
+            this.connection = connection;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        @Override
+        public void close() {
+            try (connection) {
+                connection.rollback();
+            } catch (SQLException e) {
+                logger.warn("Closing the transaction of snapshot {} failed: {}", id, e.getMessage());
+            }
+            logger.info("Released source snapshot {}", id);
+        }
+    }
+
+    /**
+     * Export a snapshot of the source for a run, or return null when snapshots are disabled
+     */
+    public ExportedSnapshot export() throws SQLException {
+        if (!enabled) {
+            return null;
+        }
+        Connection connection = dataSource.getConnection();
+        try {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setReadOnly(true);
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT pg_export_snapshot()")) {
+                rs.next();
+                String id = rs.getString(1);
+                logger.info("Exported source snapshot {}", id);
+                return new ExportedSnapshot(id, connection);
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Snapshot bound to the calling thread, or null
+     */
+    public ExportedSnapshot current() {
+        return BOUND_SNAPSHOT.get();
+    }
+
+    /**
+     * Run work on the calling thread with the snapshot bound (nothing is bound when it is null)
+     */
+    public <T> T bind(ExportedSnapshot snapshot, Supplier<T> work) {
+        ExportedSnapshot previous = BOUND_SNAPSHOT.get();
+        BOUND_SNAPSHOT.set(snapshot);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                BOUND_SNAPSHOT.set(previous);
+            } else {
+                BOUND_SNAPSHOT.remove();
+            }
+        }
+    }
+
+    /**
+     * Run reads through the migration JdbcTemplate in a transaction on the bound snapshot, or
+     * directly when no snapshot is bound. The transaction holds one connection until work returns.
+     */
+    public <T> T inCurrentSnapshot(Supplier<T> work) {
+        ExportedSnapshot snapshot = BOUND_SNAPSHOT.get();
+        if (snapshot == null) {
+            return work.get();
+        }
+        String setSnapshot = setSnapshotSql(snapshot);
+        return snapshotTransaction.execute(status -> {
+            // Must be the first statement of the transaction
+            jdbcTemplate.execute(setSnapshot);
+            return work.get();
+        });
+    }
+
+    /**
+     * Start a REPEATABLE READ transaction on the snapshot on a connection with autocommit off that
+     * has not run any statement yet, so everything it reads afterwards sees the snapshot's state
+     */
+    static void useSnapshot(Connection connection, ExportedSnapshot snapshot) throws SQLException {
+        String setSnapshot = setSnapshotSql(snapshot);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(setSnapshot);
+        }
+    }
+
+    private static String setSnapshotSql(ExportedSnapshot snapshot) {
+        if (!SNAPSHOT_ID.matcher(snapshot.id()).matches()) {
+            throw new IllegalStateException("Unexpected snapshot id: " + snapshot.id());
+        }
+        return "SET TRANSACTION SNAPSHOT '" + snapshot.id() + "'";
+    }
+}
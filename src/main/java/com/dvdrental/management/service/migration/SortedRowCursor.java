@@ -0,0 +1,149 @@
+package com.dvdrental.management.service.migration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pull-based, forward-only cursor over a query ordered by an integer key column.
+ *
+ * Each cursor holds its own connection with a server-side cursor (autocommit off, fixed fetch size),
+ * so several cursors can be advanced in lockstep to merge-join tables sorted on the same key
+ * without loading any of them into memory. Given a {@link SnapshotCoordinator} snapshot, the cursor
+ * reads in a REPEATABLE READ transaction on it, so cursors merge-joined together see the same state.
+ * Row values are converted to BSON-ready Java values by {@link RowDocumentMapper}.
+ */
+class SortedRowCursor implements AutoCloseable {
+
+    private final Connection connection;
+    private final int originalIsolation;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private RowDocumentMapper mapper;
+    private int keyIndex;
+
+    private Object[] current;
+    private long currentKey;
+    private long rowsRead;
+    private long rowsSkipped;
+
+    /**
+     * Open the cursor and position it on the first row. The query must be ordered by keyColumn.
+     * It reads on the snapshot when one is given, otherwise as of its own first statement.
+     */
+    SortedRowCursor(DataSource dataSource, String sql, String keyColumn, int fetchSize,
+                    SnapshotCoordinator.ExportedSnapshot snapshot) throws SQLException {
+        connection = dataSource.getConnection();
+        originalIsolation = connection.getTransactionIsolation();
+        try {
+            // PostgreSQL only honours fetchSize inside a transaction
+            connection.setAutoCommit(false);
+            connection.setReadOnly(true);
+            if (snapshot != null) {
+                SnapshotCoordinator.useSnapshot(connection, snapshot);
+            }
+            statement = connection.prepareStatement(sql);
+            statement.setFetchSize(fetchSize);
+            resultSet = statement.executeQuery();
+            mapper = new RowDocumentMapper(resultSet.getMetaData(), List.of());
+            keyIndex = mapper.indexOf(keyColumn);
+            advance();
+        } catch (SQLException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    boolean hasRow() {
+        return current != null;
+    }
+
+    long key() {
+        return currentKey;
+    }
+
+    /**
+     * Values of the current row, indexed as returned by {@link #column(String)}
+     */
+    Object[] row() {
+        return current;
+    }
+
+    int column(String columnName) {
+        return mapper.indexOf(columnName);
+    }
+
+    void advance() throws SQLException {
+        if (resultSet.next()) {
+            current = mapper.read(resultSet);
+            Object key = current[keyIndex];
+            if (key == null) {
+                throw new IllegalStateException("Null merge key in column " + keyIndex + " of sorted cursor");
+            }
+            currentKey = ((Number) key).longValue();
+            rowsRead++;
+        } else {
+            current = null;
+        }
+    }
+
+    /**
+     * Skip rows whose key sorts before the given key (rows with no partner on the driving side).
+     * Returns true when the cursor is now on a row with exactly that key.
+     */
+    boolean skipTo(long key) throws SQLException {
+        while (current != null && currentKey < key) {
+            rowsSkipped++;
+            advance();
+        }
+        return current != null && currentKey == key;
+    }
+
+    /**
+     * Skip to the given key, then return and consume all rows carrying exactly that key
+     */
+    List<Object[]> takeRowsFor(long key) throws SQLException {
+        skipTo(key);
+        List<Object[]> rows = new ArrayList<>();
+        while (current != null && currentKey == key) {
+            rows.add(current);
+            advance();
+        }
+        return rows;
+    }
+
+    long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Rows passed over by {@link #skipTo} because no driving row had their key
+     */
+    long getRowsSkipped() {
+        return rowsSkipped;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+            connection.setReadOnly(false);
+            connection.setTransactionIsolation(originalIsolation);
+        } finally {
+            connection.close();
+        }
+    }
+}
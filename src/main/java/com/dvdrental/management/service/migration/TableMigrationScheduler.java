@@ -0,0 +1,133 @@
+package com.dvdrental.management.service.migration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs one task per table on a bounded worker pool, following a {@link ForeignKeyGraph}.
+ * A table is submitted as soon as all of its parents have finished, so independent
+ * branches of the schema migrate concurrently and total time tracks the longest
+ * dependency chain rather than the sum of all tables.
+ */
+@Component
+public class TableMigrationScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(TableMigrationScheduler.class);
+
+    @Value("${migration.scheduler.worker-threads:0}")
+    private int configuredWorkerThreads;
+
+    /**
+     * Outcome of a scheduled run: per-table results, per-table failures and wall-clock time
+     */
+    public record ScheduleResult<R>(Map<String, R> results, Map<String, Throwable> failures,
+                                    List<String> completionOrder, long elapsedMillis) {}
+
+    /**
+     * Number of tables migrated concurrently; defaults to the number of available cores
+     */
+    public int getWorkerThreads() {
+        return configuredWorkerThreads > 0
+            ? configuredWorkerThreads
+            : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Run the task for every table in the graph, parents before children.
+     * A failing table does not block its children; the failure is reported in the result.
+     */
+    public <R> ScheduleResult<R> execute(ForeignKeyGraph graph, Function<String, R> task) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        int workerThreads = Math.max(1, Math.min(getWorkerThreads(), graph.getTables().size()));
+
+        Map<String, Integer> unfinishedParents = new HashMap<>();
+        PriorityQueue<String> ready = new PriorityQueue<>();
+        for (String table : graph.getTables()) {
+            int count = graph.getParents(table).size();
+            unfinishedParents.put(table, count);
+            if (count == 0) {
+                ready.add(table);
+            }
+        }
+
+        Map<String, R> results = new ConcurrentHashMap<>();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        List<String> completionOrder = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workerThreads, namedThreadFactory("migration-table-"));
+        CompletionService<String> completion = new ExecutorCompletionService<>(pool);
+        int running = 0;
+
+        try {
+            while (completionOrder.size() < graph.getTables().size()) {
+                while (!ready.isEmpty()) {
+                    String table = ready.poll();
+                    unfinishedParents.remove(table);
+                    completion.submit(() -> {
+                        try {
+                            R result = task.apply(table);
+                            if (result != null) {
+                                results.put(table, result);
+                            }
+                        } catch (RuntimeException e) {
+                            failures.put(table, e);
+                        }
+                        return table;
+                    });
+                    running++;
+                }
+
+                if (running == 0) {
+                    String released = ForeignKeyGraph.breakCycle(unfinishedParents);
+                    logger.warn("Foreign-key cycle detected, releasing table {} before its parents", released);
+                    unfinishedParents.put(released, 0);
+                    ready.add(released);
+                    continue;
+                }
+
+                String finished = takeCompleted(completion);
+                running--;
+                completionOrder.add(finished);
+
+                for (String child : graph.getChildren(finished)) {
+                    Integer count = unfinishedParents.get(child);
+                    if (count != null && count > 0) {
+                        unfinishedParents.put(child, --count);
+                        if (count == 0) {
+                            ready.add(child);
+                        }
+                    }
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new ScheduleResult<>(results, failures, completionOrder, System.currentTimeMillis() - start);
+    }
+
+    private static String takeCompleted(CompletionService<String> completion) throws InterruptedException {
+        try {
+            return completion.take().get();
+        } catch (ExecutionException e) {
+            // Tasks catch their own failures, so this only happens on errors such as OutOfMemoryError
+            throw new IllegalStateException("Table migration worker failed", e.getCause());
+        }
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
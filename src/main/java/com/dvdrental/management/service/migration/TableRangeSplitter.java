@@ -0,0 +1,91 @@
+package com.dvdrental.management.service.migration;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits the primary-key space of a large table into contiguous ranges so that
+ * several workers can extract the same table at once.
+ * Only tables with a single integer primary key are split; everything else is
+ * extracted by a single worker.
+ */
+@Component
+public class TableRangeSplitter {
+
+    private static final Set<String> SPLITTABLE_KEY_TYPES = Set.of("smallint", "integer", "bigint");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${migration.split.min-rows:10000}")
+    private long minRowsToSplit;
+
+    @Value("${migration.split.max-chunks:0}")
+    private int maxChunks;
+
+    public TableRangeSplitter(@Qualifier(MigrationDataSources.JDBC_TEMPLATE) JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Number of chunks a table of the given size should be split into; 1 means no split
+     */
+    public int chunkCountFor(long estimatedRows) {
+        if (estimatedRows < minRowsToSplit) {
+            return 1;
+        }
+        int limit = maxChunks > 0 ? maxChunks : Runtime.getRuntime().availableProcessors();
+        long byRows = Math.max(1, estimatedRows / Math.max(1, minRowsToSplit / 2));
+        return (int) Math.max(1, Math.min(limit, byRows));
+    }
+
+    public boolean isSplittable(List<KeysetTableExtractor.KeyColumn> keyColumns) {
+        return keyColumns.size() == 1 && SPLITTABLE_KEY_TYPES.contains(keyColumns.get(0).sqlType());
+    }
+
+    /**
+     * Split the table's key space between min(pk) and max(pk) into at most the requested number of ranges.
+     * Returns an empty list when the table cannot be split or is empty.
+     */
+    public List<KeyRange> split(String tableName, List<KeysetTableExtractor.KeyColumn> keyColumns, int chunks) {
+        if (chunks < 2 || !isSplittable(keyColumns)) {
+            return Collections.emptyList();
+        }
+
+        String keyColumn = KeysetTableExtractor.quoteIdentifier(keyColumns.get(0).name());
+        long[] bounds = jdbcTemplate.query(
+            "SELECT min(" + keyColumn + "), max(" + keyColumn + ") FROM " + KeysetTableExtractor.quoteIdentifier(tableName),
+            rs -> {
+                if (!rs.next() || rs.getObject(1) == null) {
+                    return null;
+                }
+                return new long[] { rs.getLong(1), rs.getLong(2) };
+            });
+        if (bounds == null) {
+            return Collections.emptyList();
+        }
+
+        return splitKeySpace(bounds[0], bounds[1], chunks);
+    }
+
+    static List<KeyRange> splitKeySpace(long min, long max, int chunks) {
+        long width = max - min + 1;
+        int rangeCount = (int) Math.min(chunks, width);
+        long step = (width + rangeCount - 1) / rangeCount;
+
+        List<KeyRange> ranges = new ArrayList<>(rangeCount);
+        long lower = min;
+        for (int chunkId = 0; chunkId < rangeCount && lower <= max; chunkId++) {
+            long upper = Math.min(max, lower + step - 1);
+            ranges.add(new KeyRange(chunkId, lower, upper));
+            lower = upper + 1;
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,251 @@
+package com.dvdrental.management.service.migration;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Decodes wal2json (format-version 2) messages into {@link DocumentChange}s.
+ *
+ * Every message is one JSON object: B/C mark transaction boundaries, I/U/D carry a row change.
+ * Column values are converted the same way {@link RowDocumentMapper} converts ResultSet values,
+ * so a document written by CDC is identical to one written by a full backup of the same row.
+ */
+public class WalChangeDecoder {
+
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    private static final DateTimeFormatter TIMESTAMP = new DateTimeFormatterBuilder()
+        .appendPattern("yyyy-MM-dd HH:mm:ss")
+        .optionalStart().appendFraction(ChronoField.NANO_OF_SECOND, 0, 9, true).optionalEnd()
+        .toFormatter();
+
+    private static final DateTimeFormatter TIMESTAMP_TZ = new DateTimeFormatterBuilder()
+        .append(TIMESTAMP)
+        .appendPattern("[XXX][XX][X]")
+        .toFormatter();
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private final Function<String, List<String>> keyColumnsByTable;
+
+    /**
+     * Decoded message. changes is empty for transaction boundaries and for tables without a primary key;
+     * commitTime is only set on commits.
+     */
+    public record WalEvent(char action, String table, List<DocumentChange> changes, OffsetDateTime commitTime) {
+
+        public boolean isCommit() {
+            return action == 'C';
+        }
+    }
+
+    /**
+     * keyColumnsByTable returns the primary key column names of a table, empty when it has none
+     */
+    public WalChangeDecoder(Function<String, List<String>> keyColumnsByTable) {
+        this.keyColumnsByTable = keyColumnsByTable;
+    }
+
+    public WalEvent decode(ByteBuffer buffer) throws IOException {
+        int offset = buffer.arrayOffset() + buffer.position();
+        return decode(new String(buffer.array(), offset, buffer.remaining(), StandardCharsets.UTF_8));
+    }
+
+    public WalEvent decode(String message) throws IOException {
+        JsonNode root = objectMapper.readTree(message);
+        char action = root.path("action").asText("?").charAt(0);
+
+        switch (action) {
+            case 'B':
+                return new WalEvent(action, null, List.of(), null);
+            case 'C':
+                return new WalEvent(action, null, List.of(), parseCommitTime(root.path("timestamp")));
+            case 'I':
+            case 'U':
+            case 'D':
+                String table = root.path("table").asText();
+                List<String> keyColumns = keyColumnsByTable.apply(table);
+                if (keyColumns.isEmpty()) {
+                    // Without a key there is nothing to address the document by
+                    return new WalEvent(action, table, List.of(), null);
+                }
+                return new WalEvent(action, table, toChanges(action, root, keyColumns), null);
+            default:
+                // Truncate and message records are not replicated
+                return new WalEvent(action, root.path("table").asText(null), List.of(), null);
+        }
+    }
+
+    private static List<DocumentChange> toChanges(char action, JsonNode root, List<String> keyColumns) {
+        if (action == 'D') {
+            return List.of(DocumentChange.delete(idOf(toDocument(root.path("identity")), keyColumns)));
+        }
+
+        Document row = toDocument(root.path("columns"));
+        Object id = idOf(row, keyColumns);
+        Document document = new Document("_id", id);
+        document.putAll(row);
+        DocumentChange upsert = DocumentChange.upsert(id, new RawBsonDocument(document, DOCUMENT_CODEC));
+
+        // An update only carries identity when it changed the primary key; the old document must go
+        JsonNode identity = root.path("identity");
+        if (action == 'U' && identity.isArray() && !identity.isEmpty()) {
+            Object oldId = idOf(toDocument(identity), keyColumns);
+            if (!oldId.equals(id)) {
+                return List.of(DocumentChange.delete(oldId), upsert);
+            }
+        }
+        return List.of(upsert);
+    }
+
+    private static Object idOf(Document row, List<String> keyColumns) {
+        if (keyColumns.size() == 1) {
+            return row.get(keyColumns.get(0));
+        }
+        Document id = new Document();
+        for (String keyColumn : keyColumns) {
+            id.put(keyColumn, row.get(keyColumn));
+        }
+        return id;
+    }
+
+    private static Document toDocument(JsonNode columns) {
+        Document document = new Document();
+        for (JsonNode column : columns) {
+            document.put(column.path("name").asText(),
+                convert(column.path("type").asText(), column.path("value")));
+        }
+        return document;
+    }
+
+    private static Object convert(String type, JsonNode value) {
+        if (value.isMissingNode() || value.isNull()) {
+            return null;
+        }
+        if (value.isBoolean()) {
+            return value.booleanValue();
+        }
+        if (value.isNumber()) {
+            if (type.startsWith("numeric") || type.startsWith("decimal") || type.equals("money")) {
+                return new Decimal128(value.decimalValue());
+            }
+            if (value.isInt()) {
+                return value.intValue();
+            }
+            if (value.isIntegralNumber()) {
+                return value.longValue();
+            }
+            return value.doubleValue();
+        }
+
+        String text = value.asText();
+        if (type.endsWith("[]")) {
+            return parseArray(type.substring(0, type.length() - 2), text);
+        }
+        return convertText(type, text);
+    }
+
+    private static Object convertText(String type, String text) {
+        // "timestamp without time zone" also starts with "timestamp with", so match the suffix
+        if (type.startsWith("timestamp") && type.endsWith(" with time zone")) {
+            return Date.from(OffsetDateTime.parse(text, TIMESTAMP_TZ).toInstant());
+        }
+        if (type.startsWith("timestamp")) {
+            return Date.from(LocalDateTime.parse(text, TIMESTAMP).toInstant(ZoneOffset.UTC));
+        }
+        if (type.equals("date")) {
+            return Date.from(LocalDate.parse(text).atStartOfDay().toInstant(ZoneOffset.UTC));
+        }
+        if (type.equals("bytea") && text.startsWith("\\x")) {
+            return new Binary(HexFormat.of().parseHex(text, 2, text.length()));
+        }
+        // Text, enums such as mpaa_rating and tsvector are kept as their PostgreSQL text form
+        return text;
+    }
+
+    /**
+     * Parse a one-dimensional PostgreSQL array literal such as {a,"b c",NULL}
+     */
+    static List<Object> parseArray(String elementType, String literal) {
+        List<Object> elements = new ArrayList<>();
+        if (literal.length() < 2 || literal.equals("{}")) {
+            return elements;
+        }
+
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        for (int i = 1; i < literal.length() - 1; i++) {
+            char c = literal.charAt(i);
+            if (quoted) {
+                if (c == '\\') {
+                    current.append(literal.charAt(++i));
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                elements.add(arrayElement(elementType, current.toString(), wasQuoted));
+                current.setLength(0);
+                wasQuoted = false;
+            } else {
+                current.append(c);
+            }
+        }
+        elements.add(arrayElement(elementType, current.toString(), wasQuoted));
+        return elements;
+    }
+
+    private static Object arrayElement(String elementType, String text, boolean quoted) {
+        if (!quoted && text.equals("NULL")) {
+            return null;
+        }
+        switch (elementType) {
+            case "smallint":
+            case "integer":
+                return Integer.valueOf(text);
+            case "bigint":
+                return Long.valueOf(text);
+            default:
+                if (elementType.startsWith("numeric")) {
+                    return new Decimal128(new BigDecimal(text));
+                }
+                return convertText(elementType, text);
+        }
+    }
+
+    private static OffsetDateTime parseCommitTime(JsonNode timestamp) {
+        if (timestamp.isMissingNode() || timestamp.isNull()) {
+            return null;
+        }
+        return OffsetDateTime.parse(timestamp.asText(), TIMESTAMP_TZ);
+    }
+}
@@ -0,0 +1,92 @@
+package com.dvdrental.management.service.migration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveBatchSizerTest {
+
+    private static final long TARGET_MILLIS = 20;
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long NO_BYTE_LIMIT = Long.MAX_VALUE;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void fullPagesWithinTargetGrowBySteps() {
+        AdaptiveBatchSizer sizer = sizer(1000, 100, 1200, 100, NO_BYTE_LIMIT);
+
+        sizer.onAcknowledged(1000, 1000, FAST);
+        assertThat(sizer.currentSize()).isEqualTo(1100);
+
+        // A partial page says nothing about whether a larger one would fit
+        sizer.onAcknowledged(500, 500, FAST);
+        assertThat(sizer.currentSize()).isEqualTo(1100);
+
+        sizer.onAcknowledged(1100, 1100, FAST);
+        sizer.onAcknowledged(1200, 1200, FAST);
+        assertThat(sizer.currentSize()).isEqualTo(1200);
+        assertThat(sizer.toMap()).containsEntry("increases", 2L).containsEntry("decreases", 0L);
+    }
+
+    @Test
+    void pagesOverTargetHalveOncePerTargetInterval() {
+        AdaptiveBatchSizer sizer = sizer(1000, 100, 2000, 100, NO_BYTE_LIMIT);
+
+        sizer.onAcknowledged(1000, 1000, SLOW);
+        advanceClock(TARGET_MILLIS - 1);
+        sizer.onAcknowledged(1000, 1000, SLOW);
+        assertThat(sizer.currentSize()).isEqualTo(500);
+
+        advanceClock(1);
+        sizer.onAcknowledged(500, 500, SLOW);
+        assertThat(sizer.currentSize()).isEqualTo(250);
+        assertThat(sizer.toMap()).containsEntry("decreases", 2L);
+    }
+
+    @Test
+    void failuresBackOffButNotBelowTheMinimum() {
+        AdaptiveBatchSizer sizer = sizer(1000, 400, 2000, 100, NO_BYTE_LIMIT);
+
+        sizer.onFailure();
+        assertThat(sizer.currentSize()).isEqualTo(500);
+
+        advanceClock(TARGET_MILLIS);
+        sizer.onFailure();
+        assertThat(sizer.currentSize()).isEqualTo(400);
+
+        advanceClock(TARGET_MILLIS);
+        sizer.onFailure();
+        assertThat(sizer.currentSize()).isEqualTo(400);
+        assertThat(sizer.toMap()).containsEntry("decreases", 2L);
+    }
+
+    @Test
+    void initialSizeIsClampedToTheBounds() {
+        assertThat(sizer(10, 100, 1000, 10, NO_BYTE_LIMIT).currentSize()).isEqualTo(100);
+        assertThat(sizer(5000, 100, 1000, 10, NO_BYTE_LIMIT).currentSize()).isEqualTo(1000);
+    }
+
+    @Test
+    void wideRowsAreCappedByThePageByteBudget() {
+        AdaptiveBatchSizer sizer = sizer(1000, 10, 2000, 100, 100_000);
+
+        sizer.onAcknowledged(1000, 1_000_000, FAST);
+
+        assertThat(sizer.currentSize()).isEqualTo(100);
+        assertThat(sizer.toMap()).containsEntry("averageRowBytes", 1000L);
+    }
+
+    private AdaptiveBatchSizer sizer(int initialSize, int minSize, int maxSize, int increaseStep, long maxPageBytes) {
+        return new AdaptiveBatchSizer(initialSize, minSize, maxSize, increaseStep, TARGET_MILLIS, maxPageBytes,
+            clock::get);
+    }
+
+    private void advanceClock(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
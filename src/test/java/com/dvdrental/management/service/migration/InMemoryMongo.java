@@ -0,0 +1,245 @@
+package com.dvdrental.management.service.migration;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Embedded stand-in for a mongod, for tests of {@link MongoDocumentSink}: the driver interfaces
+ * the sink calls are backed by in-memory collections keyed by _id. Filters are evaluated for
+ * equality, $gte/$lte on numbers and $and, which covers what the sink sends.
+ */
+@SuppressWarnings("unchecked")
+class InMemoryMongo {
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private final Map<String, Map<BsonValue, BsonDocument>> collections = new LinkedHashMap<>();
+    private final Queue<MongoException> pendingFailures = new ArrayDeque<>();
+    private final List<Boolean> bulkWriteOrdering = new ArrayList<>();
+    private final MongoClient client = mock(MongoClient.class);
+
+    InMemoryMongo(String databaseName) {
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(client.getDatabase(databaseName)).thenReturn(database);
+        when(database.getName()).thenReturn(databaseName);
+        when(database.getCollection(anyString(), eq(RawBsonDocument.class)))
+            .thenAnswer(invocation -> rawCollection(invocation.getArgument(0)));
+        when(database.getCollection(anyString()))
+            .thenAnswer(invocation -> documentCollection(invocation.getArgument(0)));
+        when(database.listCollectionNames()).thenAnswer(invocation -> iterable(collectionNames()));
+    }
+
+    MongoClient client() {
+        return client;
+    }
+
+    /**
+     * Make the next write fail with the given error before touching any document
+     */
+    synchronized void failNextWrite(MongoException failure) {
+        pendingFailures.add(failure);
+    }
+
+    synchronized Map<BsonValue, BsonDocument> documents(String collection) {
+        return new LinkedHashMap<>(collections.getOrDefault(collection, Map.of()));
+    }
+
+    synchronized List<Boolean> bulkWriteOrdering() {
+        return new ArrayList<>(bulkWriteOrdering);
+    }
+
+    private synchronized List<String> collectionNames() {
+        return new ArrayList<>(collections.keySet());
+    }
+
+    private MongoCollection<RawBsonDocument> rawCollection(String name) {
+        MongoCollection<RawBsonDocument> collection = mock(MongoCollection.class);
+        when(collection.insertMany(anyList(), any(InsertManyOptions.class)))
+            .thenAnswer(invocation -> insertMany(name, invocation.getArgument(0)));
+        when(collection.bulkWrite(anyList(), any(BulkWriteOptions.class)))
+            .thenAnswer(invocation -> bulkWrite(name, invocation.getArgument(0), invocation.getArgument(1)));
+        when(collection.find(any(Bson.class)))
+            .thenAnswer(invocation -> find(name, invocation.getArgument(0)));
+        return collection;
+    }
+
+    private MongoCollection<Document> documentCollection(String name) {
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        doAnswer(invocation -> {
+            synchronized (this) {
+                collections.remove(name);
+            }
+            return null;
+        }).when(collection).drop();
+        when(collection.estimatedDocumentCount()).thenAnswer(invocation -> (long) documents(name).size());
+        return collection;
+    }
+
+    private synchronized Object insertMany(String name, List<RawBsonDocument> documents) {
+        throwPendingFailure();
+        Map<BsonValue, BsonDocument> target = collections.computeIfAbsent(name, key -> new LinkedHashMap<>());
+        List<BulkWriteError> errors = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            RawBsonDocument document = documents.get(i);
+            if (target.putIfAbsent(document.get("_id"), document) != null) {
+                errors.add(new BulkWriteError(DUPLICATE_KEY_ERROR, "E11000 duplicate key error", new BsonDocument(), i));
+            }
+        }
+        if (!errors.isEmpty()) {
+            BulkWriteResult result = BulkWriteResult.acknowledged(documents.size() - errors.size(), 0, 0, 0, List.of());
+            throw new MongoBulkWriteException(result, errors, null, new ServerAddress());
+        }
+        return null;
+    }
+
+    private synchronized BulkWriteResult bulkWrite(String name, List<WriteModel<RawBsonDocument>> operations,
+                                                   BulkWriteOptions options) {
+        throwPendingFailure();
+        bulkWriteOrdering.add(options.isOrdered());
+        Map<BsonValue, BsonDocument> target = collections.computeIfAbsent(name, key -> new LinkedHashMap<>());
+        int upserted = 0;
+        int removed = 0;
+        for (WriteModel<RawBsonDocument> operation : operations) {
+            if (operation instanceof ReplaceOneModel<RawBsonDocument> replace) {
+                RawBsonDocument replacement = replace.getReplacement();
+                if (target.put(replacement.get("_id"), replacement) == null) {
+                    upserted++;
+                }
+            } else if (operation instanceof DeleteOneModel<RawBsonDocument> delete) {
+                BsonDocument filter = render(delete.getFilter());
+                BsonValue match = target.values().stream()
+                    .filter(document -> matches(document, filter))
+                    .map(document -> document.get("_id"))
+                    .findFirst().orElse(null);
+                if (match != null) {
+                    target.remove(match);
+                    removed++;
+                }
+            } else if (operation instanceof DeleteManyModel<RawBsonDocument> delete) {
+                BsonDocument filter = render(delete.getFilter());
+                int before = target.size();
+                target.values().removeIf(document -> matches(document, filter));
+                removed += before - target.size();
+            } else {
+                throw new UnsupportedOperationException("Not supported by the stand-in: " + operation);
+            }
+        }
+        return BulkWriteResult.acknowledged(0, 0, removed, 0, List.of());
+    }
+
+    private FindIterable<RawBsonDocument> find(String name, Bson filter) {
+        BsonDocument rendered = render(filter);
+        List<RawBsonDocument> found = new ArrayList<>();
+        for (BsonDocument document : documents(name).values()) {
+            if (matches(document, rendered)) {
+                found.add((RawBsonDocument) document);
+            }
+        }
+        FindIterable<RawBsonDocument> results = mock(FindIterable.class);
+        when(results.batchSize(anyInt())).thenReturn(results);
+        doAnswer(invocation -> {
+            found.forEach(invocation.<Consumer<RawBsonDocument>>getArgument(0));
+            return null;
+        }).when(results).forEach(any());
+        return results;
+    }
+
+    private void throwPendingFailure() {
+        MongoException failure = pendingFailures.poll();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static BsonDocument render(Bson filter) {
+        return filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    private static boolean matches(BsonDocument document, BsonDocument filter) {
+        for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+            if (condition.getKey().equals("$and")) {
+                for (BsonValue clause : condition.getValue().asArray()) {
+                    if (!matches(document, clause.asDocument())) {
+                        return false;
+                    }
+                }
+            } else if (!matchesField(document.get(condition.getKey()), condition.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesField(BsonValue actual, BsonValue expected) {
+        if (!expected.isDocument() || !expected.asDocument().keySet().stream().allMatch(key -> key.startsWith("$"))) {
+            return expected.equals(actual);
+        }
+        if (actual == null || !actual.isNumber()) {
+            return false;
+        }
+        for (Map.Entry<String, BsonValue> operator : expected.asDocument().entrySet()) {
+            int comparison = Double.compare(actual.asNumber().doubleValue(), operator.getValue().asNumber().doubleValue());
+            boolean holds = switch (operator.getKey()) {
+                case "$gte" -> comparison >= 0;
+                case "$lte" -> comparison <= 0;
+                default -> throw new UnsupportedOperationException("Not supported by the stand-in: " + operator.getKey());
+            };
+            if (!holds) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static <T> MongoIterable<T> iterable(List<T> values) {
+        MongoIterable<T> iterable = mock(MongoIterable.class);
+        when(iterable.iterator()).thenAnswer(invocation -> cursor(values.iterator()));
+        return iterable;
+    }
+
+    private static <T> MongoCursor<T> cursor(Iterator<T> values) {
+        MongoCursor<T> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> values.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> values.next());
+        return cursor;
+    }
+}
@@ -0,0 +1,83 @@
+package com.dvdrental.management.service.migration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MigrationCostEstimatorTest {
+
+    private MigrationCostEstimator estimator;
+
+    @BeforeEach
+    void setUp() {
+        estimator = new MigrationCostEstimator(null, null, null, null, null, null, new MigrationThrottle(4, 0, 6));
+        ReflectionTestUtils.setField(estimator, "sourcePoolSize", 6);
+        ReflectionTestUtils.setField(estimator, "maxInFlightBatches", 4);
+        ReflectionTestUtils.setField(estimator, "queueCapacity", 4);
+        ReflectionTestUtils.setField(estimator, "minBatchSize", 100);
+        ReflectionTestUtils.setField(estimator, "maxBatchSize", 20000);
+        ReflectionTestUtils.setField(estimator, "batchMaxBytes", 8388608L);
+        ReflectionTestUtils.setField(estimator, "batchTargetLatencyMillis", 500L);
+        ReflectionTestUtils.setField(estimator, "maxCalibrationRows", 20000);
+    }
+
+    @Test
+    void rejectsCalibrationSamplesAboveTheConfiguredMaximum() {
+        estimator.checkCalibrationRows(null);
+        estimator.checkCalibrationRows(20000);
+
+        assertThatThrownBy(() -> estimator.checkCalibrationRows(500_000_000))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("20000");
+        assertThatThrownBy(() -> estimator.estimate(null, 20001, false))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void simulatesEveryTableOfAForeignKeyCycle() {
+        // store ↔ staff as in dvdrental, with customer and payment hanging off the cycle
+        ForeignKeyGraph graph = ForeignKeyGraph.fromDependencies(Map.of(
+            "address", List.of(),
+            "store", List.of("address", "staff"),
+            "staff", List.of("address", "store"),
+            "customer", List.of("address", "store"),
+            "payment", List.of("customer", "staff")));
+        Map<String, MigrationCostEstimator.TableCost> costs = new TreeMap<>();
+        for (String table : graph.getTables()) {
+            costs.put(table, cost(table, 1000));
+        }
+
+        MigrationCostEstimator.Projection projection = estimator.simulate(graph, costs, 1);
+
+        assertThat(projection.tableNanos()).containsOnlyKeys(graph.getTables());
+        // One worker runs the tables back to back, so the makespan covers all five of them
+        long sum = projection.tableNanos().values().stream().mapToLong(Long::longValue).sum();
+        assertThat(projection.durationNanos()).isEqualTo(sum);
+    }
+
+    @Test
+    void runsIndependentTablesInParallel() {
+        ForeignKeyGraph graph = ForeignKeyGraph.fromDependencies(Map.of(
+            "actor", List.of(),
+            "category", List.of()));
+        Map<String, MigrationCostEstimator.TableCost> costs = Map.of(
+            "actor", cost("actor", 1000),
+            "category", cost("category", 1000));
+
+        long oneWorker = estimator.simulate(graph, costs, 1).durationNanos();
+        long twoWorkers = estimator.simulate(graph, costs, 2).durationNanos();
+
+        assertThat(twoWorkers).isLessThan(oneWorker);
+    }
+
+    private static MigrationCostEstimator.TableCost cost(String table, long rows) {
+        return new MigrationCostEstimator.TableCost(table, rows, 1, 100, 1000, 500, 2000, 200, null);
+    }
+}
@@ -0,0 +1,57 @@
+package com.dvdrental.management.service.migration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MigrationThrottleTest {
+
+    @Test
+    void streamLimitMustLeaveReservedPoolConnections() {
+        MigrationThrottle throttle = new MigrationThrottle(4, 0, 6);
+
+        assertThatThrownBy(() -> throttle.configure(0, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> throttle.configure(5, null)).isInstanceOf(IllegalArgumentException.class);
+        throttle.configure(2, null);
+
+        assertThat(throttle.getMaxConcurrentStreams()).isEqualTo(2);
+        assertThat(throttle.getMaxStreamsForPool()).isEqualTo(4);
+    }
+
+    @Test
+    void configuredStreamsAreClampedToThePool() {
+        assertThat(new MigrationThrottle(0, 0, 6).getMaxConcurrentStreams()).isEqualTo(1);
+        assertThat(new MigrationThrottle(10, 0, 6).getMaxConcurrentStreams()).isEqualTo(4);
+        assertThat(new MigrationThrottle(4, 0, 2).getMaxConcurrentStreams()).isEqualTo(1);
+    }
+
+    @Test
+    void slotsForOneBuildAreTakenTogether() throws Exception {
+        MigrationThrottle throttle = new MigrationThrottle(4, 0, 6);
+        throttle.acquireStream();
+
+        CompletableFuture<Void> build = CompletableFuture.runAsync(() -> throttle.acquireStreams(4));
+        awaitWaitingStreams(throttle, 4);
+        assertThat(build).isNotDone();
+        assertThat(throttle.toMap()).containsEntry("activeStreams", 1);
+
+        throttle.releaseStream();
+        build.get(5, TimeUnit.SECONDS);
+        assertThat(throttle.toMap()).containsEntry("activeStreams", 4).containsEntry("waitingStreams", 0);
+
+        throttle.releaseStreams(4);
+        assertThat(throttle.toMap()).containsEntry("activeStreams", 0);
+    }
+
+    private static void awaitWaitingStreams(MigrationThrottle throttle, int streams) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!throttle.toMap().get("waitingStreams").equals(streams)) {
+            assertThat(System.nanoTime()).as("waiting for %d streams to queue", streams).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
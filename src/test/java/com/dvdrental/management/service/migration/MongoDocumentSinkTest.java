@@ -0,0 +1,146 @@
+package com.dvdrental.management.service.migration;
+
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.Filters;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MongoDocumentSinkTest {
+
+    private static final String COLLECTION = "films";
+
+    private InMemoryMongo mongo;
+    private SimpleMeterRegistry registry;
+    private MongoDocumentSink sink;
+
+    @BeforeEach
+    void setUp() {
+        mongo = new InMemoryMongo("dvdrental");
+        registry = new SimpleMeterRegistry();
+        sink = new MongoDocumentSink(mongo.client(), "dvdrental", 2, 2, 0, new MigrationMetrics(registry));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sink.close();
+    }
+
+    @Test
+    void insertSkipsDocumentsAlreadyPresent() {
+        sink.writeBatch(COLLECTION, List.of(film(1, "first"), film(2, "first")), DocumentSink.WriteMode.INSERT).join();
+        sink.writeBatch(COLLECTION, List.of(film(2, "second"), film(3, "second")), DocumentSink.WriteMode.INSERT).join();
+
+        Map<BsonValue, BsonDocument> documents = mongo.documents(COLLECTION);
+        assertThat(documents).containsOnlyKeys(id(1), id(2), id(3));
+        assertThat(documents.get(id(2)).getString("title").getValue()).isEqualTo("first");
+    }
+
+    @Test
+    void upsertReplacesExistingDocuments() {
+        sink.writeBatch(COLLECTION, List.of(film(1, "first")), DocumentSink.WriteMode.INSERT).join();
+        sink.writeBatch(COLLECTION, List.of(film(1, "second"), film(2, "second")), DocumentSink.WriteMode.UPSERT).join();
+
+        Map<BsonValue, BsonDocument> documents = mongo.documents(COLLECTION);
+        assertThat(documents).containsOnlyKeys(id(1), id(2));
+        assertThat(documents.get(id(1)).getString("title").getValue()).isEqualTo("second");
+    }
+
+    @Test
+    void transientErrorsAreRetriedAndCounted() {
+        mongo.failNextWrite(new MongoSocketException("connection reset", new ServerAddress()));
+
+        sink.writeBatch(COLLECTION, List.of(film(1, "first")), DocumentSink.WriteMode.INSERT).join();
+
+        assertThat(mongo.documents(COLLECTION)).containsOnlyKeys(id(1));
+        assertThat(registry.get("migration.sink.retries").tag("collection", COLLECTION).counter().count())
+            .isEqualTo(1.0);
+    }
+
+    @Test
+    void otherErrorsFailTheBatchWithoutRetry() {
+        mongo.failNextWrite(new MongoException("document failed validation"));
+
+        assertThatThrownBy(() -> sink.writeBatch(COLLECTION, List.of(film(1, "first")),
+            DocumentSink.WriteMode.INSERT).join())
+            .isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(MongoException.class);
+        assertThat(mongo.documents(COLLECTION)).isEmpty();
+        assertThat(registry.find("migration.sink.retries").counter()).isNull();
+    }
+
+    @Test
+    void changesAreAppliedInOrder() {
+        sink.writeBatch(COLLECTION, List.of(film(1, "first"), film(2, "first")), DocumentSink.WriteMode.INSERT).join();
+
+        sink.applyChanges(COLLECTION, List.of(
+            DocumentChange.upsert(1, film(1, "second")),
+            DocumentChange.delete(1),
+            DocumentChange.upsert(1, film(1, "third")),
+            DocumentChange.delete(2))).join();
+
+        Map<BsonValue, BsonDocument> documents = mongo.documents(COLLECTION);
+        assertThat(documents).containsOnlyKeys(id(1));
+        assertThat(documents.get(id(1)).getString("title").getValue()).isEqualTo("third");
+        assertThat(mongo.bulkWriteOrdering()).containsExactly(true);
+    }
+
+    @Test
+    void scanReadsOnlyTheKeyRange() {
+        sink.writeBatch(COLLECTION, films(1, 10), DocumentSink.WriteMode.INSERT).join();
+
+        List<Integer> scanned = new ArrayList<>();
+        sink.scan(COLLECTION, new KeyRange(0, 3, 6), document -> scanned.add(document.getInt32("_id").getValue()));
+
+        assertThat(scanned).containsExactlyInAnyOrder(3, 4, 5, 6);
+    }
+
+    @Test
+    void deleteMatchingRemovesEveryMatch() {
+        sink.writeBatch(COLLECTION, films(1, 10), DocumentSink.WriteMode.INSERT).join();
+
+        sink.deleteMatching(COLLECTION, List.of(Filters.lte("_id", 2), Filters.gte("_id", 9))).join();
+
+        assertThat(mongo.documents(COLLECTION))
+            .containsOnlyKeys(IntStream.rangeClosed(3, 8).mapToObj(MongoDocumentSinkTest::id).toList());
+    }
+
+    @Test
+    void describeCountsDocumentsPerCollection() {
+        sink.writeBatch(COLLECTION, films(1, 3), DocumentSink.WriteMode.INSERT).join();
+
+        Map<String, Object> description = sink.describe();
+
+        assertThat(description).containsEntry("database", "dvdrental").containsEntry("totalCollections", 1);
+        assertThat(description.get("collections"))
+            .isEqualTo(Map.of(COLLECTION, Map.of("documentCount", 3L)));
+    }
+
+    private static List<RawBsonDocument> films(int first, int last) {
+        return IntStream.rangeClosed(first, last).mapToObj(id -> film(id, "title " + id)).toList();
+    }
+
+    private static RawBsonDocument film(int id, String title) {
+        return RawBsonDocument.parse("{\"_id\": " + id + ", \"title\": \"" + title + "\"}");
+    }
+
+    private static BsonValue id(int id) {
+        return new BsonInt32(id);
+    }
+}
@@ -0,0 +1,139 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PgBinaryFieldDecoderTest {
+
+    @Test
+    void integersDecodeToValuesAndBatchCells() {
+        assertThat(decode(PgBinaryFieldDecoder.INT2, b -> b.putShort((short) -7))).isEqualTo(-7);
+        assertThat(decode(PgBinaryFieldDecoder.INT4, b -> b.putInt(123_456))).isEqualTo(123_456);
+        assertThat(decode(PgBinaryFieldDecoder.INT8, b -> b.putLong(1L << 40))).isEqualTo(1L << 40);
+
+        ColumnarRowBatch batch = new ColumnarRowBatch(new RowCodec.ColumnKind[] {RowCodec.ColumnKind.INT32}, 1);
+        int row = batch.addRow();
+        ByteBuffer field = field(b -> b.putShort((short) 300));
+        PgBinaryFieldDecoder.INT2.decodeInto(field, field.remaining(), batch, 0, row);
+        assertThat(batch.isNull(0, row)).isFalse();
+        assertThat(batch.getLong(0, row)).isEqualTo(300);
+    }
+
+    @Test
+    void numericsKeepTheirDisplayScale() {
+        assertThat(decodeNumeric(-1, 0x0000, 2, 9900)).isEqualTo(decimal("0.99"));
+        assertThat(decodeNumeric(0, 0x4000, 2, 12, 5000)).isEqualTo(decimal("-12.50"));
+        assertThat(decodeNumeric(2, 0x0000, 0, 1)).isEqualTo(decimal("100000000"));
+        assertThat(decodeNumeric(0, 0x0000, 2)).isEqualTo(decimal("0.00"));
+        assertThat(decodeNumeric(4, 0x0000, 2, 1234, 5678, 9012, 3456, 7890, 1200))
+            .isEqualTo(decimal("12345678901234567890.12"));
+        assertThat(decodeNumeric(0, 0xC000, 0)).isEqualTo(Decimal128.NaN);
+    }
+
+    @Test
+    void timestampsAndDatesCountFromThePostgresEpoch() {
+        assertThat(decode(PgBinaryFieldDecoder.TIMESTAMP, b -> b.putLong(1_500_000L)))
+            .isEqualTo(Date.from(Instant.parse("2000-01-01T00:00:01.500Z")));
+        assertThat(decode(PgBinaryFieldDecoder.TIMESTAMP, b -> b.putLong(-1_000L)))
+            .isEqualTo(Date.from(Instant.parse("1999-12-31T23:59:59.999Z")));
+        assertThat(decode(PgBinaryFieldDecoder.DATE, b -> b.putInt(-1)))
+            .isEqualTo(Date.from(Instant.parse("1999-12-31T00:00:00Z")));
+    }
+
+    @Test
+    void infiniteTimestampsBecomeNull() {
+        assertThat(decode(PgBinaryFieldDecoder.TIMESTAMP, b -> b.putLong(Long.MAX_VALUE))).isNull();
+        assertThat(decode(PgBinaryFieldDecoder.DATE, b -> b.putInt(Integer.MIN_VALUE))).isNull();
+
+        ColumnarRowBatch batch = new ColumnarRowBatch(new RowCodec.ColumnKind[] {RowCodec.ColumnKind.DATE_TIME}, 1);
+        int row = batch.addRow();
+        ByteBuffer field = field(b -> b.putLong(Long.MIN_VALUE));
+        PgBinaryFieldDecoder.TIMESTAMP.decodeInto(field, field.remaining(), batch, 0, row);
+        assertThat(batch.isNull(0, row)).isTrue();
+    }
+
+    @Test
+    void textIsReadFromTheBufferPosition() {
+        byte[] bytes = "Ça va".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + bytes.length + 1);
+        buffer.putInt(99).put(bytes).put((byte) 'x').flip();
+        buffer.getInt();
+
+        assertThat(PgBinaryFieldDecoder.TEXT.decode(buffer, bytes.length)).isEqualTo("Ça va");
+        assertThat(buffer.get()).isEqualTo((byte) 'x');
+    }
+
+    @Test
+    void tsvectorsRenderInPostgresTextForm() {
+        Object text = decode(PgBinaryFieldDecoder.TSVECTOR, b -> {
+            b.putInt(2);
+            b.put("cat".getBytes(StandardCharsets.UTF_8)).put((byte) 0);
+            b.putShort((short) 2).putShort((short) (3 << 14 | 1)).putShort((short) 5);
+            b.put("it's".getBytes(StandardCharsets.UTF_8)).put((byte) 0);
+            b.putShort((short) 0);
+        });
+
+        assertThat(text).isEqualTo("'cat':1A,5 'it''s'");
+    }
+
+    @Test
+    void arraysDecodeElementsAndNulls() {
+        Object values = decode(PgBinaryFieldDecoder.arrayOf(PgBinaryFieldDecoder.INT4), b -> {
+            b.putInt(1).putInt(1).putInt(23);
+            b.putInt(3).putInt(1);
+            b.putInt(4).putInt(1);
+            b.putInt(-1);
+            b.putInt(4).putInt(3);
+        });
+        Object empty = decode(PgBinaryFieldDecoder.arrayOf(PgBinaryFieldDecoder.TEXT),
+            b -> b.putInt(0).putInt(0).putInt(25));
+
+        assertThat(values).isEqualTo(Arrays.asList(1, null, 3));
+        assertThat(empty).isEqualTo(List.of());
+    }
+
+    @Test
+    void unsupportedTypesFallBackToText() {
+        assertThat(PgBinaryFieldDecoder.forType("int4")).isSameAs(PgBinaryFieldDecoder.INT4);
+        assertThat(PgBinaryFieldDecoder.forType("enum")).isSameAs(PgBinaryFieldDecoder.TEXT);
+        assertThat(PgBinaryFieldDecoder.forType("jsonb")).isNull();
+    }
+
+    private static Object decodeNumeric(int weight, int sign, int displayScale, int... digits) {
+        return decode(PgBinaryFieldDecoder.NUMERIC, b -> {
+            b.putShort((short) digits.length).putShort((short) weight)
+                .putShort((short) sign).putShort((short) displayScale);
+            for (int digit : digits) {
+                b.putShort((short) digit);
+            }
+        });
+    }
+
+    private static Object decode(PgBinaryFieldDecoder decoder, Consumer<ByteBuffer> writer) {
+        ByteBuffer field = field(writer);
+        Object value = decoder.decode(field, field.remaining());
+        assertThat(field.hasRemaining()).as("bytes left after decoding").isFalse();
+        return value;
+    }
+
+    private static ByteBuffer field(Consumer<ByteBuffer> writer) {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        writer.accept(buffer);
+        return buffer.flip();
+    }
+
+    private static Decimal128 decimal(String value) {
+        return new Decimal128(new BigDecimal(value));
+    }
+}
@@ -0,0 +1,128 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RowCodecTest {
+
+    @Test
+    void encodesDecodedColumnsWithThePrimaryKeyAsId() {
+        RowCodec codec = RowCodec.forDecodedColumns(
+            List.of("film_id", "title", "rental_rate", "last_update", "special_features", "length"),
+            List.of(RowCodec.ColumnKind.INT32, RowCodec.ColumnKind.STRING, RowCodec.ColumnKind.DECIMAL,
+                RowCodec.ColumnKind.DATE_TIME, RowCodec.ColumnKind.ARRAY, RowCodec.ColumnKind.INT32),
+            List.of("film_id"));
+        ColumnarRowBatch batch = codec.newBatch(1);
+        int row = batch.addRow();
+        batch.setLong(0, row, 1);
+        batch.setObject(1, row, "Academy Dinosaur");
+        batch.setObject(2, row, new BigDecimal("0.99"));
+        batch.setLong(3, row, 1_369_579_858_951L);
+        batch.setObject(4, row, List.of("Trailers", "Deleted Scenes"));
+        batch.setNull(5, row);
+
+        RawBsonDocument document = codec.encode(batch, row, new BasicOutputBuffer());
+
+        assertThat(document).isEqualTo(BsonDocument.parse("""
+            {"_id": 1, "film_id": 1, "title": "Academy Dinosaur",
+             "rental_rate": {"$numberDecimal": "0.99"},
+             "last_update": {"$date": 1369579858951},
+             "special_features": ["Trailers", "Deleted Scenes"],
+             "length": null}
+            """));
+    }
+
+    @Test
+    void compositeKeysBecomeAnIdDocument() {
+        RowCodec codec = RowCodec.forDecodedColumns(
+            List.of("actor_id", "film_id"),
+            List.of(RowCodec.ColumnKind.INT32, RowCodec.ColumnKind.INT32),
+            List.of("actor_id", "film_id"));
+        ColumnarRowBatch batch = codec.newBatch(1);
+        int row = batch.addRow();
+        batch.setLong(0, row, 1);
+        batch.setLong(1, row, 23);
+
+        RawBsonDocument document = codec.encode(batch, row, new BasicOutputBuffer());
+
+        assertThat(document).isEqualTo(BsonDocument.parse("""
+            {"_id": {"actor_id": 1, "film_id": 23}, "actor_id": 1, "film_id": 23}
+            """));
+    }
+
+    @Test
+    void rowsEncodedIntoOneBufferAreSeparateSlices() {
+        RowCodec codec = RowCodec.forDecodedColumns(
+            List.of("category_id", "name"),
+            List.of(RowCodec.ColumnKind.INT32, RowCodec.ColumnKind.STRING),
+            List.of("category_id"));
+        ColumnarRowBatch batch = codec.newBatch(2);
+        for (int i = 1; i <= 2; i++) {
+            int row = batch.addRow();
+            batch.setLong(0, row, i);
+            batch.setObject(1, row, "category " + i);
+        }
+        BasicOutputBuffer buffer = new BasicOutputBuffer(16);
+
+        RawBsonDocument first = codec.encode(batch, 0, buffer);
+        RawBsonDocument second = codec.encode(batch, 1, buffer);
+
+        assertThat(first).isEqualTo(BsonDocument.parse("{\"_id\": 1, \"category_id\": 1, \"name\": \"category 1\"}"));
+        assertThat(second).isEqualTo(BsonDocument.parse("{\"_id\": 2, \"category_id\": 2, \"name\": \"category 2\"}"));
+        assertThat(buffer.getPosition()).isEqualTo(first.getByteBuffer().remaining() + second.getByteBuffer().remaining());
+    }
+
+    @Test
+    void readsResultSetColumnsThroughTheirPrimitiveAccessors() throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(4);
+        when(metaData.getColumnLabel(1)).thenReturn("payment_id");
+        when(metaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(metaData.getColumnLabel(2)).thenReturn("staff_id");
+        when(metaData.getColumnType(2)).thenReturn(Types.SMALLINT);
+        when(metaData.getColumnLabel(3)).thenReturn("amount");
+        when(metaData.getColumnType(3)).thenReturn(Types.NUMERIC);
+        when(metaData.getColumnLabel(4)).thenReturn("payment_date");
+        when(metaData.getColumnType(4)).thenReturn(Types.TIMESTAMP);
+        RowCodec codec = RowCodec.compile(metaData, List.of("payment_id"));
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getInt(1)).thenReturn(17503);
+        when(rs.getInt(2)).thenReturn(0);
+        when(rs.wasNull()).thenReturn(false, true);
+        when(rs.getBigDecimal(3)).thenReturn(new BigDecimal("7.99"));
+        when(rs.getObject(4, LocalDateTime.class)).thenReturn(LocalDateTime.of(2007, 2, 15, 22, 25, 46, 996_577_000));
+        ColumnarRowBatch batch = codec.newBatch(1);
+        codec.read(rs, batch);
+
+        RawBsonDocument document = codec.encode(batch, 0, new BasicOutputBuffer());
+
+        assertThat(document).isEqualTo(BsonDocument.parse("""
+            {"_id": 17503, "payment_id": 17503, "staff_id": null,
+             "amount": {"$numberDecimal": "7.99"},
+             "payment_date": {"$date": "2007-02-15T22:25:46.996Z"}}
+            """));
+    }
+
+    @Test
+    void rejectsKeyColumnsMissingFromTheRow() {
+        assertThatThrownBy(() -> RowCodec.forDecodedColumns(List.of("title"), List.of(RowCodec.ColumnKind.STRING),
+            List.of("film_id")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("film_id");
+    }
+}
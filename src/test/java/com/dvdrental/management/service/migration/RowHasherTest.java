@@ -0,0 +1,92 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RowHasherTest {
+
+    private static final List<CatalogAnalyzer.ColumnInfo> FILM_COLUMNS = List.of(
+        column("film_id", "integer"),
+        column("title", "character varying"),
+        column("rental_rate", "numeric"),
+        column("last_update", "timestamp without time zone"),
+        column("special_features", "text[]"),
+        column("original_language_id", "smallint"));
+
+    @Test
+    void hashesTheCanonicalRowText() throws Exception {
+        RawBsonDocument document = RawBsonDocument.parse("""
+            {"_id": 1, "film_id": 1, "title": "Academy Dinosaur",
+             "rental_rate": {"$numberDecimal": "0.99"},
+             "last_update": {"$date": 1369579858951},
+             "special_features": ["Deleted Scenes", "Behind the Scenes"],
+             "original_language_id": null}
+            """);
+
+        long hash = new RowHasher(FILM_COLUMNS).hash(document);
+
+        assertThat(hash).isEqualTo(md5Prefix(
+            "1\u001eAcademy Dinosaur\u001e0.99\u001e1369579858951\u001eDeleted Scenes\u001fBehind the Scenes\u001e\\N"));
+    }
+
+    @Test
+    void missingFieldsHashLikeNull() {
+        RowHasher hasher = new RowHasher(List.of(column("film_id", "integer"), column("length", "smallint")));
+
+        assertThat(hasher.hash(RawBsonDocument.parse("{\"film_id\": 1}")))
+            .isEqualTo(hasher.hash(RawBsonDocument.parse("{\"film_id\": 1, \"length\": null}")));
+    }
+
+    @Test
+    void paddingAndFloatingPointAreNormalised() throws Exception {
+        RowHasher hasher = new RowHasher(List.of(column("code", "character(5)"), column("ratio", "double precision")));
+
+        long hash = hasher.hash(RawBsonDocument.parse("{\"code\": \"AB   \", \"ratio\": 0.1234567}"));
+
+        assertThat(hash).isEqualTo(md5Prefix("AB\u001e0.123457"));
+    }
+
+    @Test
+    void sqlRendersTheSameCanonicalText() {
+        String sql = RowHasher.sqlRowHash(List.of(column("film_id", "integer"), column("special_features", "text[]")));
+
+        assertThat(sql).isEqualTo("('x' || left(md5("
+            + "coalesce(\"film_id\"::text, '\\N') || chr(30) || "
+            + "coalesce(array_to_string(\"special_features\", chr(31), '\\N'), '\\N')"
+            + "), 16))::bit(64)::bigint");
+    }
+
+    @Test
+    void checksumIsAnExactOrderIndependentSum() {
+        long[] hashes = {Long.MAX_VALUE, Long.MAX_VALUE, -1L, Long.MIN_VALUE, 42L};
+        RowHasher.Checksum forward = new RowHasher.Checksum();
+        RowHasher.Checksum backward = new RowHasher.Checksum();
+        BigInteger expected = BigInteger.ZERO;
+        for (int i = 0; i < hashes.length; i++) {
+            forward.add(hashes[i]);
+            backward.add(hashes[hashes.length - 1 - i]);
+            expected = expected.add(BigInteger.valueOf(hashes[i]));
+        }
+
+        assertThat(forward.getRows()).isEqualTo(5);
+        assertThat(forward.getSum()).isEqualTo(expected);
+        assertThat(backward.getSum()).isEqualTo(expected);
+    }
+
+    private static long md5Prefix(String text) throws Exception {
+        byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest).getLong();
+    }
+
+    private static CatalogAnalyzer.ColumnInfo column(String name, String dataType) {
+        return new CatalogAnalyzer.ColumnInfo(name, dataType, true, null, null, null, null);
+    }
+}
@@ -0,0 +1,133 @@
+package com.dvdrental.management.service.migration;
+
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class WalChangeDecoderTest {
+
+    private final WalChangeDecoder decoder = new WalChangeDecoder(Map.of(
+        "film", List.of("film_id"),
+        "film_actor", List.of("actor_id", "film_id"),
+        "audit_log", List.<String>of())::get);
+
+    @Test
+    void insertBecomesUpsertKeyedByPrimaryKey() throws Exception {
+        WalChangeDecoder.WalEvent event = decoder.decode("""
+            {"action":"I","schema":"public","table":"film","columns":[
+              {"name":"film_id","type":"integer","value":7},
+              {"name":"title","type":"character varying(255)","value":"Academy Dinosaur"},
+              {"name":"rental_rate","type":"numeric(4,2)","value":0.99},
+              {"name":"rating","type":"mpaa_rating","value":"PG"},
+              {"name":"special_features","type":"text[]","value":"{Trailers,\\"Deleted Scenes\\"}"},
+              {"name":"last_update","type":"timestamp without time zone","value":"2013-05-26 14:50:58.951"},
+              {"name":"original_language_id","type":"smallint","value":null}]}
+            """);
+
+        assertThat(event.action()).isEqualTo('I');
+        assertThat(event.table()).isEqualTo("film");
+        assertThat(event.changes()).hasSize(1);
+        DocumentChange change = event.changes().get(0);
+        assertThat(change.type()).isEqualTo(DocumentChange.Type.UPSERT);
+        assertThat(change.id()).isEqualTo(7);
+
+        Document document = change.document().decode(new DocumentCodec());
+        assertThat(document.get("_id")).isEqualTo(7);
+        assertThat(document.get("title")).isEqualTo("Academy Dinosaur");
+        assertThat(document.get("rental_rate")).isEqualTo(new Decimal128(new BigDecimal("0.99")));
+        assertThat(document.get("rating")).isEqualTo("PG");
+        assertThat(document.getList("special_features", String.class)).containsExactly("Trailers", "Deleted Scenes");
+        assertThat(document.get("last_update")).isEqualTo(Date.from(Instant.parse("2013-05-26T14:50:58.951Z")));
+        assertThat(document.containsKey("original_language_id")).isTrue();
+        assertThat(document.get("original_language_id")).isNull();
+    }
+
+    @Test
+    void updateOfThePrimaryKeyDeletesTheOldDocument() throws Exception {
+        WalChangeDecoder.WalEvent event = decoder.decode("""
+            {"action":"U","table":"film",
+             "columns":[{"name":"film_id","type":"integer","value":8},{"name":"title","type":"text","value":"Renamed"}],
+             "identity":[{"name":"film_id","type":"integer","value":7}]}
+            """);
+
+        assertThat(event.changes()).extracting(DocumentChange::type, DocumentChange::id)
+            .containsExactly(tuple(DocumentChange.Type.DELETE, 7), tuple(DocumentChange.Type.UPSERT, 8));
+    }
+
+    @Test
+    void updateKeepingThePrimaryKeyIsASingleUpsert() throws Exception {
+        WalChangeDecoder.WalEvent event = decoder.decode("""
+            {"action":"U","table":"film",
+             "columns":[{"name":"film_id","type":"integer","value":7},{"name":"title","type":"text","value":"Renamed"}]}
+            """);
+
+        assertThat(event.changes()).singleElement()
+            .satisfies(change -> {
+                assertThat(change.type()).isEqualTo(DocumentChange.Type.UPSERT);
+                assertThat(change.id()).isEqualTo(7);
+            });
+    }
+
+    @Test
+    void deleteOfACompositeKeyAddressesTheKeyDocument() throws Exception {
+        WalChangeDecoder.WalEvent event = decoder.decode(ByteBuffer.wrap("""
+            {"action":"D","table":"film_actor","identity":[
+              {"name":"actor_id","type":"smallint","value":1},
+              {"name":"film_id","type":"smallint","value":23}]}
+            """.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(event.changes()).singleElement()
+            .satisfies(change -> {
+                assertThat(change.type()).isEqualTo(DocumentChange.Type.DELETE);
+                assertThat(change.id()).isEqualTo(new Document("actor_id", 1).append("film_id", 23));
+                assertThat(change.document()).isNull();
+            });
+    }
+
+    @Test
+    void tablesWithoutPrimaryKeyProduceNoChanges() throws Exception {
+        WalChangeDecoder.WalEvent event = decoder.decode("""
+            {"action":"I","table":"audit_log","columns":[{"name":"message","type":"text","value":"x"}]}
+            """);
+
+        assertThat(event.table()).isEqualTo("audit_log");
+        assertThat(event.changes()).isEmpty();
+    }
+
+    @Test
+    void transactionBoundariesCarryTheCommitTime() throws Exception {
+        WalChangeDecoder.WalEvent begin = decoder.decode("{\"action\":\"B\"}");
+        WalChangeDecoder.WalEvent commit = decoder.decode("{\"action\":\"C\",\"timestamp\":\"2024-03-01 10:15:30.5+02\"}");
+
+        assertThat(begin.isCommit()).isFalse();
+        assertThat(begin.changes()).isEmpty();
+        assertThat(commit.isCommit()).isTrue();
+        assertThat(commit.commitTime())
+            .isEqualTo(OffsetDateTime.of(2024, 3, 1, 10, 15, 30, 500_000_000, ZoneOffset.ofHours(2)));
+    }
+
+    @Test
+    void arrayLiteralsHonourQuotingAndNulls() {
+        assertThat(WalChangeDecoder.parseArray("integer", "{1,NULL,3}")).containsExactly(1, null, 3);
+        assertThat(WalChangeDecoder.parseArray("text", "{\"NULL\",\"a,b\",\"say \\\"hi\\\"\"}"))
+            .containsExactly("NULL", "a,b", "say \"hi\"");
+        assertThat(WalChangeDecoder.parseArray("text", "{}")).isEmpty();
+        assertThat(WalChangeDecoder.parseArray("numeric", "{1.50}"))
+            .isEqualTo(Arrays.asList(new Decimal128(new BigDecimal("1.50"))));
+    }
+}